@@ -0,0 +1,68 @@
+package uk.ac.bris.cs.scotlandyard.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Benchmarks graph construction and adjacency lookup on the standard graph
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+
+	private List<String> lines;
+	private ImmutableGraph<Integer, Transport> compiled;
+	private UndirectedGraph<Integer, Transport> undirected;
+
+	@Setup
+	public void setup() {
+		lines = StandardSetup.graphLines();
+		compiled = ScotlandYardGraphReader.fromLines(lines);
+		undirected = new UndirectedGraph<>(compiled);
+	}
+
+	private static int edgesFromAllNodes(Graph<Integer, Transport> graph) {
+		int edges = 0;
+		for (Node<Integer> node : graph.getNodes())
+			edges += graph.getEdgesFrom(node).size();
+		return edges;
+	}
+
+	@Benchmark
+	public int undirectedGetEdgesFrom() {
+		return edgesFromAllNodes(undirected);
+	}
+
+	@Benchmark
+	public int compiledGetEdgesFrom() {
+		return edgesFromAllNodes(compiled);
+	}
+
+	@Benchmark
+	public ImmutableGraph<Integer, Transport> fromLines() {
+		return ScotlandYardGraphReader.fromLines(lines);
+	}
+
+}
@@ -0,0 +1,56 @@
+package uk.ac.bris.cs.scotlandyard.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.sim.GameResult;
+import uk.ac.bris.cs.scotlandyard.sim.RandomPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.sim.Simulation;
+
+/**
+ * Benchmarks complete games between random players, the seed changes on
+ * every invocation so that many different games are played
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayoutBenchmark {
+
+	private Simulation simulation;
+	private int seed;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		simulation = new Simulation.Builder(ScotlandYardModel::new)
+				.graph(StandardSetup.graph())
+				.mrX(() -> new RandomPlayerFactory(random))
+				.detectives(() -> new RandomPlayerFactory(random))
+				.parallelism(1)
+				.build();
+	}
+
+	@Benchmark
+	public GameResult playout() {
+		GameResult result = simulation.play(seed++);
+		if (result.error().isPresent())
+			throw new IllegalStateException("Playout failed", result.error().get());
+		return result;
+	}
+
+}
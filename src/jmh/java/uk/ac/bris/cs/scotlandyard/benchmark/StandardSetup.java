@@ -0,0 +1,105 @@
+package uk.ac.bris.cs.scotlandyard.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.sim.RandomPlayerFactory;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Games and graphs shared by the benchmarks, all built from
+ * {@link StandardGame}
+ */
+public final class StandardSetup {
+
+	/**
+	 * The detectives of a standard six player game
+	 */
+	public static final List<Colour> DETECTIVES = Collections.unmodifiableList(Arrays.asList(
+			Colour.BLUE, Colour.GREEN, Colour.RED, Colour.WHITE, Colour.YELLOW));
+
+	private StandardSetup() {}
+
+	/**
+	 * @return the lines of the standard graph resource
+	 */
+	public static List<String> graphLines() {
+		try (InputStream stream = StandardSetup.class.getClassLoader()
+				.getResourceAsStream("graph.txt")) {
+			if (stream == null) throw new IOException("Resource graph.txt not found");
+			return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))
+					.lines().collect(toList());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the standard graph
+	 */
+	public static ImmutableGraph<Integer, Transport> graph() {
+		try {
+			return StandardGame.standardGraph();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Creates a standard six player game with players picking moves at random
+	 *
+	 * @param graph the graph; not null
+	 * @param seed the seed for starting locations and picked moves
+	 * @return the game; never null
+	 */
+	public static ScotlandYardModel newGame(ImmutableGraph<Integer, Transport> graph, int seed) {
+		Random random = new Random(seed);
+		Player player = (view, location, moves, callback) -> callback
+				.accept(RandomPlayerFactory.pick(random, moves));
+		List<Integer> locations = StandardGame.generateDetectiveLocations(seed, DETECTIVES.size());
+		PlayerConfiguration[] detectives = new PlayerConfiguration[DETECTIVES.size()];
+		for (int i = 0; i < detectives.length; i++) {
+			detectives[i] = new PlayerConfiguration.Builder(DETECTIVES.get(i)).using(player)
+					.with(StandardGame.generateDetectiveTickets()).at(locations.get(i)).build();
+		}
+		PlayerConfiguration mrX = new PlayerConfiguration.Builder(Colour.BLACK).using(player)
+				.with(StandardGame.generateMrXTickets())
+				.at(StandardGame.generateMrXLocation(seed)).build();
+		return new ScotlandYardModel(StandardGame.ROUNDS, graph, mrX, detectives[0],
+				Arrays.copyOfRange(detectives, 1, detectives.length));
+	}
+
+	/**
+	 * Creates a standard game and plays up to the given number of rotations,
+	 * stopping early if the game is over
+	 *
+	 * @param graph the graph; not null
+	 * @param seed the seed for starting locations and picked moves
+	 * @param rotations the number of rotations to play
+	 * @return the game; never null
+	 */
+	public static ScotlandYardModel playedGame(ImmutableGraph<Integer, Transport> graph,
+			int seed, int rotations) {
+		ScotlandYardModel game = newGame(graph, seed);
+		for (int i = 0; i < rotations && !game.isGameOver(); i++)
+			game.startRotate();
+		return game;
+	}
+
+}
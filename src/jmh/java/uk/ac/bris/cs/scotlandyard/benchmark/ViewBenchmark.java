@@ -0,0 +1,43 @@
+package uk.ac.bris.cs.scotlandyard.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.bris.cs.scotlandyard.harness.ImmutableScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+
+/**
+ * Benchmarks {@link ImmutableScotlandYardView#snapshot}, taken by the test
+ * harness on every interaction
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewBenchmark {
+
+	private ScotlandYardModel game;
+
+	@Setup
+	public void setup() {
+		game = StandardSetup.playedGame(StandardSetup.graph(), 42, 6);
+	}
+
+	@Benchmark
+	public ImmutableScotlandYardView snapshot() {
+		return ImmutableScotlandYardView.snapshot(game);
+	}
+
+}
@@ -0,0 +1,10 @@
+/**
+ * JMH benchmarks for the model, graph and harness hot paths.
+ * <br>
+ * Compiled and run only with the {@code benchmark} profile:
+ * {@code mvn -Pbenchmark test-compile exec:exec@benchmark}, which also
+ * enables the GC profiler for allocation rates and writes JSON results to
+ * {@code target/jmh-result.json}. A subset can be selected with
+ * {@code -Dbenchmark.include=<regex>}.
+ */
+package uk.ac.bris.cs.scotlandyard.benchmark;
@@ -0,0 +1,109 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.benchmark.StandardSetup;
+
+/**
+ * Benchmarks {@link ScotlandYardModel} queries made on every turn. Lives in
+ * the model package to reach {@link ScotlandYardModel#getMoves(Colour)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+	/**
+	 * A game after some rotations, asked for the moves of one player
+	 */
+	@State(Scope.Thread)
+	public static class Turn {
+
+		@Param({"0", "6"}) public int rotations;
+		@Param({"BLACK", "BLUE"}) public Colour colour;
+
+		ScotlandYardModel game;
+
+		@Setup
+		public void setup() {
+			game = StandardSetup.playedGame(StandardSetup.graph(), 42, rotations);
+		}
+	}
+
+	/**
+	 * The position of a game after some rotations, recreated in a new model
+	 * for every invocation. The model caches whether the game is over until
+	 * its state changes, so asking the same model again would only read the
+	 * cached result.
+	 */
+	@State(Scope.Thread)
+	public static class Position {
+
+		@Param({"0", "6"}) public int rotations;
+
+		private ImmutableGraph<Integer, Transport> graph;
+		private List<Boolean> rounds;
+		private PlayerConfiguration[] players;
+		ScotlandYardModel game;
+
+		@Setup(Level.Trial)
+		public void play() {
+			graph = StandardSetup.graph();
+			ScotlandYardModel played = StandardSetup.playedGame(graph, 42, rotations);
+			if (played.isGameOver())
+				throw new IllegalStateException("Game over after " + rotations + " rotations");
+			// the remaining rounds keep the rounds left and the reveal rounds
+			rounds = StandardGame.ROUNDS.subList(played.getCurrentRound(),
+					StandardGame.ROUNDS.size());
+			List<Colour> colours = played.getPlayers();
+			players = new PlayerConfiguration[colours.size()];
+			for (int i = 0; i < players.length; i++) {
+				Colour colour = colours.get(i);
+				Map<Ticket, Integer> tickets = new HashMap<>();
+				for (Ticket ticket : Ticket.values())
+					tickets.put(ticket, played.getPlayerTickets(colour, ticket).orElse(0));
+				players[i] = new PlayerConfiguration.Builder(colour).using(GameState.NO_PLAYER)
+						.with(tickets).at(played.getPlayerLocation(colour, true).orElse(0))
+						.build();
+			}
+		}
+
+		@Setup(Level.Invocation)
+		public void recreate() {
+			game = new ScotlandYardModel(rounds, graph, players[0], players[1],
+					Arrays.copyOfRange(players, 2, players.length));
+		}
+	}
+
+	@Benchmark
+	public Set<Move> getMoves(Turn turn) {
+		return turn.game.getMoves(turn.colour);
+	}
+
+	@Benchmark
+	public boolean isGameOver(Position position) {
+		return position.game.isGameOver();
+	}
+
+}
@@ -0,0 +1,358 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * An immutable, array backed graph with integer node values and enum edge data.
+ * <br>
+ * Adjacency is stored in compressed sparse row form: the neighbours of the node
+ * at index {@code i} are found at edge slots {@code [firstEdge(i), endEdge(i))}
+ * where each slot holds the index of the neighbour and a bitmask of all the
+ * edge data (i.e. {@code 1 << ordinal}) connecting the two nodes. Walking the
+ * adjacency of a node therefore requires no allocation, boxing or hashing.
+ * <br>
+ * The {@link Graph} methods are still supported for compatibility; all nodes
+ * and edges are created once at compile time and shared afterwards.
+ *
+ * @param <D> the enum type for {@link Edge} data, at most 8 constants
+ */
+public final class CompiledGraph<D extends Enum<D>> extends AbstractGraph<Integer, D>
+		implements
+		Graph<Integer, D>,
+		Serializable {
+
+	private static final long serialVersionUID = 5810327741593047615L;
+	private static final int MAX_CONSTANTS = Byte.SIZE;
+	// values spanning more than this many slots per node are binary searched
+	private static final int MAX_SLOTS_PER_NODE = 4;
+
+	private final Class<D> dataType;
+	private final D[] constants;
+
+	private final int minValue;
+	// by value - minValue, or by position in sortedValues if that is not null
+	private final int[] indices;
+	// node values in ascending order if they are too sparse to index directly
+	private final int[] sortedValues;
+	private final int[] values;
+	private final int[] offsets;
+	private final int[] targets;
+	private final byte[] masks;
+
+	private final List<Node<Integer>> nodes;
+	private final List<Edge<Integer, D>> edges;
+	private final List<List<Edge<Integer, D>>> edgesFrom;
+	private final List<List<Edge<Integer, D>>> edgesTo;
+
+	// structures built from this graph, see derived; rebuilt after deserialisation
+	private transient volatile ConcurrentMap<Class<?>, Object> derived;
+
+	/**
+	 * Compiles the given graph, returning the graph itself if it (or the graph
+	 * backing an {@link ImmutableGraph}) is already compiled
+	 *
+	 * @param graph the graph to compile; not null
+	 * @param dataType the enum class of the edge data; not null
+	 * @param <D> the enum type for {@link Edge} data
+	 * @return the compiled graph; never null
+	 */
+	public static <D extends Enum<D>> CompiledGraph<D> of(Graph<Integer, D> graph,
+			Class<D> dataType) {
+		Objects.requireNonNull(graph);
+		Objects.requireNonNull(dataType);
+		Graph<Integer, D> unwrapped = graph;
+		while (unwrapped instanceof ImmutableGraph)
+			unwrapped = ((ImmutableGraph<Integer, D>) unwrapped).delegate();
+		if (unwrapped instanceof CompiledGraph
+				&& ((CompiledGraph<?>) unwrapped).dataType == dataType) {
+			return (CompiledGraph<D>) unwrapped;
+		}
+		return new CompiledGraph<>(unwrapped, dataType);
+	}
+
+	private CompiledGraph(Graph<Integer, D> graph, Class<D> dataType) {
+		this.dataType = dataType;
+		this.constants = dataType.getEnumConstants();
+		if (constants.length > MAX_CONSTANTS) throw new IllegalArgumentException(
+				dataType + " has more than " + MAX_CONSTANTS + " constants");
+
+		List<Node<Integer>> sourceNodes = graph.getNodes();
+		int size = sourceNodes.size();
+		values = new int[size];
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int i = 0; i < size; i++) {
+			values[i] = sourceNodes.get(i).value();
+			min = Math.min(min, values[i]);
+			max = Math.max(max, values[i]);
+		}
+		minValue = size == 0 ? 0 : min;
+		long span = size == 0 ? 0 : (long) max - min + 1;
+		if (span > (long) MAX_SLOTS_PER_NODE * size + 64) {
+			// value in the high bits, index in the low bits, sorts by value
+			long[] pairs = new long[size];
+			for (int i = 0; i < size; i++)
+				pairs[i] = (long) values[i] << Integer.SIZE | i;
+			Arrays.sort(pairs);
+			sortedValues = new int[size];
+			indices = new int[size];
+			for (int i = 0; i < size; i++) {
+				sortedValues[i] = (int) (pairs[i] >> Integer.SIZE);
+				indices[i] = (int) pairs[i];
+				if (i > 0 && sortedValues[i] == sortedValues[i - 1]) throw new IllegalArgumentException(
+						"Node(" + sortedValues[i] + ") appears more than once");
+			}
+		} else {
+			sortedValues = null;
+			indices = new int[(int) span];
+			Arrays.fill(indices, -1);
+			for (int i = 0; i < size; i++) {
+				if (indices[values[i] - minValue] != -1) throw new IllegalArgumentException(
+						"Node(" + values[i] + ") appears more than once");
+				indices[values[i] - minValue] = i;
+			}
+		}
+
+		List<Node<Integer>> compiledNodes = new ArrayList<>(size);
+		List<List<Edge<Integer, D>>> from = new ArrayList<>(size);
+		List<List<Edge<Integer, D>>> to = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			compiledNodes.add(new Node<>(values[i]));
+			from.add(new ArrayList<>());
+			to.add(new ArrayList<>());
+		}
+
+		List<Edge<Integer, D>> compiledEdges = new ArrayList<>(graph.getEdges().size());
+		for (Edge<Integer, D> edge : graph.getEdges()) {
+			int source = indexOf(edge.source().value());
+			int destination = indexOf(edge.destination().value());
+			if (source == -1 || destination == -1) throw new IllegalArgumentException(
+					edge + " references a node that is not in the graph");
+			Edge<Integer, D> compiled = new Edge<>(compiledNodes.get(source),
+					compiledNodes.get(destination), Objects.requireNonNull(edge.data()));
+			compiledEdges.add(compiled);
+			from.get(source).add(compiled);
+			to.get(destination).add(compiled);
+		}
+
+		// merge parallel edges into a single slot with a combined mask
+		offsets = new int[size + 1];
+		int[] slotTargets = new int[compiledEdges.size()];
+		byte[] slotMasks = new byte[compiledEdges.size()];
+		int[] slotOf = new int[size];
+		Arrays.fill(slotOf, -1);
+		int slots = 0;
+		for (int i = 0; i < size; i++) {
+			offsets[i] = slots;
+			for (Edge<Integer, D> edge : from.get(i)) {
+				int target = indexOf(edge.destination().value());
+				if (slotOf[target] == -1) {
+					slotOf[target] = slots;
+					slotTargets[slots++] = target;
+				}
+				slotMasks[slotOf[target]] |= maskOf(edge.data());
+			}
+			for (int slot = offsets[i]; slot < slots; slot++)
+				slotOf[slotTargets[slot]] = -1;
+		}
+		offsets[size] = slots;
+		targets = Arrays.copyOf(slotTargets, slots);
+		masks = Arrays.copyOf(slotMasks, slots);
+
+		for (int i = 0; i < size; i++) {
+			from.set(i, Collections.unmodifiableList(from.get(i)));
+			to.set(i, Collections.unmodifiableList(to.get(i)));
+		}
+		nodes = Collections.unmodifiableList(compiledNodes);
+		edges = Collections.unmodifiableList(compiledEdges);
+		edgesFrom = from;
+		edgesTo = to;
+	}
+
+	/**
+	 * @param data the edge data; not null
+	 * @return the bit representing the given edge data in {@link #mask(int)}
+	 */
+	public static int maskOf(Enum<?> data) {
+		return 1 << data.ordinal();
+	}
+
+	/**
+	 * @return the enum class of the edge data
+	 */
+	public Class<D> dataType() {
+		return dataType;
+	}
+
+	/**
+	 * Finds the index of the node with the given value
+	 *
+	 * @param value the node value
+	 * @return the index in {@code [0, size())} or -1 if no such node exists
+	 */
+	public int indexOf(int value) {
+		if (sortedValues != null) {
+			int position = Arrays.binarySearch(sortedValues, value);
+			return position < 0 ? -1 : indices[position];
+		}
+		long offset = (long) value - minValue;
+		return offset < 0 || offset >= indices.length ? -1 : indices[(int) offset];
+	}
+
+	/**
+	 * @param index the node index; in {@code [0, size())}
+	 * @return the value of the node at the given index
+	 */
+	public int valueOf(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @param index the node index; in {@code [0, size())}
+	 * @return the first adjacency slot of the node
+	 */
+	public int firstEdge(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * @param index the node index; in {@code [0, size())}
+	 * @return one past the last adjacency slot of the node
+	 */
+	public int endEdge(int index) {
+		return offsets[index + 1];
+	}
+
+	/**
+	 * @return total number of adjacency slots, parallel edges count once
+	 */
+	public int edgeSlots() {
+		return targets.length;
+	}
+
+	/**
+	 * @param edge the adjacency slot
+	 * @return the index of the neighbouring node
+	 */
+	public int target(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * @param edge the adjacency slot
+	 * @return bitmask of all edge data connecting to the neighbour, see
+	 *         {@link #maskOf(Enum)}
+	 */
+	public int mask(int edge) {
+		return masks[edge] & 0xFF;
+	}
+
+	/**
+	 * @param edge the adjacency slot
+	 * @param data the edge data; not null
+	 * @return true if the adjacency slot contains the given edge data
+	 */
+	public boolean hasData(int edge, D data) {
+		return (masks[edge] & maskOf(data)) != 0;
+	}
+
+	/**
+	 * Returns a structure built from this graph, building it on first use so
+	 * every user of the graph shares it, e.g. tables indexed by edge slot
+	 *
+	 * @param type the type of the structure, one structure per type; not null
+	 * @param factory builds the structure; not null
+	 * @param <T> the type of the structure
+	 * @return the structure; never null
+	 */
+	public <T> T derived(Class<T> type, Function<? super CompiledGraph<D>, ? extends T> factory) {
+		ConcurrentMap<Class<?>, Object> cache = derived;
+		if (cache == null) {
+			synchronized (this) {
+				cache = derived;
+				if (cache == null) derived = cache = new ConcurrentHashMap<>();
+			}
+		}
+		return type.cast(cache.computeIfAbsent(type, t -> factory.apply(this)));
+	}
+
+	/**
+	 * @param bit a bit index of a mask, see {@link #mask(int)}
+	 * @return the edge data represented by the bit
+	 */
+	public D dataAt(int bit) {
+		return constants[bit];
+	}
+
+	@Override
+	public void addNode(Node<Integer> node) {
+		throw new UnsupportedOperationException(
+				"Adding node is not supported in a CompiledGraph");
+	}
+
+	@Override
+	public void addEdge(Edge<Integer, D> edge) {
+		throw new UnsupportedOperationException(
+				"Adding edge is not supported in a CompiledGraph");
+	}
+
+	@Override
+	public Node<Integer> getNode(Integer value) {
+		if (value == null) return null;
+		int index = indexOf(value);
+		return index == -1 ? null : nodes.get(index);
+	}
+
+	@Override
+	public boolean containsNode(Integer value) {
+		return value != null && indexOf(value) != -1;
+	}
+
+	@Override
+	public List<Node<Integer>> getNodes() {
+		return nodes;
+	}
+
+	@Override
+	public Collection<Edge<Integer, D>> getEdges() {
+		return edges;
+	}
+
+	@Override
+	public Collection<Edge<Integer, D>> getEdgesFrom(Node<Integer> source) {
+		int index = indexOf(source.value());
+		return index == -1 ? Collections.emptyList() : edgesFrom.get(index);
+	}
+
+	@Override
+	public Collection<Edge<Integer, D>> getEdgesTo(Node<Integer> destination) {
+		int index = indexOf(destination.value());
+		return index == -1 ? Collections.emptyList() : edgesTo.get(index);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return values.length == 0;
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledGraph{" + "nodes=" + values.length + ", edges=" + edges.size()
+				+ ", slots=" + targets.length + '}';
+	}
+
+}
@@ -0,0 +1,158 @@
+package uk.ac.bris.cs.gamekit.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed all-pairs shortest path lengths of a {@link CompiledGraph} for
+ * every subset of edge data.
+ * <br>
+ * For each data mask (see {@link CompiledGraph#maskOf(Enum)}) the number of
+ * edges on the shortest path between any two nodes using only edges with data
+ * in that mask is stored in a byte matrix, so a query is a single array read.
+ * Distances are saturated at {@link #MAX_DISTANCE}; unreachable pairs are
+ * reported as {@link #UNREACHABLE}. All matrices are built in parallel on the
+ * common fork join pool.
+ * <br>
+ * Instances are immutable and thread safe.
+ *
+ * @param <D> the enum type for {@link Edge} data
+ */
+public final class DistanceOracle<D extends Enum<D>> {
+
+	/**
+	 * Distance reported if the destination cannot be reached
+	 */
+	public static final int UNREACHABLE = 0xFF;
+
+	/**
+	 * Largest distance that can be represented, longer paths are reported as
+	 * this distance
+	 */
+	public static final int MAX_DISTANCE = UNREACHABLE - 1;
+
+	private final CompiledGraph<D> graph;
+	private final int size;
+	private final byte[][] distances;
+
+	private DistanceOracle(CompiledGraph<D> graph) {
+		this.graph = graph;
+		this.size = graph.size();
+		int masks = 1 << graph.dataType().getEnumConstants().length;
+		this.distances = new byte[masks][size * size];
+		IntStream.range(0, masks * size).parallel()
+				.forEach(task -> search(task / size, task % size));
+	}
+
+	/**
+	 * Returns the distances of every node pair for every subset of edge data,
+	 * built on the first call for the graph and shared afterwards, see
+	 * {@link CompiledGraph#derived(Class, java.util.function.Function)}
+	 *
+	 * @param graph the graph; not null
+	 * @param <D> the enum type for {@link Edge} data
+	 * @return the oracle; never null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <D extends Enum<D>> DistanceOracle<D> of(CompiledGraph<D> graph) {
+		return Objects.requireNonNull(graph).derived(DistanceOracle.class, DistanceOracle::new);
+	}
+
+	private void search(int mask, int source) {
+		byte[] row = distances[mask];
+		int offset = source * size;
+		Arrays.fill(row, offset, offset + size, (byte) UNREACHABLE);
+		int[] queue = new int[size];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = source;
+		row[offset + source] = 0;
+		while (head < tail) {
+			int node = queue[head++];
+			int next = Math.min((row[offset + node] & 0xFF) + 1, MAX_DISTANCE);
+			for (int slot = graph.firstEdge(node); slot < graph.endEdge(node); slot++) {
+				int target = graph.target(slot);
+				if ((graph.mask(slot) & mask) == 0
+						|| (row[offset + target] & 0xFF) != UNREACHABLE) continue;
+				row[offset + target] = (byte) next;
+				queue[tail++] = target;
+			}
+		}
+	}
+
+	/**
+	 * @return the graph distances are computed on
+	 */
+	public CompiledGraph<D> graph() {
+		return graph;
+	}
+
+	/**
+	 * @param data the edge data; not null
+	 * @param <D> the enum type for {@link Edge} data
+	 * @return the mask of all the given edge data
+	 */
+	public static <D extends Enum<D>> int maskOf(Collection<D> data) {
+		int mask = 0;
+		for (D d : data) mask |= CompiledGraph.maskOf(d);
+		return mask;
+	}
+
+	/**
+	 * Looks up a distance by node index, see {@link CompiledGraph#indexOf(int)}
+	 *
+	 * @param mask the edge data that may be used, see
+	 *        {@link CompiledGraph#maskOf(Enum)}
+	 * @param source the source node index
+	 * @param destination the destination node index
+	 * @return the number of edges on the shortest path or
+	 *         {@link #UNREACHABLE}
+	 */
+	public int distanceAt(int mask, int source, int destination) {
+		return distances[mask][source * size + destination] & 0xFF;
+	}
+
+	/**
+	 * Looks up a distance by node value
+	 *
+	 * @param mask the edge data that may be used, see
+	 *        {@link CompiledGraph#maskOf(Enum)}
+	 * @param source the source node value
+	 * @param destination the destination node value
+	 * @return the number of edges on the shortest path or
+	 *         {@link #UNREACHABLE}
+	 * @throws IllegalArgumentException if either node is not in the graph
+	 */
+	public int distance(int mask, int source, int destination) {
+		return distanceAt(mask, index(source), index(destination));
+	}
+
+	/**
+	 * Looks up a distance by node value
+	 *
+	 * @param data the edge data that may be used; not null
+	 * @param source the source node value
+	 * @param destination the destination node value
+	 * @return the number of edges on the shortest path or
+	 *         {@link #UNREACHABLE}
+	 * @throws IllegalArgumentException if either node is not in the graph
+	 */
+	public int distance(Collection<D> data, int source, int destination) {
+		return distance(maskOf(data), source, destination);
+	}
+
+	private int index(int value) {
+		int index = graph.indexOf(value);
+		if (index == -1)
+			throw new IllegalArgumentException("Node(" + value + ") is not in the graph");
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return "DistanceOracle{" + "nodes=" + size + ", masks=" + distances.length + '}';
+	}
+
+}
@@ -24,6 +24,13 @@ public final class ImmutableGraph<V, D> extends AbstractGraph<V, D>
 		this.graph = Objects.requireNonNull(graph);
 	}
 
+	/**
+	 * @return the graph backing this immutable view
+	 */
+	Graph<V, D> delegate() {
+		return graph;
+	}
+
 	@Override
 	public void addNode(Node<V> node) {
 		throw new UnsupportedOperationException(
@@ -7,15 +7,20 @@ import static java.util.stream.Collectors.toMap;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import com.google.common.collect.ImmutableMap;
 
 import javafx.geometry.Point2D;
 import javafx.scene.image.Image;
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
 import uk.ac.bris.cs.gamekit.graph.Graph;
 import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.ai.OpeningBook;
 import uk.ac.bris.cs.scotlandyard.ai.ResourceProvider;
+import uk.ac.bris.cs.scotlandyard.ai.Tablebase;
 import uk.ac.bris.cs.scotlandyard.model.StandardGame;
 import uk.ac.bris.cs.scotlandyard.model.Ticket;
 import uk.ac.bris.cs.scotlandyard.model.Transport;
@@ -35,6 +40,9 @@ public final class ResourceManager implements ResourceProvider {
 	private Map<Ticket, Image> ticketResources;
 	private Map<Integer, Entry<Integer, Integer>> mapCoordinates;
 	private Graph<Integer, Transport> graph;
+	private DistanceOracle<Transport> distances;
+	private OpeningBook book = OpeningBook.EMPTY;
+	private Tablebase tablebase = Tablebase.NONE;
 
 	/**
 	 * Loads all resources into memory <br>
@@ -44,6 +52,11 @@ public final class ResourceManager implements ResourceProvider {
 	 */
 	public void loadAllResources() throws IOException {
 
+		graph = new ImmutableGraph<>(StandardGame.standardGraph());
+		// distances are built in the background while images load
+		CompletableFuture<DistanceOracle<Transport>> oracle = CompletableFuture.supplyAsync(
+				() -> DistanceOracle.of(CompiledGraph.of(graph, Transport.class)));
+
 		// shared images
 		imageResources = ImmutableMap.of(
 				ImageResource.MAP, loadImage("/map_large.png"),
@@ -55,7 +68,9 @@ public final class ResourceManager implements ResourceProvider {
 				ticket -> loadImage(format("/tickets/%s.png", ticket.name().toLowerCase())))));
 
 		mapCoordinates = ImmutableMap.copyOf(StandardGame.pngMapPositionEntries());
-		graph = new ImmutableGraph<>(StandardGame.standardGraph());
+		book = OpeningBook.standard();
+		tablebase = Tablebase.standard();
+		distances = oracle.join();
 	}
 
 	private static Image loadImage(String path) {
@@ -81,6 +96,21 @@ public final class ResourceManager implements ResourceProvider {
 		return graph;
 	}
 
+	@Override
+	public DistanceOracle<Transport> getDistances() {
+		return distances;
+	}
+
+	@Override
+	public OpeningBook getOpeningBook() {
+		return book;
+	}
+
+	@Override
+	public Tablebase getTablebase() {
+		return tablebase;
+	}
+
 	@Override
 	public Point2D coordinateAtNode(int node) {
 		Entry<Integer, Integer> entry = mapCoordinates.get(node);
@@ -1,20 +1,39 @@
 package uk.ac.bris.cs.scotlandyard.ai;
 
+import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import javafx.scene.layout.Pane;
@@ -29,23 +48,102 @@ import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
  * <b> Not a public API, do not use!</b> <br>
  * Internal pooling mechanism for AIs. AIs that are on the same group will share
  * a common GameFactory.
- * 
+ * <br>
+ * Every group gets its own threads, sized by an {@link Execution}. Every move
+ * of an AI runs on one of its group's threads with a deadline, see
+ * {@link MoveDeadline}. If the AI has not made its move by then, it is
+ * interrupted and the fallback picks the move instead.
+ * <br>
+ * When one {@link CoordinatedPlayerFactory} plays every detective of a group,
+ * the detectives' moves are planned jointly once per rotation, see
+ * {@link JointPlan}.
+ *
  * @param <G> the group, must be stable with proper {@link Object#hashCode()}
  *        and {@link Object#equals(Object)}
  */
 public class AIPool<G> {
 
+	/**
+	 * The move timeout of the default game setup
+	 */
+	public static final Duration DEFAULT_MOVE_TIMEOUT = Duration.ofMinutes(1);
+
+	/**
+	 * Picks a valid move uniformly at random
+	 */
+	public static final Function<Set<Move>, Move> RANDOM_MOVE = moves -> {
+		int skip = ThreadLocalRandom.current().nextInt(moves.size());
+		Iterator<Move> iterator = moves.iterator();
+		while (skip-- > 0) iterator.next();
+		return iterator.next();
+	};
+
+	private static final Duration MAX_GRACE = Duration.ofSeconds(1);
+
+	// only signals deadlines, the fallback moves are played on DISPATCHER so
+	// a slow game cannot delay the deadlines of every other game
+	private static final ScheduledExecutorService TIMER = Executors
+			.newSingleThreadScheduledExecutor(daemon("ai-deadline-"));
+	private static final ExecutorService DISPATCHER = Executors
+			.newCachedThreadPool(daemon("ai-fallback-"));
+
 	private final VisualiserSurface surface;
 	private final Consumer<Throwable> exceptionHandler;
 	private final Map<G, AIGroup> groups = new HashMap<>();
+	private final long budgetNanos;
+	private final Function<Set<Move>, Move> fallback;
+	private final Execution execution;
+	private final Set<Thinking> thinking = ConcurrentHashMap.newKeySet();
+	private final Metrics metrics = new Metrics();
 
 	public AIPool(VisualiserSurface surface, Consumer<Throwable> exceptionHandler) {
+		this(surface, exceptionHandler, DEFAULT_MOVE_TIMEOUT, RANDOM_MOVE);
+	}
+
+	public AIPool(VisualiserSurface surface,
+			Consumer<Throwable> exceptionHandler,
+			Duration moveTimeout,
+			Function<Set<Move>, Move> fallback) {
+		this(surface, exceptionHandler, moveTimeout, fallback, Execution.fairShare());
+	}
+
+	/**
+	 * @param surface the surface for visualisers; not null
+	 * @param exceptionHandler handler of exceptions thrown by AIs; not null
+	 * @param moveTimeout the time the game gives a player to move, AIs are
+	 *        stopped slightly earlier so the fallback move makes it in time;
+	 *        positive
+	 * @param fallback picks the move of an AI that overran its deadline from
+	 *        the valid moves; not null
+	 * @param execution how many threads each group gets; not null
+	 */
+	public AIPool(VisualiserSurface surface,
+			Consumer<Throwable> exceptionHandler,
+			Duration moveTimeout,
+			Function<Set<Move>, Move> fallback,
+			Execution execution) {
+		if (moveTimeout.isNegative() || moveTimeout.isZero())
+			throw new IllegalArgumentException("Invalid move timeout " + moveTimeout);
 		this.surface = surface;
 		this.exceptionHandler = exceptionHandler;
+		Duration grace = moveTimeout.dividedBy(10);
+		if (grace.compareTo(MAX_GRACE) > 0) grace = MAX_GRACE;
+		this.budgetNanos = moveTimeout.minus(grace).toNanos();
+		this.fallback = requireNonNull(fallback);
+		this.execution = requireNonNull(execution);
+	}
+
+	private static ThreadFactory daemon(String prefix) {
+		AtomicLong ids = new AtomicLong();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + ids.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
 	}
 
 	public void addToGroup(G group, Colour colour, AI ai) {
-		groups.computeIfAbsent(group, g -> new AIGroup()).add(colour, ai);
+		groups.computeIfAbsent(group, g -> new AIGroup(String.valueOf(g))).add(colour, ai);
 	}
 
 	public void initialise(ResourceManager manager, ScotlandYardGame game) {
@@ -71,7 +169,28 @@ public class AIPool<G> {
 		return Optional.of(created.get(0));
 	}
 
+	/**
+	 * @return the move counters of all AIs of this pool; never null
+	 */
+	public Metrics metrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the executor counters of every group, they are only updated
+	 *         once {@link #initialise} has been called; never null
+	 */
+	public Map<G, GroupMetrics> groupMetrics() {
+		return groups.entrySet().stream()
+				.collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, e -> e.getValue().metrics));
+	}
+
+	/**
+	 * Cancels every move in progress, without calling back, finishes all
+	 * factories and stops the groups' threads
+	 */
 	public void terminate() {
+		thinking.forEach(Thinking::cancel);
 		groups.values().forEach((group) -> {
 			try {
 				group.terminate();
@@ -92,48 +211,360 @@ public class AIPool<G> {
 
 	class AIGroup {
 
+		private final String name;
 		private final Map<Colour, AI> ais = new HashMap<>();
+		private final GroupMetrics metrics = new GroupMetrics();
 		private Map<AI, PlayerFactory> factories = new HashMap<>();
+		private ThreadPoolExecutor executor;
+		private JointPlan plan;
+
+		AIGroup(String name) {
+			this.name = name;
+		}
 
 		void add(Colour colour, AI ai) {
 			ais.put(colour, ai);
 		}
 
 		void initialise(ResourceManager manager, ScotlandYardGame game) throws Exception {
+			executor = execution.create("ai-" + name + "-");
+			metrics.executor = executor;
 			factories = ais.values().stream()
 					.distinct()
 					.collect(toMap(Function.identity(), AI::instantiate));
 			factories.forEach((ai, factory) -> {
 				factory.createSpectators(game).forEach(game::registerSpectator);
+				game.registerSpectator(new PonderingSpectator(factory));
 				Pane pane = surface.onCreate(ai);
 				factory.ready(() -> pane, manager);
 			});
+			plan = coordinated().map(factory -> new JointPlan(factory, metrics.plans,
+					metrics.plannedMoves)).orElse(null);
+		}
+
+		// the factory playing all detectives of the group, if it coordinates
+		private Optional<CoordinatedPlayerFactory> coordinated() {
+			Set<PlayerFactory> detectives = ais.entrySet().stream()
+					.filter(entry -> entry.getKey().isDetective())
+					.map(entry -> factories.get(entry.getValue()))
+					.collect(toSet());
+			if (detectives.size() != 1) return Optional.empty();
+			PlayerFactory factory = detectives.iterator().next();
+			return factory instanceof CoordinatedPlayerFactory
+					? Optional.of((CoordinatedPlayerFactory) factory) : Optional.empty();
 		}
 
 		void terminate() throws Exception {
-			factories.values().forEach(PlayerFactory::finish);
+			try {
+				factories.values().forEach(PlayerFactory::finish);
+			} finally {
+				if (executor != null) {
+					executor.shutdownNow();
+					execution.release(executor);
+				}
+			}
+		}
+
+		Future<?> submit(Runnable task) {
+			if (executor == null) throw new IllegalStateException("Group not initialised");
+			return executor.submit(() -> {
+				long start = System.nanoTime();
+				try {
+					task.run();
+				} finally {
+					metrics.busyNanos.add(System.nanoTime() - start);
+					metrics.completed.increment();
+				}
+			});
 		}
 
 		public Optional<Player> createPlayer(Colour colour) {
 			if (!ais.containsKey(colour)) return Optional.empty();
-			return Optional.of(
-					new ThreadedPlayer(
-							factories.get(ais.get(colour)).createPlayer(colour),
-							exceptionHandler));
+			Player player = plan != null && colour.isDetective() ? plan.player(colour)
+					: factories.get(ais.get(colour)).createPlayer(colour);
+			return Optional.of(new ThreadedPlayer(player, this));
 		}
 
 	}
 
-	static class ThreadedPlayer implements Player {
+	/**
+	 * Counters of the moves made by the AIs of a pool
+	 */
+	public static final class Metrics {
+
+		private final LongAdder moves = new LongAdder();
+		private final LongAdder overruns = new LongAdder();
+		private final LongAdder lateMoves = new LongAdder();
+		private final LongAdder cancelled = new LongAdder();
+		private final LongAdder thinkingNanos = new LongAdder();
+		private final AtomicLong maxThinkingNanos = new AtomicLong();
 
-		final static ExecutorService service = Executors.newWorkStealingPool();
+		private Metrics() {}
+
+		/**
+		 * @return the number of moves the AIs made in time
+		 */
+		public long moves() {
+			return moves.sum();
+		}
+
+		/**
+		 * @return the number of moves picked by the fallback because an AI
+		 *         overran its deadline
+		 */
+		public long overruns() {
+			return overruns.sum();
+		}
+
+		/**
+		 * @return the number of moves made after the deadline, which were
+		 *         discarded
+		 */
+		public long lateMoves() {
+			return lateMoves.sum();
+		}
+
+		/**
+		 * @return the number of moves cancelled by {@link AIPool#terminate()}
+		 */
+		public long cancelled() {
+			return cancelled.sum();
+		}
+
+		/**
+		 * @return the total time spent on moves made in time
+		 */
+		public Duration thinkingTime() {
+			return Duration.ofNanos(thinkingNanos.sum());
+		}
+
+		/**
+		 * @return the longest time spent on a move made in time
+		 */
+		public Duration maxThinkingTime() {
+			return Duration.ofNanos(maxThinkingNanos.get());
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this)
+					.add("moves", moves())
+					.add("overruns", overruns())
+					.add("lateMoves", lateMoves())
+					.add("cancelled", cancelled())
+					.add("maxThinkingTime", maxThinkingTime())
+					.toString();
+		}
+	}
+
+	/**
+	 * How many threads the AIs of each group get. Every group has its own
+	 * threads so AIs in a match, or in concurrent games, do not compete for
+	 * the same workers.
+	 */
+	public static final class Execution {
+
+		private static final Execution FAIR_SHARE = new Execution(0, false,
+				Runtime.getRuntime().availableProcessors());
+
+		private final int threads;
+		private final boolean perMove;
+		private final int processors;
+		// executors of the live groups sharing the processors, guarded by itself
+		private final Set<ThreadPoolExecutor> sharing = new HashSet<>();
+
+		private Execution(int threads, boolean perMove, int processors) {
+			this.threads = threads;
+			this.perMove = perMove;
+			this.processors = processors;
+		}
+
+		/**
+		 * The available processors split evenly between the live groups of
+		 * every pool using this execution, so concurrent games share them
+		 * rather than each taking all of them. Groups are resized as others
+		 * are initialised and terminated.
+		 *
+		 * @return the shared budget of the available processors, at least
+		 *         one thread per group
+		 */
+		public static Execution fairShare() {
+			return FAIR_SHARE;
+		}
+
+		/**
+		 * Like {@link #fairShare()} but with a budget of its own, shared only
+		 * by the pools given the returned execution
+		 *
+		 * @param processors the number of threads to split; positive
+		 * @return a new shared budget, at least one thread per group
+		 */
+		public static Execution fairShare(int processors) {
+			if (processors < 1)
+				throw new IllegalArgumentException("Invalid processors " + processors);
+			return new Execution(0, false, processors);
+		}
+
+		/**
+		 * @param threads the number of threads of every group; positive
+		 * @return a fixed number of threads per group, further moves queue
+		 */
+		public static Execution fixed(int threads) {
+			if (threads < 1) throw new IllegalArgumentException("Invalid threads " + threads);
+			return new Execution(threads, false, 0);
+		}
+
+		/**
+		 * @return a new or idle thread for every move, for AIs that mostly
+		 *         block, e.g. on network or another process
+		 */
+		public static Execution threadPerMove() {
+			return new Execution(0, true, 0);
+		}
+
+		ThreadPoolExecutor create(String prefix) {
+			if (perMove) {
+				return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+						new SynchronousQueue<>(), daemon(prefix));
+			}
+			int size = threads > 0 ? threads : 1;
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 0,
+					TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), daemon(prefix));
+			if (threads == 0) {
+				synchronized (sharing) {
+					sharing.add(executor);
+					rebalance();
+				}
+			}
+			return executor;
+		}
+
+		void release(ThreadPoolExecutor executor) {
+			synchronized (sharing) {
+				if (sharing.remove(executor)) rebalance();
+			}
+		}
+
+		private void rebalance() {
+			// pools that were never terminated give up their share once shut down
+			sharing.removeIf(ThreadPoolExecutor::isShutdown);
+			if (sharing.isEmpty()) return;
+			int size = Math.max(1, processors / sharing.size());
+			for (ThreadPoolExecutor executor : sharing) {
+				if (size > executor.getMaximumPoolSize()) {
+					executor.setMaximumPoolSize(size);
+					executor.setCorePoolSize(size);
+				} else {
+					executor.setCorePoolSize(size);
+					executor.setMaximumPoolSize(size);
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return perMove ? "threadPerMove" : threads > 0 ? "fixed(" + threads + ")" : "fairShare";
+		}
+	}
+
+	/**
+	 * Counters of the threads of a single group
+	 */
+	public static final class GroupMetrics {
+
+		private final LongAdder busyNanos = new LongAdder();
+		private final LongAdder completed = new LongAdder();
+		private final LongAdder plans = new LongAdder();
+		private final LongAdder plannedMoves = new LongAdder();
+		private volatile ThreadPoolExecutor executor;
+
+		private GroupMetrics() {}
+
+		/**
+		 * @return the number of threads of the group
+		 */
+		public int threads() {
+			ThreadPoolExecutor current = executor;
+			return current == null ? 0 : current.getPoolSize();
+		}
+
+		/**
+		 * @return the number of threads the group may start,
+		 *         {@link Integer#MAX_VALUE} for a thread per move
+		 */
+		public int maxThreads() {
+			ThreadPoolExecutor current = executor;
+			return current == null ? 0 : current.getMaximumPoolSize();
+		}
+
+		/**
+		 * @return the number of threads currently running a move
+		 */
+		public int activeThreads() {
+			ThreadPoolExecutor current = executor;
+			return current == null ? 0 : current.getActiveCount();
+		}
+
+		/**
+		 * @return the number of moves waiting for a thread
+		 */
+		public int queueDepth() {
+			ThreadPoolExecutor current = executor;
+			return current == null ? 0 : current.getQueue().size();
+		}
+
+		/**
+		 * @return the number of moves the group's threads finished running
+		 */
+		public long completed() {
+			return completed.sum();
+		}
+
+		/**
+		 * @return the total time the group's threads spent running moves
+		 */
+		public Duration busyTime() {
+			return Duration.ofNanos(busyNanos.sum());
+		}
+
+		/**
+		 * @return the number of rotations planned jointly, see
+		 *         {@link CoordinatedPlayerFactory}
+		 */
+		public long plans() {
+			return plans.sum();
+		}
+
+		/**
+		 * @return the number of moves made from a joint plan
+		 */
+		public long plannedMoves() {
+			return plannedMoves.sum();
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this)
+					.add("threads", threads())
+					.add("maxThreads", maxThreads())
+					.add("activeThreads", activeThreads())
+					.add("queueDepth", queueDepth())
+					.add("completed", completed())
+					.add("busyTime", busyTime())
+					.add("plans", plans())
+					.add("plannedMoves", plannedMoves())
+					.toString();
+		}
+	}
+
+	class ThreadedPlayer implements Player {
 
 		private final Player player;
-		private final Consumer<Throwable> exceptionHandler;
+		private final AIGroup group;
 
-		private ThreadedPlayer(Player player, Consumer<Throwable> exceptionHandler) {
+		private ThreadedPlayer(Player player, AIGroup group) {
 			this.player = player;
-			this.exceptionHandler = exceptionHandler;
+			this.group = group;
 		}
 
 		@Override
@@ -141,15 +572,85 @@ public class AIPool<G> {
 				int location,
 				Set<Move> moves,
 				Consumer<Move> callback) {
-			service.submit((Callable<Void>) () -> {
+			Set<Move> valid = ImmutableSet.copyOf(moves);
+			Thinking move = new Thinking(valid, callback);
+			thinking.add(move);
+			move.task = group.submit(() -> {
 				try {
-					player.makeMove(view, location, ImmutableSet.copyOf(moves), callback);
+					MoveDeadline.run(move.deadline,
+							() -> player.makeMove(view, location, valid, move::made));
 				} catch (Throwable e) {
+					// an interrupted AI may throw anything once it has overrun
+					if (move.isSettled()) return;
 					e.printStackTrace();
 					exceptionHandler.accept(e);
 				}
-				return null;
 			});
+			move.timer = TIMER.schedule(move::overrun, budgetNanos, TimeUnit.NANOSECONDS);
+			// the AI may have been quicker than scheduling the timer
+			if (move.isSettled()) move.timer.cancel(false);
+		}
+	}
+
+	// a single move of an AI, settled exactly once by the AI, the deadline or
+	// termination
+	private final class Thinking {
+
+		private final Set<Move> moves;
+		private final Consumer<Move> callback;
+		private final long start = System.nanoTime();
+		private final long deadline = start + budgetNanos;
+		private final AtomicBoolean settled = new AtomicBoolean();
+		private volatile Future<?> task;
+		private volatile ScheduledFuture<?> timer;
+
+		Thinking(Set<Move> moves, Consumer<Move> callback) {
+			this.moves = moves;
+			this.callback = callback;
+		}
+
+		boolean isSettled() {
+			return settled.get();
+		}
+
+		private boolean settle() {
+			if (!settled.compareAndSet(false, true)) return false;
+			thinking.remove(this);
+			ScheduledFuture<?> scheduled = timer;
+			if (scheduled != null) scheduled.cancel(false);
+			return true;
+		}
+
+		void made(Move move) {
+			if (!settle()) {
+				metrics.lateMoves.increment();
+				return;
+			}
+			long nanos = System.nanoTime() - start;
+			metrics.moves.increment();
+			metrics.thinkingNanos.add(nanos);
+			metrics.maxThinkingNanos.accumulateAndGet(nanos, Math::max);
+			callback.accept(move);
+		}
+
+		void overrun() {
+			if (!settle()) return;
+			task.cancel(true);
+			metrics.overruns.increment();
+			DISPATCHER.execute(() -> {
+				try {
+					callback.accept(fallback.apply(moves));
+				} catch (Throwable e) {
+					exceptionHandler.accept(e);
+				}
+			});
+		}
+
+		void cancel() {
+			if (!settle()) return;
+			Future<?> running = task;
+			if (running != null) running.cancel(true);
+			metrics.cancelled.increment();
 		}
 	}
 
@@ -0,0 +1,42 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+
+/**
+ * A {@link PlayerFactory} that decides the moves of all its detectives
+ * jointly, once per rotation, instead of once per detective
+ *
+ * When a single coordinated factory plays every detective of a group, the
+ * {@link AIPool} asks it for a plan on the first detective's turn and makes
+ * the following detectives' moves straight from that plan. The plan is
+ * dropped as soon as the game diverges from it(e.g. a move was replaced by
+ * the fallback after a timeout); the next detective then plans again.
+ * Detectives missing from a plan move through their
+ * {@link #createPlayer(Colour)} player as usual.
+ */
+public interface CoordinatedPlayerFactory extends PlayerFactory {
+
+	/**
+	 * Plans the moves of the current player and of every detective after it
+	 * in this rotation <br>
+	 * Called instead of
+	 * {@link Player#makeMove(ScotlandYardView, int, Set, Consumer)}, on the
+	 * same thread and with the same deadline(see {@link MoveDeadline})
+	 *
+	 * @param view the view of the game, the current player is the first
+	 *        detective to plan for; never null
+	 * @param location the location of the current player
+	 * @param moves the valid moves of the current player; never null
+	 * @return the planned moves by colour, each planned as if the detectives
+	 *         before it made their planned moves; not null
+	 */
+	Map<Colour, Move> planRotation(ScotlandYardView view, int location, Set<Move> moves);
+
+}
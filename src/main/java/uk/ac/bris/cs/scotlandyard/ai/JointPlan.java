@@ -0,0 +1,106 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+/**
+ * The current rotation's plan of a {@link CoordinatedPlayerFactory}, shared
+ * by the players of all its detectives
+ * <br>
+ * Alongside the planned moves the plan keeps where every detective should be
+ * if the game followed it so far; a planned move is only made while the view
+ * still agrees.
+ */
+final class JointPlan {
+
+	private final CoordinatedPlayerFactory factory;
+	private final LongAdder plans;
+	private final LongAdder plannedMoves;
+	private final Map<Colour, Move> planned = new HashMap<>();
+	private final Map<Colour, Integer> expected = new HashMap<>();
+	private int round = -1;
+
+	/**
+	 * @param factory the factory planning the rotations; not null
+	 * @param plans counts the rotations planned; not null
+	 * @param plannedMoves counts the moves made from a plan; not null
+	 */
+	JointPlan(CoordinatedPlayerFactory factory, LongAdder plans, LongAdder plannedMoves) {
+		this.factory = requireNonNull(factory);
+		this.plans = requireNonNull(plans);
+		this.plannedMoves = requireNonNull(plannedMoves);
+	}
+
+	/**
+	 * @param colour the colour of the detective
+	 * @return a player making the detective's moves from the plan, planning
+	 *         again when there is none, or through the factory's own player
+	 *         when the plan misses the detective
+	 */
+	Player player(Colour colour) {
+		Player own = factory.createPlayer(colour);
+		return (view, location, moves, callback) -> {
+			Move move = take(view, colour, location, moves);
+			if (move == null) {
+				Map<Colour, Move> plan = factory.planRotation(view, location, moves);
+				move = adopt(plan, view, colour, location, moves);
+			}
+			if (move != null) callback.accept(move);
+			else own.makeMove(view, location, moves, callback);
+		};
+	}
+
+	private synchronized Move adopt(Map<Colour, Move> plan, ScotlandYardView view,
+			Colour colour, int location, Set<Move> moves) {
+		invalidate();
+		round = view.getCurrentRound();
+		for (Colour player : view.getPlayers()) {
+			if (player.isDetective())
+				view.getPlayerLocation(player).ifPresent(at -> expected.put(player, at));
+		}
+		planned.putAll(plan);
+		plans.increment();
+		return take(view, colour, location, moves);
+	}
+
+	private synchronized Move take(ScotlandYardView view, Colour colour, int location,
+			Set<Move> moves) {
+		Move move = planned.remove(colour);
+		if (move == null || !moves.contains(move) || !isFollowed(view)
+				|| expected.getOrDefault(colour, location) != location) {
+			invalidate();
+			return null;
+		}
+		if (move instanceof TicketMove) expected.put(colour, ((TicketMove) move).destination());
+		plannedMoves.increment();
+		return move;
+	}
+
+	// whether the game got where the plan expected it to be
+	private boolean isFollowed(ScotlandYardView view) {
+		if (round != view.getCurrentRound()) return false;
+		for (Map.Entry<Colour, Integer> entry : expected.entrySet()) {
+			if (!view.getPlayerLocation(entry.getKey()).equals(Optional.of(entry.getValue())))
+				return false;
+		}
+		return true;
+	}
+
+	private void invalidate() {
+		planned.clear();
+		expected.clear();
+		round = -1;
+	}
+
+}
@@ -0,0 +1,75 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.model.Player;
+
+/**
+ * The time a managed AI has left to pick a move.
+ * <br>
+ * While {@link Player#makeMove} of a player created by a
+ * {@link PlayerFactory} runs, {@link #current()} returns the deadline the
+ * move must be made by; the move is picked for the player once it passes.
+ * The deadline is only visible on the thread calling {@code makeMove}, so
+ * players handing the work over to other threads must read it first.
+ */
+public final class MoveDeadline {
+
+	private static final ThreadLocal<MoveDeadline> CURRENT = new ThreadLocal<>();
+
+	private final long nanoTime;
+
+	private MoveDeadline(long nanoTime) {
+		this.nanoTime = nanoTime;
+	}
+
+	/**
+	 * @return the deadline of the move being made on this thread, empty if
+	 *         there is none
+	 */
+	public static Optional<MoveDeadline> current() {
+		return Optional.ofNullable(CURRENT.get());
+	}
+
+	/**
+	 * Runs an action with the given deadline visible through
+	 * {@link #current()}
+	 *
+	 * @param nanoTime the deadline as a {@link System#nanoTime()}
+	 * @param action the action; not null
+	 */
+	static void run(long nanoTime, Runnable action) {
+		MoveDeadline previous = CURRENT.get();
+		CURRENT.set(new MoveDeadline(nanoTime));
+		try {
+			action.run();
+		} finally {
+			if (previous == null) CURRENT.remove();
+			else CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * @return the deadline as a {@link System#nanoTime()}
+	 */
+	public long nanoTime() {
+		return nanoTime;
+	}
+
+	/**
+	 * @param unit the unit of the result; not null
+	 * @return the time left, negative if the deadline has passed
+	 */
+	public long remaining(TimeUnit unit) {
+		return unit.convert(nanoTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return true if the deadline has passed
+	 */
+	public boolean hasExpired() {
+		return nanoTime - System.nanoTime() <= 0;
+	}
+
+}
@@ -0,0 +1,279 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Zobrist;
+
+/**
+ * Precomputed moves of Mr.X for the first rounds of a game, so opening moves
+ * need no search. Books are generated offline, see
+ * {@code uk.ac.bris.cs.scotlandyard.search.OpeningBookGenerator}, and
+ * provided to AIs by {@link ResourceProvider#getOpeningBook()}.
+ * <br>
+ * Only positions with Mr.X to move before his first reveal are in a book,
+ * later his best move depends on what detectives know. Positions are keyed
+ * by a {@link Zobrist} hash that ignores the order of the detectives: they
+ * all use the same kind of tickets, so one entry serves every assignment of
+ * the same locations and tickets to detectives. Moves are packed as by
+ * {@link MoveGenerator} and checked against the legal moves on lookup.
+ * <br>
+ * The binary format is a header (magic, version, number of nodes and rounds
+ * of the game, number of entries) followed by the entries sorted by key,
+ * each a long key and an int move; all big endian. Instances are immutable
+ * and thread safe.
+ */
+public final class OpeningBook {
+
+	/**
+	 * The book with no positions
+	 */
+	public static final OpeningBook EMPTY = new OpeningBook(0, 0, new long[0], new int[0]);
+
+	/**
+	 * Classpath resource of the standard book
+	 */
+	public static final String RESOURCE = "/opening.book";
+
+	private static final int MAGIC = 0x53594F42; // SYOB
+	private static final int VERSION = 1;
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private final int nodes;
+	private final int rounds;
+	private final long[] keys;
+	private final int[] moves;
+
+	private OpeningBook(int nodes, int rounds, long[] keys, int[] moves) {
+		this.nodes = nodes;
+		this.rounds = rounds;
+		this.keys = keys;
+		this.moves = moves;
+	}
+
+	/**
+	 * Loads the book at the path of the system property
+	 * {@code scotlandyard.ai.book}, or else the {@link #RESOURCE} on the
+	 * classpath
+	 *
+	 * @return the book, {@link #EMPTY} if there is none; never null
+	 * @throws UncheckedIOException if the book cannot be read
+	 */
+	public static OpeningBook standard() {
+		try {
+			String path = System.getProperty("scotlandyard.ai.book");
+			if (path != null) {
+				try (InputStream in = Files.newInputStream(Paths.get(path))) {
+					return read(in);
+				}
+			}
+			InputStream resource = OpeningBook.class.getResourceAsStream(RESOURCE);
+			if (resource == null) return EMPTY;
+			try (InputStream in = resource) {
+				return read(in);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param in the stream to read a book from, not closed; not null
+	 * @return the book; never null
+	 * @throws IOException if the stream cannot be read or holds no book
+	 */
+	public static OpeningBook read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != MAGIC) throw new IOException("Not an opening book");
+		int version = data.readInt();
+		if (version != VERSION) throw new IOException("Unsupported book version " + version);
+		int nodes = data.readInt();
+		int rounds = data.readInt();
+		int size = data.readInt();
+		if (size < 0) throw new IOException("Invalid book size " + size);
+		long[] keys = new long[size];
+		int[] moves = new int[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = data.readLong();
+			moves[i] = data.readInt();
+			if (i > 0 && keys[i] <= keys[i - 1]) throw new IOException("Book is not sorted");
+		}
+		return new OpeningBook(nodes, rounds, keys, moves);
+	}
+
+	/**
+	 * @param out the stream to write the book to, not closed; not null
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(nodes);
+		data.writeInt(rounds);
+		data.writeInt(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			data.writeLong(keys[i]);
+			data.writeInt(moves[i]);
+		}
+		data.flush();
+	}
+
+	/**
+	 * @param path the file to write the book to; not null
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(Path path) throws IOException {
+		try (OutputStream out = Files.newOutputStream(path)) {
+			write(out);
+		}
+	}
+
+	/**
+	 * @param state the state; not null
+	 * @return true if a book could hold a move for the state, i.e. Mr.X is to
+	 *         move and has not been revealed yet
+	 */
+	public static boolean isOpening(GameState state) {
+		return state.currentIndex() == 0 && state.mrXLastSeen() == 0 && !state.isGameOver();
+	}
+
+	/**
+	 * The key of a state, which is the same for every order of the detectives
+	 *
+	 * @param state the state; not null
+	 * @return the key
+	 */
+	public static long key(GameState state) {
+		List<?> players = state.players();
+		Integer[] detectives = new Integer[players.size() - 1];
+		for (int i = 0; i < detectives.length; i++)
+			detectives[i] = i + 1;
+		Arrays.sort(detectives, (a, b) -> Integer.compare(state.locationIndex(a),
+				state.locationIndex(b)));
+		long key = Zobrist.current(state.currentIndex()) ^ Zobrist.round(state.currentRound())
+				^ keyOf(state, 0, 0);
+		for (int slot = 0; slot < detectives.length; slot++)
+			key ^= keyOf(state, detectives[slot], slot + 1);
+		return key;
+	}
+
+	private static long keyOf(GameState state, int player, int slot) {
+		long key = Zobrist.location(slot, state.locationIndex(player));
+		for (Ticket ticket : TICKETS) {
+			key ^= Zobrist.tickets(slot, ticket.ordinal(),
+					state.tickets(state.players().get(player), ticket));
+		}
+		return key;
+	}
+
+	private boolean fits(GameState state) {
+		return state.graph().size() == nodes && state.rounds().size() == rounds;
+	}
+
+	/**
+	 * @param state the state; not null
+	 * @return Mr.X's move from the book, a legal move of the state; empty if
+	 *         the state is not in the book
+	 */
+	public Optional<Move> lookup(GameState state) {
+		if (keys.length == 0 || !fits(state) || !isOpening(state)) return Optional.empty();
+		int i = Arrays.binarySearch(keys, key(state));
+		if (i < 0) return Optional.empty();
+		MoveGenerator generated = state.generate();
+		for (int j = 0; j < generated.size(); j++) {
+			if (generated.get(j) == moves[i]) return Optional.of(state.toMove(moves[i]));
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * @return the number of positions in the book
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	public String toString() {
+		return "OpeningBook{positions=" + keys.length + ", nodes=" + nodes + ", rounds="
+				+ rounds + "}";
+	}
+
+	/**
+	 * Collects the moves of a book, all positions must be of games on the
+	 * same graph with the same rounds. Not thread safe.
+	 */
+	public static final class Builder {
+
+		private final Map<Long, Integer> entries = new HashMap<>();
+		private int nodes = -1;
+		private int rounds = -1;
+
+		/**
+		 * Adds a position, replacing any move already added for it
+		 *
+		 * @param state the position, see {@link #isOpening(GameState)}; not
+		 *        null
+		 * @param move the packed move of Mr.X, generated by
+		 *        {@link GameState#generate()} for the state
+		 * @return this builder
+		 */
+		public Builder put(GameState state, int move) {
+			requireNonNull(state);
+			if (!isOpening(state))
+				throw new IllegalArgumentException("Not an opening position " + state);
+			if (nodes == -1) {
+				nodes = state.graph().size();
+				rounds = state.rounds().size();
+			} else if (state.graph().size() != nodes || state.rounds().size() != rounds) {
+				throw new IllegalArgumentException("Position of another game " + state);
+			}
+			entries.put(key(state), move);
+			return this;
+		}
+
+		/**
+		 * @return the number of positions added
+		 */
+		public int size() {
+			return entries.size();
+		}
+
+		/**
+		 * @return the book; never null
+		 */
+		public OpeningBook build() {
+			long[] keys = new long[entries.size()];
+			int i = 0;
+			for (long key : entries.keySet())
+				keys[i++] = key;
+			Arrays.sort(keys);
+			int[] moves = new int[keys.length];
+			for (i = 0; i < keys.length; i++)
+				moves[i] = entries.get(keys[i]);
+			return new OpeningBook(Math.max(0, nodes), Math.max(0, rounds), keys, moves);
+		}
+
+	}
+
+}
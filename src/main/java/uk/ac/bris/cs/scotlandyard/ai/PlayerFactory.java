@@ -58,6 +58,20 @@ public interface PlayerFactory {
 	 */
 	default void ready(Visualiser visualiser, ResourceProvider provider) {}
 
+	/**
+	 * Called after every move and every completed rotation while the game is
+	 * not over, so AIs can keep thinking in the background while other
+	 * players move, see {@link PonderingSpectator} <br>
+	 *
+	 * Defaults to no-op <br>
+	 * Called on the game thread with the live view: read what is needed,
+	 * hand the work over to another thread and return quickly, the view
+	 * changes as soon as this method returns
+	 *
+	 * @param view the view of the game; never null
+	 */
+	default void ponder(ScotlandYardView view) {}
+
 	/**
 	 * Called when the game is finished(i.e. when
 	 * {@link Spectator#onGameOver(ScotlandYardView, Set)} is called) <br>
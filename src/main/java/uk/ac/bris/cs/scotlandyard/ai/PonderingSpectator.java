@@ -0,0 +1,49 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static java.util.Objects.requireNonNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+
+/**
+ * A {@link Spectator} driving {@link PlayerFactory#ponder(ScotlandYardView)}
+ * after every move and every completed rotation. Exceptions thrown by the
+ * factory are logged so they never interrupt the game.
+ */
+public final class PonderingSpectator implements Spectator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PonderingSpectator.class);
+
+	private final PlayerFactory factory;
+
+	/**
+	 * @param factory the factory to notify; not null
+	 */
+	public PonderingSpectator(PlayerFactory factory) {
+		this.factory = requireNonNull(factory);
+	}
+
+	@Override
+	public void onMoveMade(ScotlandYardView view, Move move) {
+		ponder(view);
+	}
+
+	@Override
+	public void onRotationComplete(ScotlandYardView view) {
+		ponder(view);
+	}
+
+	private void ponder(ScotlandYardView view) {
+		if (view.isGameOver()) return;
+		try {
+			factory.ponder(view);
+		} catch (RuntimeException e) {
+			LOG.warn("{} failed to ponder", factory, e);
+		}
+	}
+
+}
@@ -2,6 +2,8 @@ package uk.ac.bris.cs.scotlandyard.ai;
 
 import javafx.geometry.Point2D;
 import javafx.scene.image.Image;
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
 import uk.ac.bris.cs.gamekit.graph.Graph;
 import uk.ac.bris.cs.scotlandyard.model.Ticket;
 import uk.ac.bris.cs.scotlandyard.model.Transport;
@@ -36,6 +38,44 @@ public interface ResourceProvider {
 	 */
 	Graph<Integer, Transport> getGraph();
 
+	/**
+	 * Retrieves the precomputed shortest path lengths between all nodes of
+	 * the game graph for every combination of transports, e.g. the number of
+	 * moves a detective needs to reach a node using only taxis and buses.
+	 * <br>
+	 * By default they are built from {@link #getGraph()} on the first call,
+	 * which takes a while, and kept with its {@link CompiledGraph}; a graph
+	 * that is not already compiled is compiled again on every call, so such
+	 * providers should override this and keep the result.
+	 * 
+	 * @return the distances; never null
+	 */
+	default DistanceOracle<Transport> getDistances() {
+		return DistanceOracle.of(CompiledGraph.of(getGraph(), Transport.class));
+	}
+
+	/**
+	 * Retrieves the precomputed moves of Mr.X for the first rounds of the
+	 * game, see {@link OpeningBook#standard()}
+	 * 
+	 * @return the book, {@link OpeningBook#EMPTY} if none is installed; never
+	 *         null
+	 */
+	default OpeningBook getOpeningBook() {
+		return OpeningBook.EMPTY;
+	}
+
+	/**
+	 * Retrieves the exact outcomes of the last rounds of the game, see
+	 * {@link Tablebase#standard()}
+	 * 
+	 * @return the tablebase, {@link Tablebase#NONE} if none is installed;
+	 *         never null
+	 */
+	default Tablebase getTablebase() {
+		return Tablebase.NONE;
+	}
+
 	/**
 	 * Retrieves the position of node on the map image retrieved using
 	 * {@link #getMap()}
@@ -0,0 +1,286 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Exact outcomes of the last rounds of games with few detectives, so AIs
+ * can play them perfectly without searching. Tablebases are generated
+ * offline, see {@link TablebaseGenerator}, and provided to AIs by
+ * {@link ResourceProvider#getTablebase()}.
+ * <br>
+ * A tablebase solves every position of a graph with a given number of
+ * detectives and at most a given number of rounds remaining, assuming every
+ * player sees everything, i.e. the outcome if Mr.X's location were known.
+ * Taxi, bus and underground tickets are not part of a position: a position is
+ * only probed when nobody can run out of them before the game ends, i.e.
+ * Mr.X holds at least one per remaining round and detectives one more.
+ * Mr.X's secret and double tickets are part of it, capped at the most he
+ * could still use.
+ * <br>
+ * Mr.X always knows every location, so his moves are exact. A detective's
+ * move is only sound if Mr.X's location is known exactly now and he is
+ * revealed in every remaining round; otherwise the outcome is that of a
+ * different game and detectives should search instead.
+ * <br>
+ * The file is a header followed by one byte per position, memory mapped
+ * read only and grouped in layers of the same rounds remaining and player to
+ * move; only the layers the generator completed are probed. Instances are
+ * immutable and thread safe.
+ */
+public final class Tablebase {
+
+	/**
+	 * Outcome of a position with perfect play from both sides
+	 */
+	public enum Outcome {
+		MRX_WINS, DETECTIVES_WIN
+	}
+
+	/**
+	 * The tablebase with no positions
+	 */
+	public static final Tablebase NONE = new Tablebase(null, null, 0);
+
+	static final int MAGIC = 0x53595442; // SYTB
+	static final int VERSION = 1;
+	static final int HEADER = 32;
+	static final int COMPLETED = 24;
+	static final byte UNSOLVED = 0;
+	static final byte MRX_WINS = 1;
+	static final byte DETECTIVES_WIN = 2;
+
+	private final Layout layout;
+	private final ByteBuffer positions;
+	private final int completed;
+
+	private Tablebase(Layout layout, ByteBuffer positions, int completed) {
+		this.layout = layout;
+		this.positions = positions;
+		this.completed = completed;
+	}
+
+	/**
+	 * Opens the tablebase at the path of the system property
+	 * {@code scotlandyard.ai.tablebase}
+	 *
+	 * @return the tablebase, {@link #NONE} if the property is not set; never
+	 *         null
+	 * @throws UncheckedIOException if the tablebase cannot be read
+	 */
+	public static Tablebase standard() {
+		String path = System.getProperty("scotlandyard.ai.tablebase");
+		if (path == null) return NONE;
+		try {
+			return open(Paths.get(path));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Maps a tablebase file into memory
+	 *
+	 * @param path the file written by {@link TablebaseGenerator}; not null
+	 * @return the tablebase; never null
+	 * @throws IOException if the file cannot be read or holds no tablebase
+	 */
+	public static Tablebase open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(requireNonNull(path),
+				StandardOpenOption.READ)) {
+			if (channel.size() < HEADER) throw new IOException("Not a tablebase " + path);
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+			Layout layout = Layout.read(header);
+			if (channel.size() != layout.size())
+				throw new IOException("Truncated tablebase " + path);
+			ByteBuffer positions = channel.map(FileChannel.MapMode.READ_ONLY, 0, layout.size());
+			return new Tablebase(layout, positions, header.getInt(COMPLETED));
+		}
+	}
+
+	/**
+	 * @param state the state; not null
+	 * @return the outcome with perfect play from the state; empty if the
+	 *         state is not in the tablebase
+	 */
+	public Optional<Outcome> probe(GameState state) {
+		long offset = offset(state);
+		if (offset < 0) return Optional.empty();
+		switch (positions.get((int) offset)) {
+			case MRX_WINS:
+				return Optional.of(Outcome.MRX_WINS);
+			case DETECTIVES_WIN:
+				return Optional.of(Outcome.DETECTIVES_WIN);
+			default:
+				return Optional.empty();
+		}
+	}
+
+	/**
+	 * @param state the state; not null
+	 * @return a packed move (see {@link GameState#generate()}) that keeps the
+	 *         current player's side winning; empty if the side cannot win
+	 *         against perfect play or the state is not in the tablebase
+	 */
+	public OptionalInt bestMove(GameState state) {
+		Outcome wanted = state.currentIndex() == 0 ? Outcome.MRX_WINS : Outcome.DETECTIVES_WIN;
+		if (state.isGameOver() || probe(state).orElse(null) != wanted) return OptionalInt.empty();
+		MoveGenerator generator = state.generate();
+		int[] moves = new int[generator.size()];
+		for (int i = 0; i < moves.length; i++)
+			moves[i] = generator.get(i);
+		for (int move : moves) {
+			if (probe(state.advance(move)).orElse(null) == wanted) return OptionalInt.of(move);
+		}
+		return OptionalInt.empty();
+	}
+
+	// the offset of the state's position or -1 if it is not in the tablebase
+	private long offset(GameState state) {
+		if (layout == null || !layout.fits(state.graph())) return -1;
+		int detectives = state.players().size() - 1;
+		int remaining = state.roundsRemaining();
+		if (detectives != layout.detectives || remaining < 0 || remaining > layout.horizon)
+			return -1;
+		int layer = layout.layer(remaining, state.currentIndex());
+		if ((completed & (1 << layer)) == 0) return -1;
+		int[] locations = new int[detectives + 1];
+		for (int i = 0; i <= detectives; i++) {
+			Colour colour = state.players().get(i);
+			int needed = i == 0 ? remaining : remaining + 1;
+			if (state.tickets(colour, Ticket.TAXI) < needed
+					|| state.tickets(colour, Ticket.BUS) < needed
+					|| state.tickets(colour, Ticket.UNDERGROUND) < needed) return -1;
+			locations[i] = state.locationIndex(i);
+		}
+		int doubles = Math.min(layout.horizon / 2, state.tickets(Colour.BLACK, Ticket.DOUBLE));
+		int secrets = Math.min(layout.horizon, state.tickets(Colour.BLACK, Ticket.SECRET));
+		return layout.offset(layer, doubles, secrets, locations);
+	}
+
+	/**
+	 * @return true if every layer has been generated
+	 */
+	public boolean isComplete() {
+		return layout != null && completed == layout.allLayers();
+	}
+
+	@Override
+	public String toString() {
+		if (layout == null) return "Tablebase{none}";
+		return "Tablebase{detectives=" + layout.detectives + ", horizon=" + layout.horizon
+				+ ", nodes=" + layout.nodes + ", complete=" + isComplete() + "}";
+	}
+
+	/**
+	 * Where positions are in the file: layers ordered by rounds remaining and
+	 * player to move, then Mr.X's double and secret tickets, then the
+	 * location of every player as digits of a number in base of the number
+	 * of nodes, Mr.X's the least significant
+	 */
+	static final class Layout {
+
+		final int nodes;
+		final int edgeSlots;
+		final int detectives;
+		final int horizon;
+		final long locations;
+		final long layerSize;
+		final int layers;
+
+		Layout(CompiledGraph<Transport> graph, int detectives, int horizon) {
+			this(graph.size(), graph.edgeSlots(), detectives, horizon);
+		}
+
+		private Layout(int nodes, int edgeSlots, int detectives, int horizon) {
+			if (detectives < 1) throw new IllegalArgumentException("Invalid detectives " + detectives);
+			if (horizon < 1) throw new IllegalArgumentException("Invalid horizon " + horizon);
+			this.nodes = nodes;
+			this.edgeSlots = edgeSlots;
+			this.detectives = detectives;
+			this.horizon = horizon;
+			this.layers = (horizon + 1) * (detectives + 1);
+			if (layers >= Integer.SIZE)
+				throw new IllegalArgumentException("Too many layers " + layers);
+			long count = 1;
+			for (int i = 0; i <= detectives; i++) {
+				count *= nodes;
+				if (count > Integer.MAX_VALUE) break;
+			}
+			this.locations = count;
+			this.layerSize = (horizon / 2 + 1) * (horizon + 1) * count;
+			if (count > Integer.MAX_VALUE || HEADER + layers * layerSize > Integer.MAX_VALUE)
+				throw new IllegalArgumentException(
+						"Tablebase of " + detectives + " detectives on " + nodes + " nodes with "
+								+ horizon + " rounds is too large to map");
+		}
+
+		static Layout read(ByteBuffer header) throws IOException {
+			if (header.getInt(0) != MAGIC) throw new IOException("Not a tablebase");
+			int version = header.getInt(4);
+			if (version != VERSION) throw new IOException("Unsupported tablebase version " + version);
+			try {
+				return new Layout(header.getInt(8), header.getInt(12), header.getInt(16),
+						header.getInt(20));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid tablebase header", e);
+			}
+		}
+
+		void write(ByteBuffer header) {
+			header.putInt(0, MAGIC);
+			header.putInt(4, VERSION);
+			header.putInt(8, nodes);
+			header.putInt(12, edgeSlots);
+			header.putInt(16, detectives);
+			header.putInt(20, horizon);
+		}
+
+		boolean matches(Layout that) {
+			return nodes == that.nodes && edgeSlots == that.edgeSlots
+					&& detectives == that.detectives && horizon == that.horizon;
+		}
+
+		boolean fits(CompiledGraph<Transport> graph) {
+			return graph.size() == nodes && graph.edgeSlots() == edgeSlots;
+		}
+
+		long size() {
+			return HEADER + layers * layerSize;
+		}
+
+		int allLayers() {
+			return (1 << layers) - 1;
+		}
+
+		int layer(int remaining, int turn) {
+			return remaining * (detectives + 1) + turn;
+		}
+
+		long offset(int layer, int doubles, int secrets, int[] locations) {
+			long position = 0;
+			for (int i = locations.length - 1; i >= 0; i--)
+				position = position * nodes + locations[i];
+			return HEADER + layer * layerSize
+					+ (doubles * (horizon + 1L) + secrets) * this.locations + position;
+		}
+
+	}
+
+}
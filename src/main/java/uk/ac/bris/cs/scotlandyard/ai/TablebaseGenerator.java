@@ -0,0 +1,279 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Generates a {@link Tablebase} offline by retrograde analysis: positions
+ * with no rounds remaining are solved first, then every layer only from the
+ * layers its moves lead to, so no position is ever searched twice.
+ * <br>
+ * The rules are those of {@link uk.ac.bris.cs.scotlandyard.model.GameState},
+ * with taxi, bus and underground tickets that never run out. Layers are
+ * solved in parallel straight into the memory mapped file and marked
+ * complete in its header once written, so an interrupted generation resumes
+ * at the first incomplete layer.
+ * <br>
+ * Run with
+ * {@code TablebaseGenerator <output> [detectives] [horizon] [threads]},
+ * defaulting to 2 detectives, 3 rounds and all available processors, then
+ * point the {@code scotlandyard.ai.tablebase} property at the output.
+ */
+public final class TablebaseGenerator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TablebaseGenerator.class);
+	private static final int CHUNK = 1 << 14;
+	private static final int SECRET = Ticket.SECRET.ordinal();
+	private static final int DOUBLE = Ticket.DOUBLE.ordinal();
+
+	private final CompiledGraph<Transport> graph;
+	private final Tablebase.Layout layout;
+
+	/**
+	 * @param graph the graph of the games; not null
+	 * @param detectives the number of detectives; positive
+	 * @param horizon the most rounds remaining of solved positions; positive
+	 * @throws IllegalArgumentException if the tablebase would be too large
+	 *         to map into memory
+	 */
+	public TablebaseGenerator(Graph<Integer, Transport> graph, int detectives, int horizon) {
+		this.graph = CompiledGraph.of(requireNonNull(graph), Transport.class);
+		if (this.graph.size() > MoveGenerator.MAX_NODES)
+			throw new IllegalArgumentException("Graph too large " + this.graph.size());
+		this.layout = new Tablebase.Layout(this.graph, detectives, horizon);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println("Usage: TablebaseGenerator <output> [detectives] [horizon] [threads]");
+			System.exit(2);
+		}
+		int detectives = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int horizon = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int threads = args.length > 3 ? Integer.parseInt(args[3])
+				: Runtime.getRuntime().availableProcessors();
+		TablebaseGenerator generator = new TablebaseGenerator(StandardGame.standardGraph(),
+				detectives, horizon);
+		int solved = generator.generate(Paths.get(args[0]), threads);
+		LOG.info("Solved {} layers of {}", solved, Tablebase.open(Paths.get(args[0])));
+	}
+
+	/**
+	 * Solves every layer the file does not have yet, creating the file if it
+	 * does not exist
+	 *
+	 * @param path the tablebase file; not null
+	 * @param parallelism the number of threads solving a layer; positive
+	 * @return the number of layers solved, 0 if the file was complete
+	 * @throws IOException if the file cannot be written or holds another
+	 *         tablebase
+	 * @throws InterruptedException if interrupted while solving a layer
+	 */
+	public int generate(Path path, int parallelism) throws IOException, InterruptedException {
+		if (parallelism < 1) throw new IllegalArgumentException("Invalid parallelism " + parallelism);
+		try (FileChannel channel = FileChannel.open(requireNonNull(path),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			boolean created = channel.size() == 0;
+			if (!created) {
+				Tablebase.Layout existing = Tablebase.Layout
+						.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, Tablebase.HEADER));
+				if (!existing.matches(layout) || channel.size() != layout.size())
+					throw new IOException("Another tablebase at " + path);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, layout.size());
+			if (created) {
+				layout.write(buffer);
+				buffer.putInt(Tablebase.COMPLETED, 0);
+				buffer.force();
+			}
+			return generate(buffer, parallelism);
+		}
+	}
+
+	private int generate(MappedByteBuffer buffer, int parallelism) throws InterruptedException {
+		int completed = buffer.getInt(Tablebase.COMPLETED);
+		int solved = 0;
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (int remaining = 0; remaining <= layout.horizon; remaining++) {
+				// Mr.X's moves lead to earlier rounds, detectives' to the next player
+				for (int i = 0; i <= layout.detectives; i++) {
+					int turn = i == 0 ? 0 : layout.detectives + 1 - i;
+					int layer = layout.layer(remaining, turn);
+					if ((completed & (1 << layer)) != 0) continue;
+					long start = System.nanoTime();
+					int chunks = (int) ((layout.layerSize + CHUNK - 1) / CHUNK);
+					int rounds = remaining;
+					ThreadLocal<Solver> solvers = ThreadLocal.withInitial(() -> new Solver(buffer));
+					pool.submit(() -> IntStream.range(0, chunks).parallel()
+							.forEach(chunk -> solvers.get().solve(rounds, turn, chunk))).get();
+					buffer.force();
+					completed |= 1 << layer;
+					buffer.putInt(Tablebase.COMPLETED, completed);
+					buffer.force();
+					solved++;
+					LOG.info("Solved layer {} ({} rounds remaining, player {}) in {} ms", layer,
+							remaining, turn, (System.nanoTime() - start) / 1_000_000);
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Solving failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return solved;
+	}
+
+	/**
+	 * Solves positions of one layer at a time on a single thread, reading
+	 * the layers already solved from the shared buffer
+	 */
+	private final class Solver {
+
+		private final MappedByteBuffer buffer;
+		private final MoveGenerator generator = new MoveGenerator(graph);
+		private final long[] occupied = generator.newOccupancy();
+		private final int[] locations = new int[layout.detectives + 1];
+		private final int[] mrXTickets = new int[Ticket.values().length];
+		private final int[] detectiveTickets = new int[Ticket.values().length];
+
+		Solver(MappedByteBuffer buffer) {
+			this.buffer = buffer;
+			int plenty = layout.horizon + 2;
+			for (Ticket ticket : Ticket.values()) {
+				if (ticket.ordinal() == DOUBLE || ticket.ordinal() == SECRET) continue;
+				mrXTickets[ticket.ordinal()] = plenty;
+				detectiveTickets[ticket.ordinal()] = plenty;
+			}
+		}
+
+		void solve(int remaining, int turn, int chunk) {
+			int layer = layout.layer(remaining, turn);
+			long from = (long) chunk * CHUNK;
+			long to = Math.min(layout.layerSize, from + CHUNK);
+			for (long position = from; position < to; position++) {
+				long rest = position / layout.locations;
+				int secrets = (int) (rest % (layout.horizon + 1));
+				int doubles = (int) (rest / (layout.horizon + 1));
+				long digits = position % layout.locations;
+				for (int i = 0; i < locations.length; i++) {
+					locations[i] = (int) (digits % layout.nodes);
+					digits /= layout.nodes;
+				}
+				if (!isValid()) continue;
+				byte value = solve(remaining, turn, doubles, secrets);
+				buffer.put((int) (Tablebase.HEADER + layer * layout.layerSize + position), value);
+			}
+		}
+
+		// detectives never share a node
+		private boolean isValid() {
+			for (int i = 1; i < locations.length; i++) {
+				for (int j = i + 1; j < locations.length; j++) {
+					if (locations[i] == locations[j]) return false;
+				}
+			}
+			return true;
+		}
+
+		// same order of checks as GameState, Mr.X wins ties
+		private byte solve(int remaining, int turn, int doubles, int secrets) {
+			occupyDetectives();
+			boolean moveless = true;
+			for (int i = 1; i < locations.length && moveless; i++) {
+				if (generator.generate(locations[i], occupied, detectiveTickets, false) > 0)
+					moveless = false;
+			}
+			if (moveless || (remaining == 0 && turn == 0)) return Tablebase.MRX_WINS;
+			mrXTickets[DOUBLE] = doubles;
+			mrXTickets[SECRET] = secrets;
+			boolean stuck = turn == 0
+					&& generator.generate(locations[0], occupied, mrXTickets, false) == 0;
+			boolean captured = false;
+			for (int i = 1; i < locations.length; i++) {
+				if (locations[i] == locations[0]) captured = true;
+			}
+			if (stuck || captured) return Tablebase.DETECTIVES_WIN;
+			return turn == 0 ? solveMrX(remaining, doubles, secrets)
+					: solveDetective(remaining, turn, doubles, secrets);
+		}
+
+		private byte solveMrX(int remaining, int doubles, int secrets) {
+			int count = generator.generate(locations[0], occupied, mrXTickets, remaining >= 2);
+			int origin = locations[0];
+			try {
+				for (int i = 0; i < count; i++) {
+					int move = generator.get(i);
+					int used = MoveGenerator.firstTicket(move).ordinal() == SECRET ? 1 : 0;
+					if (MoveGenerator.isDouble(move)) {
+						if (MoveGenerator.secondTicket(move).ordinal() == SECRET) used++;
+						locations[0] = MoveGenerator.secondDestination(move);
+						if (successor(remaining - 2, 1, doubles - 1, secrets - used)
+								== Tablebase.MRX_WINS) return Tablebase.MRX_WINS;
+					} else {
+						locations[0] = MoveGenerator.firstDestination(move);
+						if (successor(remaining - 1, 1, doubles, secrets - used)
+								== Tablebase.MRX_WINS) return Tablebase.MRX_WINS;
+					}
+				}
+			} finally {
+				locations[0] = origin;
+			}
+			return Tablebase.DETECTIVES_WIN;
+		}
+
+		private byte solveDetective(int remaining, int turn, int doubles, int secrets) {
+			int next = turn == layout.detectives ? 0 : turn + 1;
+			int count = generator.generate(locations[turn], occupied, detectiveTickets, false);
+			if (count == 0) return successor(remaining, next, doubles, secrets);
+			int origin = locations[turn];
+			try {
+				for (int i = 0; i < count; i++) {
+					locations[turn] = MoveGenerator.firstDestination(generator.get(i));
+					if (successor(remaining, next, doubles, secrets) == Tablebase.DETECTIVES_WIN)
+						return Tablebase.DETECTIVES_WIN;
+				}
+			} finally {
+				locations[turn] = origin;
+			}
+			return Tablebase.MRX_WINS;
+		}
+
+		private byte successor(int remaining, int turn, int doubles, int secrets) {
+			byte value = buffer.get((int) layout.offset(layout.layer(remaining, turn), doubles,
+					secrets, locations));
+			if (value == Tablebase.UNSOLVED)
+				throw new IllegalStateException("Successor not solved in layer "
+						+ layout.layer(remaining, turn));
+			return value;
+		}
+
+		private void occupyDetectives() {
+			Arrays.fill(occupied, 0L);
+			for (int i = 1; i < locations.length; i++)
+				MoveGenerator.occupy(occupied, locations[i]);
+		}
+
+	}
+
+}
@@ -0,0 +1,242 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Spectator} passing every event on to another spectator on a thread
+ * of its own, so a slow spectator never holds up the game.
+ * <br>
+ * Events wait in a bounded ring buffer and are delivered in the order they
+ * happened, each with a {@link ViewSnapshot} of the game taken when it
+ * happened. What happens to an event arriving at a full buffer is up to the
+ * {@link Backpressure}; game over is never dropped. Exceptions thrown by the
+ * spectator are logged and do not stop delivery.
+ * <br>
+ * {@link #close()} delivers the events still waiting and stops the thread.
+ */
+public final class AsyncSpectator implements Spectator, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncSpectator.class);
+
+	/**
+	 * What to do with an event when the buffer is full
+	 */
+	public enum Backpressure {
+		/**
+		 * Wait for the spectator to catch up
+		 */
+		BLOCK,
+		/**
+		 * Drop the event
+		 */
+		DROP,
+		/**
+		 * Replace the newest waiting event if it is of the same kind, e.g. so a
+		 * board is only redrawn for the latest move; otherwise wait
+		 */
+		COALESCE
+	}
+
+	private enum Kind { MOVE, ROUND, ROTATION, GAME_OVER }
+
+	private static final class Event {
+		final Kind kind;
+		final ViewSnapshot view;
+		final Move move;
+		final int round;
+		final Set<Colour> winners;
+
+		Event(Kind kind, ViewSnapshot view, Move move, int round, Set<Colour> winners) {
+			this.kind = kind;
+			this.view = view;
+			this.move = move;
+			this.round = round;
+			this.winners = winners;
+		}
+	}
+
+	private final Spectator spectator;
+	private final Backpressure backpressure;
+	private final Event[] ring;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Thread thread;
+	private int head;
+	private int count;
+	private long dropped;
+	private boolean closed;
+
+	private AsyncSpectator(Spectator spectator, int capacity, Backpressure backpressure) {
+		if (capacity < 1) throw new IllegalArgumentException("Invalid capacity " + capacity);
+		this.spectator = requireNonNull(spectator);
+		this.backpressure = requireNonNull(backpressure);
+		this.ring = new Event[capacity];
+		this.thread = new Thread(this::run,
+				"spectator-" + spectator.getClass().getSimpleName());
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * @param spectator the spectator to deliver to; not null
+	 * @param capacity the number of events that may wait; positive
+	 * @param backpressure what to do when that many are waiting; not null
+	 * @return a started spectator; never null
+	 */
+	public static AsyncSpectator of(Spectator spectator, int capacity, Backpressure backpressure) {
+		AsyncSpectator async = new AsyncSpectator(spectator, capacity, backpressure);
+		async.thread.start();
+		return async;
+	}
+
+	/**
+	 * @return the spectator events are delivered to; never null
+	 */
+	public Spectator spectator() {
+		return spectator;
+	}
+
+	/**
+	 * @return the number of events dropped or coalesced away so far
+	 */
+	public long dropped() {
+		lock.lock();
+		try {
+			return dropped;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void onMoveMade(ScotlandYardView view, Move move) {
+		offer(new Event(Kind.MOVE, ViewSnapshot.of(view), move, 0, null));
+	}
+
+	@Override
+	public void onRoundStarted(ScotlandYardView view, int round) {
+		offer(new Event(Kind.ROUND, ViewSnapshot.of(view), null, round, null));
+	}
+
+	@Override
+	public void onRotationComplete(ScotlandYardView view) {
+		offer(new Event(Kind.ROTATION, ViewSnapshot.of(view), null, 0, null));
+	}
+
+	@Override
+	public void onGameOver(ScotlandYardView view, Set<Colour> winningPlayers) {
+		Set<Colour> winners = EnumSet.noneOf(Colour.class);
+		winners.addAll(winningPlayers);
+		offer(new Event(Kind.GAME_OVER, ViewSnapshot.of(view), null, 0, unmodifiableSet(winners)));
+	}
+
+	private void offer(Event event) {
+		lock.lock();
+		try {
+			while (count == ring.length && !closed) {
+				if (event.kind != Kind.GAME_OVER) {
+					if (backpressure == Backpressure.DROP) {
+						dropped++;
+						return;
+					}
+					int newest = (head + count - 1) % ring.length;
+					if (backpressure == Backpressure.COALESCE && ring[newest].kind == event.kind) {
+						ring[newest] = event;
+						dropped++;
+						return;
+					}
+				}
+				notFull.awaitUninterruptibly();
+			}
+			if (closed) {
+				dropped++;
+				return;
+			}
+			ring[(head + count) % ring.length] = event;
+			count++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void run() {
+		while (true) {
+			Event event;
+			lock.lock();
+			try {
+				while (count == 0 && !closed)
+					notEmpty.awaitUninterruptibly();
+				if (count == 0) return;
+				event = ring[head];
+				ring[head] = null;
+				head = (head + 1) % ring.length;
+				count--;
+				notFull.signal();
+			} finally {
+				lock.unlock();
+			}
+			try {
+				deliver(event);
+			} catch (RuntimeException e) {
+				LOG.warn("{} failed to handle {}", spectator, event.kind, e);
+			}
+		}
+	}
+
+	private void deliver(Event event) {
+		switch (event.kind) {
+			case MOVE:
+				spectator.onMoveMade(event.view, event.move);
+				break;
+			case ROUND:
+				spectator.onRoundStarted(event.view, event.round);
+				break;
+			case ROTATION:
+				spectator.onRotationComplete(event.view);
+				break;
+			case GAME_OVER:
+				spectator.onGameOver(event.view, event.winners);
+				break;
+		}
+	}
+
+	/**
+	 * Delivers the events still waiting, then stops the thread; later events
+	 * are dropped. Waits for the delivery unless called from the spectator's
+	 * own thread.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		if (Thread.currentThread() == thread) return;
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncSpectator{" + spectator + ", " + backpressure + ", capacity=" + ring.length
+				+ "}";
+	}
+
+}
@@ -10,6 +10,8 @@ public class DoubleMove extends Move {
 	private static final long serialVersionUID = 8857602351332595005L;
 	private final TicketMove firstMove;
 	private final TicketMove secondMove;
+	// cached, 0 until computed; transient as enum hash codes differ between runs
+	private transient int hash;
 
 	/**
 	 * Create a new double move from two individual ticket moves
@@ -86,7 +88,13 @@ public class DoubleMove extends Move {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(super.hashCode(), firstMove, secondMove);
+		int h = hash;
+		if (h == 0) {
+			h = 31 * (31 * (31 + super.hashCode()) + Objects.hashCode(firstMove))
+					+ Objects.hashCode(secondMove);
+			hash = h;
+		}
+		return h;
 	}
 
 	@Override
@@ -0,0 +1,440 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The record of a game: how it was set up and every move played, with Mr.X's
+ * actual destinations. See {@link GameReplay} to replay it.
+ * <br>
+ * Logs are append-only and binary, made of unsigned LEB128 varints: the magic
+ * bytes {@code SYGL} and the version, then the number of rounds and the
+ * reveal rounds as a bit set, then the number of players and each player's
+ * colour, location and ticket counts by {@link Ticket#ordinal()}. Events
+ * follow until the end of the log, each starting with
+ * {@code colour << 2 | kind}: a pass, a ticket move followed by
+ * {@code destination << 3 | ticket}, a double move followed by two of those,
+ * or the end of the game followed by the winners as a bit set of colours.
+ * A move takes 2 to 5 bytes.
+ * <br>
+ * A log is written as the game goes by a {@link Recorder} and read back
+ * whole; a log that ends between events is of a game still running.
+ */
+public final class GameLog {
+
+	private static final byte[] MAGIC = { 'S', 'Y', 'G', 'L' };
+	private static final int VERSION = 1;
+
+	private static final int PASS = 0;
+	private static final int TICKET = 1;
+	private static final int DOUBLE = 2;
+	private static final int END = 3;
+
+	private static final Colour[] COLOURS = Colour.values();
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private final List<Boolean> rounds;
+	private final List<Colour> players;
+	private final int[] locations;
+	private final int[][] tickets;
+	private final byte[] events;
+	private final int moves;
+	private final Set<Colour> winners;
+
+	private GameLog(List<Boolean> rounds, List<Colour> players, int[] locations,
+			int[][] tickets, byte[] events) throws IOException {
+		this.rounds = rounds;
+		this.players = players;
+		this.locations = locations;
+		this.tickets = tickets;
+		this.events = events;
+		// validates the events once, so decoding them later cannot fail
+		ByteArrayInputStream input = new ByteArrayInputStream(events);
+		List<Move> decoded = new ArrayList<>();
+		this.winners = decode(input, decoded);
+		this.moves = decoded.size();
+	}
+
+	/**
+	 * Reads a whole log
+	 *
+	 * @param input the log, not closed; not null
+	 * @return the log; never null
+	 * @throws IOException if the log cannot be read or is malformed
+	 */
+	public static GameLog read(InputStream input) throws IOException {
+		for (byte magic : MAGIC) {
+			if (input.read() != (magic & 0xff)) throw new IOException("Not a game log");
+		}
+		int version = readVarint(input);
+		if (version != VERSION) throw new IOException("Unsupported game log version " + version);
+		int size = readVarint(input);
+		byte[] reveal = new byte[(size + 7) / 8];
+		readFully(input, reveal);
+		List<Boolean> rounds = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			rounds.add((reveal[i / 8] & 1 << i % 8) != 0);
+		int count = readVarint(input);
+		if (count < 2 || count > COLOURS.length) throw new IOException("Invalid player count");
+		List<Colour> players = new ArrayList<>(count);
+		int[] locations = new int[count];
+		int[][] tickets = new int[count][TICKETS.length];
+		for (int i = 0; i < count; i++) {
+			players.add(colour(readVarint(input)));
+			locations[i] = readVarint(input);
+			for (int t = 0; t < TICKETS.length; t++)
+				tickets[i][t] = readVarint(input);
+		}
+		ByteArrayOutputStream events = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int read = input.read(buffer); read != -1; read = input.read(buffer))
+			events.write(buffer, 0, read);
+		return new GameLog(unmodifiableList(rounds), unmodifiableList(players), locations,
+				tickets, events.toByteArray());
+	}
+
+	/**
+	 * @param bytes a whole log; not null
+	 * @return the log; never null
+	 * @throws IOException if the log is malformed
+	 */
+	public static GameLog read(byte[] bytes) throws IOException {
+		return read(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * Starts a log, writing the setup of the game; register the recorder with
+	 * the game and let it use {@link Recorder#mrX()} as Mr.X's configuration
+	 *
+	 * @param output where the log is written, flushed when the game is over
+	 *        but not closed; not null
+	 * @param rounds reveal and hidden rounds of the game; not null
+	 * @param mrX Mr.X's configuration; not null
+	 * @param detectives the detectives' configurations; not null
+	 * @return the recorder; never null
+	 * @throws UncheckedIOException if the log cannot be written
+	 */
+	public static Recorder record(OutputStream output, List<Boolean> rounds,
+			PlayerConfiguration mrX, List<PlayerConfiguration> detectives) {
+		return new Recorder(output, rounds, mrX, detectives);
+	}
+
+	/**
+	 * @return reveal and hidden rounds of the game; never null
+	 */
+	public List<Boolean> rounds() {
+		return rounds;
+	}
+
+	/**
+	 * @return the colours of the players in order of play; never null
+	 */
+	public List<Colour> players() {
+		return players;
+	}
+
+	/**
+	 * @param index the index of the player in {@link #players()}
+	 * @param player the player to use
+	 * @return the player's configuration at the start of the game; never null
+	 */
+	public PlayerConfiguration configuration(int index, Player player) {
+		Map<Ticket, Integer> counts = new EnumMap<>(Ticket.class);
+		for (Ticket ticket : TICKETS)
+			counts.put(ticket, tickets[index][ticket.ordinal()]);
+		return new PlayerConfiguration.Builder(players.get(index)).using(player).with(counts)
+				.at(locations[index]).build();
+	}
+
+	/**
+	 * @return the number of moves played, a double move counting as one
+	 */
+	public int size() {
+		return moves;
+	}
+
+	/**
+	 * @return the moves played in order, with Mr.X's actual destinations;
+	 *         never null
+	 */
+	public List<Move> moves() {
+		List<Move> decoded = new ArrayList<>(moves);
+		try {
+			decode(new ByteArrayInputStream(events), decoded);
+		} catch (IOException e) {
+			throw new AssertionError("Events were validated", e);
+		}
+		return unmodifiableList(decoded);
+	}
+
+	/**
+	 * @return true if the log ends with the end of the game
+	 */
+	public boolean isFinished() {
+		return winners != null;
+	}
+
+	/**
+	 * @return the winners; empty if the game is not finished
+	 */
+	public Set<Colour> winners() {
+		return winners == null ? unmodifiableSet(EnumSet.noneOf(Colour.class)) : winners;
+	}
+
+	/**
+	 * @return the log in its binary form; never null
+	 */
+	public byte[] toBytes() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(events.length + 64);
+		try {
+			writeHeader(output, rounds, players, locations, tickets);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		output.write(events, 0, events.length);
+		return output.toByteArray();
+	}
+
+	@Override
+	public String toString() {
+		return "GameLog{players=" + players + ", moves=" + moves + ", winners=" + winners()
+				+ ", bytes=" + events.length + "}";
+	}
+
+	// decodes events into moves, returns the winners or null if the game did not end
+	private static Set<Colour> decode(InputStream input, List<Move> moves) throws IOException {
+		for (int head = input.read(); head != -1; head = input.read()) {
+			head = continueVarint(input, head);
+			Colour colour = colour(head >>> 2);
+			switch (head & 3) {
+				case PASS:
+					moves.add(new PassMove(colour));
+					break;
+				case TICKET:
+					moves.add(readTicketMove(input, colour));
+					break;
+				case DOUBLE:
+					moves.add(new DoubleMove(colour, readTicketMove(input, colour),
+							readTicketMove(input, colour)));
+					break;
+				default:
+					int mask = readVarint(input);
+					Set<Colour> winners = EnumSet.noneOf(Colour.class);
+					for (Colour winner : COLOURS) {
+						if ((mask & 1 << winner.ordinal()) != 0) winners.add(winner);
+					}
+					if (input.read() != -1) throw new IOException("Events after the end of the game");
+					return unmodifiableSet(winners);
+			}
+		}
+		return null;
+	}
+
+	private static TicketMove readTicketMove(InputStream input, Colour colour) throws IOException {
+		int value = readVarint(input);
+		int ticket = value & 7;
+		if (ticket >= TICKETS.length) throw new IOException("Invalid ticket " + ticket);
+		return new TicketMove(colour, TICKETS[ticket], value >>> 3);
+	}
+
+	private static void writeHeader(OutputStream output, List<Boolean> rounds,
+			List<Colour> players, int[] locations, int[][] tickets) throws IOException {
+		output.write(MAGIC);
+		writeVarint(output, VERSION);
+		writeVarint(output, rounds.size());
+		byte[] reveal = new byte[(rounds.size() + 7) / 8];
+		for (int i = 0; i < rounds.size(); i++) {
+			if (rounds.get(i)) reveal[i / 8] |= 1 << i % 8;
+		}
+		output.write(reveal);
+		writeVarint(output, players.size());
+		for (int i = 0; i < players.size(); i++) {
+			writeVarint(output, players.get(i).ordinal());
+			writeVarint(output, locations[i]);
+			for (int count : tickets[i])
+				writeVarint(output, count);
+		}
+	}
+
+	private static Colour colour(int ordinal) throws IOException {
+		if (ordinal >= COLOURS.length) throw new IOException("Invalid colour " + ordinal);
+		return COLOURS[ordinal];
+	}
+
+	private static void readFully(InputStream input, byte[] bytes) throws IOException {
+		for (int at = 0; at < bytes.length;) {
+			int read = input.read(bytes, at, bytes.length - at);
+			if (read == -1) throw new EOFException("Truncated game log");
+			at += read;
+		}
+	}
+
+	private static int readVarint(InputStream input) throws IOException {
+		int first = input.read();
+		if (first == -1) throw new EOFException("Truncated game log");
+		return continueVarint(input, first);
+	}
+
+	private static int continueVarint(InputStream input, int first) throws IOException {
+		int value = first & 0x7f;
+		for (int shift = 7, b = first; (b & 0x80) != 0; shift += 7) {
+			if (shift > 28) throw new IOException("Varint too long");
+			b = input.read();
+			if (b == -1) throw new EOFException("Truncated game log");
+			value |= (b & 0x7f) << shift;
+		}
+		if (value < 0) throw new IOException("Negative varint");
+		return value;
+	}
+
+	private static void writeVarint(OutputStream output, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			output.write(value & 0x7f | 0x80);
+			value >>>= 7;
+		}
+		output.write(value);
+	}
+
+	/**
+	 * Writes the log of a game as it is played. Spectators only see where
+	 * Mr.X is known to be, so Mr.X's moves are taken from the callback of
+	 * {@link #mrX()} and written when the game confirms them.
+	 * <br>
+	 * Not thread safe; the game must notify it from one thread at a time.
+	 */
+	public static final class Recorder implements Spectator {
+
+		private final OutputStream output;
+		private final PlayerConfiguration mrX;
+		private final byte[] scratch = new byte[16];
+		// Mr.X's last chosen move and the parts of a double move still to be notified
+		private Move chosen;
+		private int halves;
+
+		private Recorder(OutputStream output, List<Boolean> rounds, PlayerConfiguration mrX,
+				List<PlayerConfiguration> detectives) {
+			this.output = requireNonNull(output);
+			if (requireNonNull(mrX).colour != Colour.BLACK)
+				throw new IllegalArgumentException("MrX should be Black");
+			List<PlayerConfiguration> configurations = new ArrayList<>();
+			configurations.add(mrX);
+			configurations.addAll(detectives);
+			List<Colour> players = new ArrayList<>();
+			int[] locations = new int[configurations.size()];
+			int[][] tickets = new int[configurations.size()][TICKETS.length];
+			for (int i = 0; i < configurations.size(); i++) {
+				PlayerConfiguration configuration = configurations.get(i);
+				players.add(configuration.colour);
+				locations[i] = configuration.location;
+				for (Ticket ticket : TICKETS) {
+					Integer count = configuration.tickets.get(ticket);
+					tickets[i][ticket.ordinal()] = count == null ? 0 : count;
+				}
+			}
+			try {
+				writeHeader(output, requireNonNull(rounds), players, locations, tickets);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			Player player = requireNonNull(mrX.player);
+			this.mrX = new PlayerConfiguration.Builder(Colour.BLACK)
+					.using((view, location, moves, callback) -> player.makeMove(view, location,
+							moves, move -> {
+								chosen = move;
+								callback.accept(move);
+							}))
+					.with(mrX.tickets).at(mrX.location).build();
+		}
+
+		/**
+		 * @return Mr.X's configuration to create the game with; never null
+		 */
+		public PlayerConfiguration mrX() {
+			return mrX;
+		}
+
+		@Override
+		public void onMoveMade(ScotlandYardView view, Move move) {
+			if (halves > 0) {
+				halves--;
+				return;
+			}
+			if (move.colour().isMrX()) {
+				if (chosen == null)
+					throw new IllegalStateException("Mr.X did not play through the recorder");
+				move = chosen;
+				chosen = null;
+			}
+			int at = 0;
+			if (move instanceof DoubleMove) {
+				DoubleMove doubleMove = (DoubleMove) move;
+				at = put(at, move.colour().ordinal() << 2 | DOUBLE);
+				at = put(at, ticketMove(doubleMove.firstMove()));
+				at = put(at, ticketMove(doubleMove.secondMove()));
+				halves = 2;
+			} else if (move instanceof TicketMove) {
+				at = put(at, move.colour().ordinal() << 2 | TICKET);
+				at = put(at, ticketMove((TicketMove) move));
+			} else {
+				at = put(at, move.colour().ordinal() << 2 | PASS);
+			}
+			write(at);
+		}
+
+		@Override
+		public void onGameOver(ScotlandYardView view, Set<Colour> winningPlayers) {
+			int mask = 0;
+			for (Colour colour : winningPlayers)
+				mask |= 1 << colour.ordinal();
+			write(put(put(0, END), mask));
+			try {
+				output.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private static int ticketMove(TicketMove move) {
+			return move.destination() << 3 | move.ticket().ordinal();
+		}
+
+		private int put(int at, int value) {
+			while ((value & ~0x7f) != 0) {
+				scratch[at++] = (byte) (value & 0x7f | 0x80);
+				value >>>= 7;
+			}
+			scratch[at++] = (byte) value;
+			return at;
+		}
+
+		private void write(int length) {
+			try {
+				output.write(scratch, 0, length);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "GameLog.Recorder{" + output + "}";
+		}
+
+	}
+
+}
@@ -0,0 +1,135 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+
+/**
+ * Replays a {@link GameLog}, recreating the game after any number of its
+ * moves.
+ * <br>
+ * Every move is checked once when the replay is created, keeping a
+ * {@link GameState} every few moves, so {@link #stateAt(int)} only plays the
+ * moves since the closest of those. A {@link ScotlandYardModel} keeps its
+ * history privately, so {@link #modelAt(int)} plays every move from the
+ * start through the model's own callbacks.
+ */
+public final class GameReplay {
+
+	/**
+	 * Default number of moves between two kept states
+	 */
+	public static final int DEFAULT_INTERVAL = 16;
+
+	private final GameLog log;
+	private final Graph<Integer, Transport> graph;
+	private final List<Move> moves;
+	private final int interval;
+	private final List<GameState> snapshots = new ArrayList<>();
+
+	/**
+	 * @param log the log to replay; not null
+	 * @param graph the graph the game was played on; not null
+	 * @throws IllegalArgumentException if a move of the log is illegal
+	 */
+	public GameReplay(GameLog log, Graph<Integer, Transport> graph) {
+		this(log, graph, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * @param log the log to replay; not null
+	 * @param graph the graph the game was played on; not null
+	 * @param interval the number of moves between two kept states; positive
+	 * @throws IllegalArgumentException if a move of the log is illegal
+	 */
+	public GameReplay(GameLog log, Graph<Integer, Transport> graph, int interval) {
+		if (interval < 1) throw new IllegalArgumentException("Invalid interval " + interval);
+		this.log = requireNonNull(log);
+		this.graph = requireNonNull(graph);
+		this.moves = log.moves();
+		this.interval = interval;
+		GameState state = initial();
+		for (int i = 0; i < moves.size(); i++) {
+			if (i % interval == 0) snapshots.add(state);
+			state = state.advance(moves.get(i));
+		}
+		if (moves.size() % interval == 0) snapshots.add(state);
+		if (log.isFinished() && !(state.isGameOver() && state.winners().equals(log.winners())))
+			throw new IllegalArgumentException("Log ends with " + log.winners()
+					+ " winning but the moves end in " + state);
+	}
+
+	private GameState initial() {
+		List<Colour> players = log.players();
+		PlayerConfiguration[] detectives = new PlayerConfiguration[players.size() - 2];
+		for (int i = 0; i < detectives.length; i++)
+			detectives[i] = log.configuration(i + 2, GameState.NO_PLAYER);
+		return GameState.of(log.rounds(), graph, log.configuration(0, GameState.NO_PLAYER),
+				log.configuration(1, GameState.NO_PLAYER), detectives);
+	}
+
+	/**
+	 * @return the log being replayed; never null
+	 */
+	public GameLog log() {
+		return log;
+	}
+
+	/**
+	 * @return the number of moves, see {@link GameLog#size()}
+	 */
+	public int size() {
+		return moves.size();
+	}
+
+	/**
+	 * @param move the number of moves to play; in {@code [0, size()]}
+	 * @return the state after the moves; never null
+	 */
+	public GameState stateAt(int move) {
+		checkMove(move);
+		GameState state = snapshots.get(move / interval);
+		for (int i = move / interval * interval; i < move; i++)
+			state = state.advance(moves.get(i));
+		return state;
+	}
+
+	/**
+	 * Creates the game with the logged setup and plays the moves. Unless the
+	 * moves end a rotation, the model is left waiting for the next player's
+	 * move, which never comes.
+	 *
+	 * @param move the number of moves to play; in {@code [0, size()]}
+	 * @return the model after the moves; never null
+	 */
+	public ScotlandYardModel modelAt(int move) {
+		checkMove(move);
+		int[] next = { 0 };
+		Player script = (view, location, offered, callback) -> {
+			if (next[0] < move) callback.accept(moves.get(next[0]++));
+		};
+		List<Colour> players = log.players();
+		PlayerConfiguration[] detectives = new PlayerConfiguration[players.size() - 2];
+		for (int i = 0; i < detectives.length; i++)
+			detectives[i] = log.configuration(i + 2, script);
+		ScotlandYardModel model = new ScotlandYardModel(log.rounds(), graph,
+				log.configuration(0, script), log.configuration(1, script), detectives);
+		while (next[0] < move)
+			model.startRotate();
+		return model;
+	}
+
+	private void checkMove(int move) {
+		if (move < 0 || move > moves.size())
+			throw new IndexOutOfBoundsException("Move " + move + " of " + moves.size());
+	}
+
+	@Override
+	public String toString() {
+		return "GameReplay{" + log + ", interval=" + interval + "}";
+	}
+
+}
@@ -0,0 +1,607 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An immutable state of a game that can be advanced without any side effects,
+ * intended for AIs that search ahead.
+ * <br>
+ * Locations are kept as node indices of a {@link CompiledGraph} and tickets
+ * as counts per {@link Ticket#ordinal()} in one small array per player.
+ * Advancing copies only the arrays that change and shares everything else
+ * with the previous state; no player or spectator is ever notified. The rules
+ * are those of {@link ScotlandYardModel}: {@link #legalMoves()} is the set of
+ * moves the model would offer the current player, and {@link #isGameOver()}
+ * and {@link #winners()} agree with the model after the same moves.
+ * <br>
+ * For search without boxing, {@link #generate()} exposes the packed moves of
+ * a {@link MoveGenerator} which can be played with {@link #advance(int)}.
+ */
+public final class GameState {
+
+	/**
+	 * Packed move for {@link #advance(int)} when a detective has no valid
+	 * moves
+	 */
+	public static final int PASS = -1;
+
+	/**
+	 * A player that never moves, for configurations only used to create
+	 * states; states ignore their players
+	 */
+	public static final Player NO_PLAYER = (view, location, moves, callback) -> {};
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final int DOUBLE = Ticket.DOUBLE.ordinal();
+
+	private static final byte UNKNOWN = 0;
+	private static final byte ONGOING = 1;
+	private static final byte MRX_WON = 2;
+	private static final byte DETECTIVES_WON = 3;
+
+	private final Setup setup;
+	private final int[] locations;
+	private final int[][] tickets;
+	private final int round;
+	private final int current;
+	private final int lastSeen;
+	private final Travel travel;
+	private final long hash;
+	// lazily evaluated, racy but idempotent like String.hash
+	private byte outcome = UNKNOWN;
+
+	private GameState(Setup setup, int[] locations, int[][] tickets, int round, int current,
+			int lastSeen, Travel travel, long hash) {
+		this.setup = setup;
+		this.locations = locations;
+		this.tickets = tickets;
+		this.round = round;
+		this.current = current;
+		this.lastSeen = lastSeen;
+		this.travel = travel;
+		this.hash = hash;
+	}
+
+	private GameState(Setup setup, int[] locations, int[][] tickets, int round, int current,
+			int lastSeen) {
+		this(setup, locations, tickets, round, current, lastSeen, null,
+				Zobrist.hash(locations, tickets, current, round));
+	}
+
+	/**
+	 * Creates the state of a game that has not started, with the same
+	 * parameters as {@link ScotlandYardGameFactory#createGame}. The
+	 * {@link PlayerConfiguration#player}s are ignored.
+	 *
+	 * @param rounds reveal and hidden rounds of the game; not empty
+	 * @param graph the map the game will use; not null
+	 * @param mrX MrX's player configuration; not null
+	 * @param firstDetective the first detective's player configuration; not null
+	 * @param restOfTheDetectives the rest of the detective's player
+	 *        configuration
+	 * @return the initial state; never null
+	 */
+	public static GameState of(List<Boolean> rounds, Graph<Integer, Transport> graph,
+			PlayerConfiguration mrX, PlayerConfiguration firstDetective,
+			PlayerConfiguration... restOfTheDetectives) {
+		List<PlayerConfiguration> configurations = new ArrayList<>();
+		configurations.add(requireNonNull(mrX));
+		configurations.add(requireNonNull(firstDetective));
+		for (PlayerConfiguration configuration : restOfTheDetectives)
+			configurations.add(requireNonNull(configuration));
+		if (mrX.colour != Colour.BLACK) throw new IllegalArgumentException("MrX should be Black");
+
+		List<Colour> colours = new ArrayList<>();
+		for (PlayerConfiguration configuration : configurations)
+			colours.add(configuration.colour);
+		Setup setup = new Setup(CompiledGraph.of(graph, Transport.class), colours, rounds);
+		int[] locations = new int[configurations.size()];
+		int[][] tickets = new int[configurations.size()][];
+		for (int i = 0; i < locations.length; i++) {
+			locations[i] = setup.index(configurations.get(i).location);
+			tickets[i] = ticketsOf(configurations.get(i).tickets);
+		}
+		return new GameState(setup, locations, tickets, ScotlandYardView.NOT_STARTED, 0, 0);
+	}
+
+	/**
+	 * Creates a state from what a player can see, for example in
+	 * {@link Player#makeMove}. Mr.X's travel log before this point is not
+	 * known and starts empty.
+	 *
+	 * @param view the view of the game; not null
+	 * @param mrXLocation the location Mr.X is assumed to be at; the actual
+	 *        location when Mr.X is playing, a guess otherwise
+	 * @return the state; never null
+	 */
+	public static GameState of(ScotlandYardView view, int mrXLocation) {
+		List<Colour> colours = view.getPlayers();
+		if (colours.isEmpty() || colours.get(0) != Colour.BLACK)
+			throw new IllegalArgumentException("MrX should be the first player");
+		Setup setup = new Setup(CompiledGraph.of(view.getGraph(), Transport.class), colours,
+				view.getRounds());
+		int[] locations = new int[colours.size()];
+		int[][] tickets = new int[colours.size()][TICKETS.length];
+		for (int i = 0; i < locations.length; i++) {
+			Colour colour = colours.get(i);
+			locations[i] = setup.index(i == 0 ? mrXLocation
+					: view.getPlayerLocation(colour).orElseThrow(
+							() -> new IllegalArgumentException(colour + " has no location")));
+			for (Ticket ticket : TICKETS)
+				tickets[i][ticket.ordinal()] = view.getPlayerTickets(colour, ticket).orElse(0);
+		}
+		int current = colours.indexOf(view.getCurrentPlayer());
+		if (current == -1) throw new IllegalArgumentException("Current player is not playing");
+		return new GameState(setup, locations, tickets, view.getCurrentRound(), current,
+				view.getPlayerLocation(Colour.BLACK).orElse(0));
+	}
+
+	/**
+	 * Creates the same state with Mr.X at another location, e.g. to
+	 * determinize a detective's view of the game
+	 *
+	 * @param mrXLocation the location Mr.X is assumed to be at; in the graph
+	 * @return the state; never null
+	 */
+	public GameState withMrXAt(int mrXLocation) {
+		int index = setup.index(mrXLocation);
+		if (index == locations[0]) return this;
+		int[] moved = locations.clone();
+		moved[0] = index;
+		return new GameState(setup, moved, tickets, round, current, lastSeen, travel,
+				hash ^ Zobrist.location(0, locations[0]) ^ Zobrist.location(0, index));
+	}
+
+	private static int[] ticketsOf(Map<Ticket, Integer> map) {
+		int[] counts = new int[TICKETS.length];
+		for (Ticket ticket : TICKETS) {
+			Integer count = map.get(ticket);
+			counts[ticket.ordinal()] = count == null ? 0 : count;
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the compiled graph of the game
+	 */
+	public CompiledGraph<Transport> graph() {
+		return setup.graph;
+	}
+
+	/**
+	 * @return the colours of all players, Mr.X first
+	 */
+	public List<Colour> players() {
+		return setup.colours;
+	}
+
+	/**
+	 * @return reveal and hidden rounds of the game
+	 */
+	public List<Boolean> rounds() {
+		return setup.rounds;
+	}
+
+	/**
+	 * @return the player to move
+	 */
+	public Colour currentPlayer() {
+		return setup.colours.get(current);
+	}
+
+	/**
+	 * @return the number of rounds played, as
+	 *         {@link ScotlandYardView#getCurrentRound()}
+	 */
+	public int currentRound() {
+		return round;
+	}
+
+	/**
+	 * @return the number of rounds left to play
+	 */
+	public int roundsRemaining() {
+		return setup.reveal.length - round;
+	}
+
+	/**
+	 * @param colour the colour of the player; not null
+	 * @return the actual location of the player, for Mr.X too
+	 */
+	public int location(Colour colour) {
+		return setup.graph.valueOf(locations[indexOf(colour)]);
+	}
+
+	/**
+	 * @return the index of the player to move in {@link #players()}
+	 */
+	public int currentIndex() {
+		return current;
+	}
+
+	/**
+	 * @param player the index of the player in {@link #players()}
+	 * @return the node index of the player's actual location
+	 */
+	public int locationIndex(int player) {
+		return locations[player];
+	}
+
+	/**
+	 * @return Mr.X's last revealed location or 0 if it has never been revealed
+	 */
+	public int mrXLastSeen() {
+		return lastSeen;
+	}
+
+	/**
+	 * @param colour the colour of the player; not null
+	 * @param ticket the ticket type; not null
+	 * @return the number of tickets of the given type
+	 */
+	public int tickets(Colour colour, Ticket ticket) {
+		return tickets[indexOf(colour)][ticket.ordinal()];
+	}
+
+	/**
+	 * Mr.X's moves since this state (or the initial state) was created as seen
+	 * by detectives, i.e. destinations of hidden rounds are the last revealed
+	 * location. A double move appears as its two single moves.
+	 *
+	 * @return the moves in order of play; never null
+	 */
+	public List<TicketMove> mrXTravelLog() {
+		TicketMove[] moves = new TicketMove[travel == null ? 0 : travel.size];
+		for (Travel t = travel; t != null; t = t.previous)
+			moves[t.size - 1] = new TicketMove(Colour.BLACK, t.ticket, t.location);
+		return Collections.unmodifiableList(Arrays.asList(moves));
+	}
+
+	private int indexOf(Colour colour) {
+		int index = setup.colours.indexOf(requireNonNull(colour));
+		if (index == -1) throw new IllegalArgumentException(colour + " is not playing");
+		return index;
+	}
+
+	/**
+	 * Generates the moves of the current player into a generator reused by
+	 * every state of the same game on the calling thread, so the moves must be
+	 * read before the next call. No move is generated for a detective that
+	 * must pass.
+	 *
+	 * @return the generator holding the moves; never null
+	 */
+	public MoveGenerator generate() {
+		Scratch scratch = Scratch.of(setup.graph);
+		return generate(scratch.moves, scratch.occupied, current,
+				current == 0 && roundsRemaining() >= 2);
+	}
+
+	private MoveGenerator generate(MoveGenerator generator, long[] occupied, int player,
+			boolean doubles) {
+		Arrays.fill(occupied, 0L);
+		for (int i = 1; i < locations.length; i++)
+			MoveGenerator.occupy(occupied, locations[i]);
+		generator.generate(locations[player], occupied, tickets[player], doubles);
+		return generator;
+	}
+
+	/**
+	 * Unpacks a move of the current player
+	 *
+	 * @param move a move generated by {@link #generate()} for this state, or
+	 *        {@link #PASS}
+	 * @return the move; never null
+	 */
+	public Move toMove(int move) {
+		if (move == PASS) return setup.table.pass(currentPlayer());
+		return setup.table.get(currentPlayer(), move);
+	}
+
+	/**
+	 * @return the moves the model would offer the current player, a single
+	 *         {@link PassMove} if a detective has none; never null
+	 */
+	public Set<Move> legalMoves() {
+		MoveGenerator generator = generate();
+		Colour colour = currentPlayer();
+		Set<Move> moves = new HashSet<>(Math.max(16, generator.size() * 4 / 3 + 1));
+		for (int i = 0; i < generator.size(); i++)
+			moves.add(setup.table.get(colour, generator.get(i)));
+		if (moves.isEmpty() && colour.isDetective()) moves.add(setup.table.pass(colour));
+		return Collections.unmodifiableSet(moves);
+	}
+
+	/**
+	 * Plays a move, validating it against the legal moves
+	 *
+	 * @param move the move; not null
+	 * @return the state after the move; never null
+	 * @throws IllegalArgumentException if the move is not legal
+	 * @throws IllegalStateException if the game is over
+	 */
+	public GameState advance(Move move) {
+		requireNonNull(move);
+		if (isGameOver()) throw new IllegalStateException("Game is over");
+		if (move.colour() != currentPlayer())
+			throw new IllegalArgumentException(move + " is not from the current player");
+		MoveGenerator generator = generate();
+		if (move instanceof PassMove && generator.size() == 0 && current != 0)
+			return advance(PASS);
+		int id = setup.table.id(move);
+		for (int i = 0; id != MoveTable.NONE && i < generator.size(); i++) {
+			if (setup.table.id(move.colour(), generator.get(i)) == id)
+				return advance(generator.get(i));
+		}
+		throw new IllegalArgumentException(move + " is not a legal move");
+	}
+
+	/**
+	 * Plays a packed move without validation
+	 *
+	 * @param move a move generated by {@link #generate()} for this state, or
+	 *        {@link #PASS} if none was generated for a detective
+	 * @return the state after the move; never null
+	 */
+	public GameState advance(int move) {
+		int next = current + 1 == locations.length ? 0 : current + 1;
+		long movedHash = hash ^ Zobrist.current(current) ^ Zobrist.current(next);
+		if (move == PASS) return new GameState(setup, locations, tickets, round, next,
+				lastSeen, travel, movedHash);
+
+		int[] movedLocations = locations.clone();
+		int[][] movedTickets = tickets.clone();
+		int[] own = tickets[current].clone();
+		movedTickets[current] = own;
+		Ticket first = MoveGenerator.firstTicket(move);
+		int destination = MoveGenerator.firstDestination(move);
+		movedHash ^= take(own, current, first.ordinal());
+		if (current != 0) {
+			// detectives hand their used tickets to Mr.X
+			int[] mrX = tickets[0].clone();
+			movedTickets[0] = mrX;
+			movedHash ^= Zobrist.tickets(0, first.ordinal(), mrX[first.ordinal()]++)
+					^ Zobrist.tickets(0, first.ordinal(), mrX[first.ordinal()]);
+			movedLocations[current] = destination;
+			movedHash ^= Zobrist.location(current, locations[current])
+					^ Zobrist.location(current, destination);
+			return new GameState(setup, movedLocations, movedTickets, round, next, lastSeen,
+					travel, movedHash);
+		}
+
+		int seen = lastSeen;
+		if (setup.reveals(round)) seen = setup.graph.valueOf(destination);
+		Travel log = new Travel(first, seen, travel);
+		int played = round + 1;
+		if (MoveGenerator.isDouble(move)) {
+			movedHash ^= take(own, current, DOUBLE);
+			Ticket second = MoveGenerator.secondTicket(move);
+			destination = MoveGenerator.secondDestination(move);
+			movedHash ^= take(own, current, second.ordinal());
+			if (setup.reveals(played)) seen = setup.graph.valueOf(destination);
+			log = new Travel(second, seen, log);
+			played++;
+		}
+		movedLocations[0] = destination;
+		movedHash ^= Zobrist.location(0, locations[0]) ^ Zobrist.location(0, destination)
+				^ Zobrist.round(round) ^ Zobrist.round(played);
+		return new GameState(setup, movedLocations, movedTickets, played, next, seen, log,
+				movedHash);
+	}
+
+	// removes one ticket and returns the change in hash
+	private static long take(int[] tickets, int player, int ticket) {
+		return Zobrist.tickets(player, ticket, tickets[ticket]--)
+				^ Zobrist.tickets(player, ticket, tickets[ticket]);
+	}
+
+	/**
+	 * @return the 64-bit Zobrist hash of locations, ticket counts, current
+	 *         player and round; equal to
+	 *         {@link ScotlandYardModel#getZobristHash()} for the same state
+	 */
+	public long zobristHash() {
+		return hash;
+	}
+
+	/**
+	 * @return true if the game is over
+	 */
+	public boolean isGameOver() {
+		return outcome() != ONGOING;
+	}
+
+	/**
+	 * @return the winning colours; empty if the game is not over
+	 */
+	public Set<Colour> winners() {
+		switch (outcome()) {
+			case MRX_WON:
+				return ImmutableSet.of(Colour.BLACK);
+			case DETECTIVES_WON:
+				return ImmutableSet.copyOf(setup.colours.subList(1, setup.colours.size()));
+			default:
+				return ImmutableSet.of();
+		}
+	}
+
+	private byte outcome() {
+		byte result = outcome;
+		if (result == UNKNOWN) {
+			result = evaluate();
+			outcome = result;
+		}
+		return result;
+	}
+
+	// same order of checks as ScotlandYardModel.isGameOver, Mr.X wins ties
+	private byte evaluate() {
+		Scratch scratch = Scratch.of(setup.graph);
+		boolean ticketless = true;
+		boolean moveless = true;
+		for (int i = 1; i < locations.length; i++) {
+			for (int count : tickets[i]) {
+				if (count != 0) ticketless = false;
+			}
+			if (moveless && hasAnyMove(scratch, i)) moveless = false;
+		}
+		boolean roundless = round >= setup.reveal.length && current == 0;
+		if (ticketless || moveless || roundless) return MRX_WON;
+
+		boolean stuck = current == 0 && !hasAnyMove(scratch, 0);
+		boolean captured = false;
+		for (int i = 1; i < locations.length; i++) {
+			if (locations[i] == locations[0]) captured = true;
+		}
+		return stuck || captured ? DETECTIVES_WON : ONGOING;
+	}
+
+	private boolean hasAnyMove(Scratch scratch, int player) {
+		return generate(scratch.probe, scratch.occupied, player, false).size() > 0;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		GameState that = (GameState) o;
+		return hash == that.hash
+				&& round == that.round
+				&& current == that.current
+				&& lastSeen == that.lastSeen
+				&& setup.graph == that.setup.graph
+				&& setup.colours.equals(that.setup.colours)
+				&& Arrays.equals(setup.reveal, that.setup.reveal)
+				&& Arrays.equals(locations, that.locations)
+				&& Arrays.deepEquals(tickets, that.tickets)
+				&& Objects.equals(travel, that.travel);
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(hash);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("GameState{round=").append(round)
+				.append(", current=").append(currentPlayer());
+		for (int i = 0; i < locations.length; i++) {
+			builder.append(", ").append(setup.colours.get(i)).append('@')
+					.append(setup.graph.valueOf(locations[i]))
+					.append(Arrays.toString(tickets[i]));
+		}
+		return builder.append(", lastSeen=").append(lastSeen).append('}').toString();
+	}
+
+	/**
+	 * Parts shared by every state of the same game
+	 */
+	private static final class Setup {
+		final CompiledGraph<Transport> graph;
+		final MoveTable table;
+		final ImmutableList<Colour> colours;
+		final ImmutableList<Boolean> rounds;
+		final boolean[] reveal;
+
+		Setup(CompiledGraph<Transport> graph, List<Colour> colours, List<Boolean> rounds) {
+			this.graph = graph;
+			this.table = MoveTable.of(graph);
+			this.colours = ImmutableList.copyOf(colours);
+			this.rounds = ImmutableList.copyOf(rounds);
+			if (rounds.isEmpty()) throw new IllegalArgumentException("Empty rounds");
+			this.reveal = new boolean[rounds.size()];
+			for (int i = 0; i < reveal.length; i++)
+				reveal[i] = rounds.get(i);
+		}
+
+		int index(int location) {
+			int index = graph.indexOf(location);
+			if (index == -1)
+				throw new IllegalArgumentException("Location " + location + " is not in the graph");
+			return index;
+		}
+
+		boolean reveals(int round) {
+			return round < reveal.length && reveal[round];
+		}
+	}
+
+	/**
+	 * Per thread buffers, {@code probe} is used for game over checks so that
+	 * they do not clobber moves returned by {@link #generate()}. One per
+	 * thread rather than per game, rebuilt when the thread moves on to
+	 * another graph.
+	 */
+	private static final class Scratch {
+		private static final ThreadLocal<Scratch> CURRENT = new ThreadLocal<>();
+
+		final CompiledGraph<Transport> graph;
+		final MoveGenerator moves;
+		final MoveGenerator probe;
+		final long[] occupied;
+
+		Scratch(CompiledGraph<Transport> graph) {
+			this.graph = graph;
+			this.moves = new MoveGenerator(graph);
+			this.probe = new MoveGenerator(graph);
+			this.occupied = moves.newOccupancy();
+		}
+
+		static Scratch of(CompiledGraph<Transport> graph) {
+			Scratch scratch = CURRENT.get();
+			if (scratch == null || scratch.graph != graph) {
+				scratch = new Scratch(graph);
+				CURRENT.set(scratch);
+			}
+			return scratch;
+		}
+	}
+
+	/**
+	 * Persistent list of Mr.X's moves as seen by detectives, newest first
+	 */
+	private static final class Travel {
+		final Ticket ticket;
+		final int location;
+		final Travel previous;
+		final int size;
+
+		Travel(Ticket ticket, int location, Travel previous) {
+			this.ticket = ticket;
+			this.location = location;
+			this.previous = previous;
+			this.size = previous == null ? 1 : previous.size + 1;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Travel that = (Travel) o;
+			return ticket == that.ticket && location == that.location && size == that.size
+					&& Objects.equals(previous, that.previous);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(ticket, location, previous);
+		}
+	}
+
+}
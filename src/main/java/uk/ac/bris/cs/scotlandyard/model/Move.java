@@ -44,6 +44,7 @@ public abstract class Move implements Serializable {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(colour);
+		// same as Objects.hash(colour) without the varargs array
+		return 31 + Objects.hashCode(colour);
 	}
 }
@@ -0,0 +1,237 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Allocation free generator of valid moves over a {@link CompiledGraph}.
+ * <br>
+ * Works entirely on node indices (see {@link CompiledGraph#indexOf(int)}): the
+ * occupied locations are given as a bitset of node indices and tickets as a
+ * count per {@link Ticket#ordinal()}. Generated moves are packed into ints
+ * and kept in a buffer that is reused between calls, use
+ * {@link #toMove(Colour, int)} to turn them into {@link Move}s.
+ * <br>
+ * Instances are not thread safe, the graph may be shared between generators.
+ */
+public final class MoveGenerator {
+
+	/**
+	 * Maximum number of nodes a graph can have for its moves to be packed
+	 */
+	public static final int MAX_NODES = 1 << 12;
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final int TICKET_BITS = 3;
+	private static final int TICKET_MASK = (1 << TICKET_BITS) - 1;
+	private static final int DOUBLE_FLAG = 1 << (2 * TICKET_BITS);
+	private static final int FIRST_SHIFT = 2 * TICKET_BITS + 1;
+	private static final int SECOND_SHIFT = FIRST_SHIFT + 12;
+	private static final int NODE_MASK = MAX_NODES - 1;
+
+	private static final int SECRET_BIT = 1 << Ticket.SECRET.ordinal();
+	private static final int[] TICKETS_OF_TRANSPORTS = ticketsOfTransports();
+
+	private final CompiledGraph<Transport> graph;
+	private final int[] remaining = new int[TICKETS.length];
+	private int[] buffer = new int[64];
+	private int size;
+
+	/**
+	 * @param graph the graph to generate moves on; not null and with no more
+	 *        than {@link #MAX_NODES} nodes
+	 */
+	public MoveGenerator(CompiledGraph<Transport> graph) {
+		this.graph = requireNonNull(graph);
+		if (graph.size() > MAX_NODES) throw new IllegalArgumentException(
+				"graph has more than " + MAX_NODES + " nodes");
+	}
+
+	private static int[] ticketsOfTransports() {
+		Transport[] transports = Transport.values();
+		int[] tickets = new int[1 << transports.length];
+		for (int mask = 0; mask < tickets.length; mask++) {
+			for (Transport transport : transports) {
+				if ((mask & CompiledGraph.maskOf(transport)) != 0)
+					tickets[mask] |= 1 << Ticket.fromTransport(transport).ordinal();
+			}
+		}
+		return tickets;
+	}
+
+	/**
+	 * @return the graph moves are generated on
+	 */
+	public CompiledGraph<Transport> graph() {
+		return graph;
+	}
+
+	/**
+	 * @return a new, empty occupancy bitset sized for the graph
+	 */
+	public long[] newOccupancy() {
+		return new long[(graph.size() + Long.SIZE - 1) / Long.SIZE];
+	}
+
+	/**
+	 * Marks the node index as occupied
+	 *
+	 * @param occupied the occupancy bitset
+	 * @param index the node index
+	 */
+	public static void occupy(long[] occupied, int index) {
+		occupied[index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 * @param occupied the occupancy bitset
+	 * @param index the node index
+	 * @return true if the node index is occupied
+	 */
+	public static boolean isOccupied(long[] occupied, int index) {
+		return (occupied[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Generates all valid moves into the internal buffer, replacing the
+	 * previously generated moves. A {@link PassMove} is never generated.
+	 *
+	 * @param location the node index of the player
+	 * @param occupied bitset of node indices the player cannot move to
+	 * @param tickets ticket count indexed by {@link Ticket#ordinal()}, not
+	 *        modified
+	 * @param doubles whether double moves may be generated, they will only be
+	 *        if the player also has a {@link Ticket#DOUBLE} ticket
+	 * @return the number of moves generated
+	 */
+	public int generate(int location, long[] occupied, int[] tickets, boolean doubles) {
+		size = 0;
+		if (location < 0) return 0;
+		System.arraycopy(tickets, 0, remaining, 0, remaining.length);
+		boolean withDouble = doubles && remaining[Ticket.DOUBLE.ordinal()] > 0;
+		for (int slot = graph.firstEdge(location); slot < graph.endEdge(location); slot++) {
+			int first = graph.target(slot);
+			if (isOccupied(occupied, first)) continue;
+			int firstTickets = usable(graph.mask(slot));
+			for (int bits = firstTickets; bits != 0; bits &= bits - 1) {
+				int ticket = Integer.numberOfTrailingZeros(bits);
+				push(ticket | first << FIRST_SHIFT);
+				if (!withDouble) continue;
+				remaining[ticket]--;
+				for (int next = graph.firstEdge(first); next < graph.endEdge(first); next++) {
+					int second = graph.target(next);
+					if (isOccupied(occupied, second)) continue;
+					for (int bits2 = usable(graph.mask(next)); bits2 != 0; bits2 &= bits2 - 1) {
+						int ticket2 = Integer.numberOfTrailingZeros(bits2);
+						push(DOUBLE_FLAG | ticket | ticket2 << TICKET_BITS
+								| first << FIRST_SHIFT | second << SECOND_SHIFT);
+					}
+				}
+				remaining[ticket]++;
+			}
+		}
+		return size;
+	}
+
+	private int usable(int transports) {
+		int candidates = TICKETS_OF_TRANSPORTS[transports] | SECRET_BIT;
+		int result = 0;
+		for (int bits = candidates; bits != 0; bits &= bits - 1) {
+			int ticket = Integer.numberOfTrailingZeros(bits);
+			if (remaining[ticket] > 0) result |= 1 << ticket;
+		}
+		return result;
+	}
+
+	private void push(int move) {
+		if (size == buffer.length) buffer = Arrays.copyOf(buffer, size * 2);
+		buffer[size++] = move;
+	}
+
+	/**
+	 * @return the number of moves generated by the last call to
+	 *         {@link #generate(int, long[], int[], boolean)}
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i the position in the buffer; in {@code [0, size())}
+	 * @return the packed move
+	 */
+	public int get(int i) {
+		return buffer[i];
+	}
+
+	/**
+	 * @param move a packed move
+	 * @return true if the move is a double move
+	 */
+	public static boolean isDouble(int move) {
+		return (move & DOUBLE_FLAG) != 0;
+	}
+
+	/**
+	 * @param move a packed move
+	 * @return the ticket of the (first) move
+	 */
+	public static Ticket firstTicket(int move) {
+		return TICKETS[move & TICKET_MASK];
+	}
+
+	/**
+	 * @param move a packed double move
+	 * @return the ticket of the second move
+	 */
+	public static Ticket secondTicket(int move) {
+		return TICKETS[(move >>> TICKET_BITS) & TICKET_MASK];
+	}
+
+	/**
+	 * @param move a packed move
+	 * @return the node index of the (first) destination
+	 */
+	public static int firstDestination(int move) {
+		return (move >>> FIRST_SHIFT) & NODE_MASK;
+	}
+
+	/**
+	 * @param move a packed double move
+	 * @return the node index of the final destination
+	 */
+	public static int secondDestination(int move) {
+		return (move >>> SECOND_SHIFT) & NODE_MASK;
+	}
+
+	/**
+	 * Unpacks a move generated by this generator
+	 *
+	 * @param colour the colour of the player making the move; not null
+	 * @param move the packed move
+	 * @return a {@link TicketMove} or a {@link DoubleMove}; never null
+	 */
+	public Move toMove(Colour colour, int move) {
+		TicketMove first = new TicketMove(colour, firstTicket(move),
+				graph.valueOf(firstDestination(move)));
+		if (!isDouble(move)) return first;
+		return new DoubleMove(colour, first, new TicketMove(colour, secondTicket(move),
+				graph.valueOf(secondDestination(move))));
+	}
+
+	/**
+	 * Unpacks all generated moves into the given collection
+	 *
+	 * @param colour the colour of the player making the moves; not null
+	 * @param moves the collection to add moves to; not null
+	 */
+	public void addMoves(Colour colour, Collection<? super Move> moves) {
+		for (int i = 0; i < size; i++)
+			moves.add(toMove(colour, buffer[i]));
+	}
+
+}
@@ -0,0 +1,185 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static java.util.Objects.requireNonNull;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+
+/**
+ * Interns the moves of a graph: every {@link PassMove}, every
+ * {@link TicketMove} of every colour, ticket and destination, and every
+ * {@link DoubleMove} of Mr.X whose second destination is a neighbour of the
+ * first, each with a stable small integer id.
+ * <br>
+ * Ids are dense and computed from a move's fields, so looking one up needs
+ * no hashing. Passes come first, then ticket moves by colour, ticket and
+ * destination, then double moves by first ticket, the edge slot from the
+ * first to the second destination and second ticket; see
+ * {@link CompiledGraph#firstEdge(int)}.
+ * <br>
+ * There is one table per graph, see {@link #of(CompiledGraph)}. Instances
+ * are created on first use and shared afterwards, by every game on the graph.
+ * The table may be used from several threads; racing threads may create
+ * equal instances, one of which is kept.
+ */
+public final class MoveTable {
+
+	/**
+	 * Id of moves not in the table
+	 */
+	public static final int NONE = -1;
+
+	private static final Colour[] COLOURS = Colour.values();
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private final CompiledGraph<Transport> graph;
+	private final int ticketBase;
+	private final int doubleBase;
+	private final Move[] moves;
+
+	private MoveTable(CompiledGraph<Transport> graph) {
+		this.graph = requireNonNull(graph);
+		this.ticketBase = COLOURS.length;
+		this.doubleBase = ticketBase + COLOURS.length * TICKETS.length * graph.size();
+		this.moves = new Move[doubleBase + TICKETS.length * graph.edgeSlots() * TICKETS.length];
+	}
+
+	/**
+	 * @param graph the graph moves are made on; not null
+	 * @return the table of the graph, created on first use; never null
+	 */
+	public static MoveTable of(CompiledGraph<Transport> graph) {
+		return graph.derived(MoveTable.class, MoveTable::new);
+	}
+
+	/**
+	 * @return the number of ids
+	 */
+	public int size() {
+		return moves.length;
+	}
+
+	/**
+	 * @param move the move; not null
+	 * @return the id of the move, {@link #NONE} if it is not in the table
+	 */
+	public int id(Move move) {
+		if (move instanceof TicketMove) {
+			TicketMove ticket = (TicketMove) move;
+			return ticketId(move.colour(), ticket.ticket(), graph.indexOf(ticket.destination()));
+		}
+		if (move instanceof DoubleMove) {
+			DoubleMove doubleMove = (DoubleMove) move;
+			if (move.colour() != Colour.BLACK) return NONE;
+			return doubleId(doubleMove.firstMove().ticket(),
+					graph.indexOf(doubleMove.firstMove().destination()),
+					doubleMove.secondMove().ticket(),
+					graph.indexOf(doubleMove.secondMove().destination()));
+		}
+		if (move instanceof PassMove) return move.colour().ordinal();
+		return NONE;
+	}
+
+	/**
+	 * @param colour the colour of the player making the move; not null
+	 * @param move a packed move, see {@link MoveGenerator}
+	 * @return the id of the move, {@link #NONE} if it is not in the table
+	 */
+	public int id(Colour colour, int move) {
+		if (!MoveGenerator.isDouble(move))
+			return ticketId(colour, MoveGenerator.firstTicket(move),
+					MoveGenerator.firstDestination(move));
+		if (colour != Colour.BLACK) return NONE;
+		return doubleId(MoveGenerator.firstTicket(move), MoveGenerator.firstDestination(move),
+				MoveGenerator.secondTicket(move), MoveGenerator.secondDestination(move));
+	}
+
+	private int ticketId(Colour colour, Ticket ticket, int destination) {
+		if (colour == null || ticket == null || destination < 0) return NONE;
+		return ticketBase + (colour.ordinal() * TICKETS.length + ticket.ordinal()) * graph.size()
+				+ destination;
+	}
+
+	private int doubleId(Ticket first, int firstDestination, Ticket second,
+			int secondDestination) {
+		if (first == null || second == null || firstDestination < 0 || secondDestination < 0)
+			return NONE;
+		for (int slot = graph.firstEdge(firstDestination); slot < graph.endEdge(
+				firstDestination); slot++) {
+			if (graph.target(slot) == secondDestination)
+				return doubleBase + (first.ordinal() * graph.edgeSlots() + slot) * TICKETS.length
+						+ second.ordinal();
+		}
+		return NONE;
+	}
+
+	/**
+	 * @param id the id of a move; in {@code [0, size())}
+	 * @return the shared instance of the move; never null
+	 */
+	public Move get(int id) {
+		Move move = moves[id];
+		if (move == null) {
+			move = create(id);
+			moves[id] = move;
+		}
+		return move;
+	}
+
+	/**
+	 * @param colour the colour of the player making the move; not null
+	 * @param move a packed move, see {@link MoveGenerator}
+	 * @return the shared instance of the move, or a new one if it is not in
+	 *         the table; never null
+	 */
+	public Move get(Colour colour, int move) {
+		int id = id(colour, move);
+		if (id != NONE) return get(id);
+		TicketMove first = new TicketMove(colour, MoveGenerator.firstTicket(move),
+				graph.valueOf(MoveGenerator.firstDestination(move)));
+		if (!MoveGenerator.isDouble(move)) return first;
+		return new DoubleMove(colour, first, new TicketMove(colour,
+				MoveGenerator.secondTicket(move), graph.valueOf(MoveGenerator.secondDestination(move))));
+	}
+
+	/**
+	 * @param colour the colour of the passing player; not null
+	 * @return the shared pass of the colour; never null
+	 */
+	public PassMove pass(Colour colour) {
+		return (PassMove) get(colour.ordinal());
+	}
+
+	private Move create(int id) {
+		if (id < ticketBase) return new PassMove(COLOURS[id]);
+		if (id < doubleBase) {
+			int offset = id - ticketBase;
+			int destination = offset % graph.size();
+			int rest = offset / graph.size();
+			return new TicketMove(COLOURS[rest / TICKETS.length], TICKETS[rest % TICKETS.length],
+					graph.valueOf(destination));
+		}
+		int offset = id - doubleBase;
+		Ticket second = TICKETS[offset % TICKETS.length];
+		int rest = offset / TICKETS.length;
+		int slot = rest % graph.edgeSlots();
+		Ticket first = TICKETS[rest / graph.edgeSlots()];
+		int firstDestination = source(slot);
+		int ticketMove = ticketId(Colour.BLACK, first, firstDestination);
+		int secondMove = ticketId(Colour.BLACK, second, graph.target(slot));
+		return new DoubleMove(Colour.BLACK, (TicketMove) get(ticketMove),
+				(TicketMove) get(secondMove));
+	}
+
+	// the node whose edges include the slot
+	private int source(int slot) {
+		int low = 0;
+		int high = graph.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (graph.firstEdge(middle) <= slot) low = middle;
+			else high = middle - 1;
+		}
+		return low;
+	}
+
+}
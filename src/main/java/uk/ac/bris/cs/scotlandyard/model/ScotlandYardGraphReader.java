@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.regex.Pattern;
 
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
 import uk.ac.bris.cs.gamekit.graph.Edge;
 import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
 import uk.ac.bris.cs.gamekit.graph.Node;
@@ -26,7 +27,8 @@ public class ScotlandYardGraphReader {
 	 * Converts lines of strings into a Scotland Yard game map
 	 * 
 	 * @param lines the lines
-	 * @return a graph for {@link ScotlandYardGame} to use
+	 * @return a graph for {@link ScotlandYardGame} to use, backed by a
+	 *         {@link CompiledGraph}
 	 */
 	public static ImmutableGraph<Integer, Transport> fromLines(List<String> lines) {
 		if (lines == null) throw new NullPointerException("lines == null");
@@ -89,7 +91,7 @@ public class ScotlandYardGraphReader {
 							+ lines.get(i));
 			graph.addEdge(new Edge<>(source, destination, data));
 		}
-		return new ImmutableGraph<>(graph);
+		return new ImmutableGraph<>(CompiledGraph.of(graph, Transport.class));
 	}
 
 	private static String[] parseLine(int line, List<String> lines, String delimiter,
@@ -1,9 +1,12 @@
 package uk.ac.bris.cs.scotlandyard.model;
 
-import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
 import uk.ac.bris.cs.gamekit.graph.Graph;
 import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.*;
 
 import static java.util.Objects.requireNonNull;
@@ -12,12 +15,33 @@ import static uk.ac.bris.cs.scotlandyard.model.Ticket.*;
 
 // TODO implement all methods and pass all tests
 public class ScotlandYardModel implements ScotlandYardGame {
+    private static final Logger LOG = LoggerFactory.getLogger(ScotlandYardModel.class);
+    private static final Ticket[] TICKETS = Ticket.values();
     private List<Boolean> mRounds;
     private Graph<Integer, Transport> mGraph;
+    private Graph<Integer, Transport> mGraphView;
+    private CompiledGraph<Transport> mCompiledGraph;
+    private MoveGenerator mGenerator;
+    private MoveTable mMoveTable;
+    private long[] mOccupancy;
+    private final int[] mTickets = new int[TICKETS.length];
+    // game over cache, invalidated through moveTo, useTicket and giveTicket
+    private long mStateVersion = 0;
+    private long mGameOverVersion = -1;
+    private boolean mGameOver = false;
+    // Zobrist hash of locations, tickets, current player and round, kept up to date by the same funnels
+    private long mZobristHash;
+    private boolean[] mHasMovesKnown;
+    private boolean[] mHasMoves;
+    private boolean[] mTicketlessKnown;
+    private boolean[] mTicketless;
     private ArrayList<ScotlandYardPlayer> mPlayers;
     private int mCurrentRound = NOT_STARTED;
     private int mMovesPlayed = 0; // TODO: increment moves played every time someone makes a move
     private Colour mRotating = BLACK;
+    // moves offered by the last playerTurn and the token its callback must present, see processMove
+    private Set<Move> mOfferedMoves = null;
+    private int mTurnToken = 0;
     private Optional<Colour> mLastPlayer = Optional.empty();
     private ArrayList<Colour> mWinners = new ArrayList<>();
     private boolean mGameOverWillNotify = false;
@@ -51,6 +75,12 @@ public class ScotlandYardModel implements ScotlandYardGame {
         if (mGraph.isEmpty()) {
             throw new IllegalArgumentException("Empty graph");
         }
+        // the game is played on a snapshot, later changes to the graph are not seen
+        mCompiledGraph = CompiledGraph.of(mGraph, Transport.class);
+        mGraphView = new ImmutableGraph<>(mCompiledGraph);
+        mGenerator = new MoveGenerator(mCompiledGraph);
+        mMoveTable = MoveTable.of(mCompiledGraph);
+        mOccupancy = mGenerator.newOccupancy();
 
         if (mrX.colour != BLACK) { // or mr.colour.isDetective()
             throw new IllegalArgumentException("MrX should be Black");
@@ -77,37 +107,35 @@ public class ScotlandYardModel implements ScotlandYardGame {
             colours.add(configuration.colour);
 
             // ticket check
-            if (configuration.tickets.get(BUS) == null) {
-                throw new IllegalArgumentException("Detective is missing BUS tickets");
-            }
-
-            if (configuration.tickets.get(TAXI) == null) {
-                throw new IllegalArgumentException("Detective is missing TAXI tickets");
-            }
-
-            if (configuration.tickets.get(UNDERGROUND) == null) {
-                throw new IllegalArgumentException("Detective is missing UNDERGROUND tickets");
-            }
-
-            if (configuration.colour.isDetective()) {
-                if (requireNonNull(configuration.tickets.get(SECRET)) != 0) {
-                    throw new IllegalArgumentException("Detective should not have SECRET tickets");
-                }
-                if (requireNonNull(configuration.tickets.get(DOUBLE)) != 0) {
-                    throw new IllegalArgumentException("Detective should not have SECRET tickets");
-                }
-            }
+            TicketLedger tickets = TicketLedger.of(configuration);
 
             ScotlandYardPlayer player = new ScotlandYardPlayer(configuration.player, configuration.colour,
-                configuration.location, configuration.tickets);
+                configuration.location, tickets);
             mPlayers.add(player);
         }
+        mHasMovesKnown = new boolean[mPlayers.size()];
+        mHasMoves = new boolean[mPlayers.size()];
+        mTicketlessKnown = new boolean[mPlayers.size()];
+        mTicketless = new boolean[mPlayers.size()];
+        mZobristHash = Zobrist.current(0) ^ Zobrist.round(mCurrentRound);
+        for (int i = 0; i < mPlayers.size(); i++) {
+            ScotlandYardPlayer player = mPlayers.get(i);
+            mZobristHash ^= locationKey(i, player.location());
+            for (Ticket ticket : TICKETS) {
+                mZobristHash ^= Zobrist.tickets(i, ticket.ordinal(), ticketCount(player, ticket));
+            }
+        }
     }
 
-    private void DEBUG_LOG(String input) {
-        String output = String.format("%s(%s) [%s/%s] - %s", mCurrentRound, mRotating.toString(), getRotatorIndex(mRotating), getPlayers().size(), input);
-        System.out.println(output);
-    }
+    /**
+     * prefix for log messages, only formatted when a message is actually logged
+     */
+    private final Object mLogContext = new Object() {
+        @Override
+        public String toString() {
+            return String.format("%s(%s) [%s/%s] -", mCurrentRound, mRotating, getRotatorIndex(mRotating), mPlayers.size());
+        }
+    };
 
     /**
      * GENERIC GETTERS SECTION
@@ -127,13 +155,16 @@ public class ScotlandYardModel implements ScotlandYardGame {
         if (oMrX.isPresent()) {
             if (!mSavedMrXLocations.get(mSavedMrXLocations.size() - 1).equals(location)) {
                 mSavedMrXLocations.add(location);
-                System.out.println();
-                DEBUG_LOG(String.format("NEW MRX LOCATION REVEALED: %s", location));
-            } else {
-                DEBUG_LOG(String.format("MRX ALREADY REVEALED @ %s", location));
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("{} NEW MRX LOCATION REVEALED: {}", mLogContext, location);
+                }
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("{} MRX ALREADY REVEALED @ {}", mLogContext, location);
+            }
+            moveTo(oMrX.get(), location);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} MrX Last Known Locations = {}", mLogContext, mSavedMrXLocations);
             }
-            oMrX.get().location(location);
-            DEBUG_LOG(String.format("MrX Last Known Locations = %s", mSavedMrXLocations));
         } else {
             throw new IllegalStateException("cannot save mrX's location - cannot get MrX's ScotlandYardPlayer instance");
         }
@@ -176,7 +207,7 @@ public class ScotlandYardModel implements ScotlandYardGame {
         Optional<Integer> result = Optional.empty();
         for (ScotlandYardPlayer player : mPlayers) {
             if (player.colour() == colour) {
-                result = Optional.of(player.tickets().get(ticket));
+                result = Optional.of(player.ledger().count(ticket));
             }
         }
 
@@ -208,18 +239,18 @@ public class ScotlandYardModel implements ScotlandYardGame {
 
     @Override
     public Graph<Integer, Transport> getGraph() {
-        return new ImmutableGraph<>(mGraph);
+        return mGraphView;
     }
 
     private Integer getMrXLocation() {
         Integer result = 0;
         boolean revealing = isRevealRound();
-        boolean rotationComplete = mGameStarted && mRevealedThisRound && mRotationComplete;
-        boolean gameOver = isGameOver() && mRotationComplete && mGameOverHasNotified;
         if (revealing) {
             Optional<ScotlandYardPlayer> oMrX = ScotlandYardPlayer.getMrX(mPlayers);
             if (oMrX.isPresent()) {
-                DEBUG_LOG("getting MrX's real location");
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("{} getting MrX's real location", mLogContext);
+                }
                 result = oMrX.get().location();
             } else {
                 throw new IllegalStateException("getMrXLocation could not get the ScotlandYardPlayer for MrX");
@@ -227,7 +258,11 @@ public class ScotlandYardModel implements ScotlandYardGame {
         } else {
             result = getLastKnownMrXLocation();
         }
-        DEBUG_LOG(String.format("getMrXLocation RESULT = %s\n\t\t\t\t(isRevealRound(%s), rotationComplete = %s, gameOver = %s)", result, revealing, rotationComplete, gameOver));
+        if (LOG.isDebugEnabled()) {
+            boolean rotationComplete = mGameStarted && mRevealedThisRound && mRotationComplete;
+            boolean gameOver = isGameOver() && mRotationComplete && mGameOverHasNotified;
+            LOG.debug("{} getMrXLocation RESULT = {} (isRevealRound({}), rotationComplete = {}, gameOver = {})", mLogContext, result, revealing, rotationComplete, gameOver);
+        }
         return result;
     }
 
@@ -258,117 +293,61 @@ public class ScotlandYardModel implements ScotlandYardGame {
         return result;
     }
 
-    Integer getDestination(Edge<Integer, Transport> input) {
-        // TODO: implement getDestination
-        return input.destination().value();
-    }
-
-    Ticket getTicket(Edge<Integer, Transport> input) {
-        // TODO: implement getDestination
-        return Ticket.fromTransport(input.data());
-    }
-
-    Collection<Edge<Integer, Transport>> getOptions(Integer input) {
-        // TODO: implement getOptions
-        Collection<Edge<Integer, Transport>> output = getGraph().getEdgesFrom(getGraph().getNode(input));
-        return Collections.unmodifiableCollection(output);
-    }
-
     /**
      * getMoves
      * returns an unmodifiable set of valid moves for a specific player (uses `colour`)
-     * see also: getOccupiedLocations, getOptions, getDestination, getTicket,
+     * moves are generated on node indices by `mGenerator` and looked up in `mMoveTable`,
+     * so every call returns the same shared Move instances
+     * see also: MoveGenerator, fillOccupancy, fillTickets
+     * package-private so that ModelBenchmark can measure it directly
      */
-    private Set<Move> getMoves(Colour colour) {
-//        DEBUG_LOG(String.format("getMoves(%s)", colour.toString()));
-        Set<Move> output = new HashSet<>();
-        Integer numTicketMoves = 0;
-        Integer numDoubleMoves = 0;
-        Integer numSecretMoves = 0;
-        Integer numDoubleSecretMoves = 0;
-        // get moves for a given Colour
+    Set<Move> getMoves(Colour colour) {
         Optional<ScotlandYardPlayer> p = ScotlandYardPlayer.getByColour(mPlayers, colour);
-        ScotlandYardPlayer player;
-
-        if (p.isPresent()) {
-            player = p.get();
-            List<Integer> occupied = getOccupiedLocations();
-            Collection<Edge<Integer, Transport>> options = getOptions(player.location());
-            for (Edge<Integer, Transport> option : options) {
-                Integer destination = getDestination(option);
-                Ticket transport = getTicket(option);
-                if (!occupied.contains(destination)) {
-                    if (player.hasTickets(transport)) {
-                        output.add(new TicketMove(player.colour(), transport, destination));
-                        numTicketMoves++;
-                    }
-                    if (player.hasTickets(SECRET)) {
-                        output.add(new TicketMove(player.colour(), SECRET, destination));
-                        numSecretMoves++;
-                    }
-                    if (player.hasTickets(DOUBLE) && getRoundsRemaining() >= 2) {// TODO: check if sufficient rounds remaining for a double move
-                        Collection<Edge<Integer, Transport>> doubleMoveDestinations = getOptions(destination);
-                        for (Edge<Integer, Transport> doubleMoveOption : doubleMoveDestinations) {
-                            Integer destination2 = getDestination(doubleMoveOption);
-                            Ticket transport2 = getTicket(doubleMoveOption);
-
-                            boolean clashWithOtherPlayer = occupied.contains(destination) || occupied.contains(destination2);
-                            boolean sufficientTickets = (transport != transport2 && player.hasTickets(transport2))
-                                || (transport == transport2 && player.hasTickets(transport2, 2) || player.hasTickets(SECRET, 2)); //TODO: check
-
-                            if (!clashWithOtherPlayer && sufficientTickets) {
-                                TicketMove firstMove, secondMove;
-                                firstMove = new TicketMove(player.colour(), transport, destination);
-                                secondMove = new TicketMove(player.colour(), transport2, destination2);
-                                DoubleMove dbl = new DoubleMove(player.colour(), firstMove, secondMove);
-                                if ((transport == transport2) && !player.hasTickets(transport, 2)) {
-                                    DEBUG_LOG("INSUFFICIENT TICKETS - NOT ADDING DOUBLEMOVE " + dbl.toString());
-                                } else {
-                                    output.add(dbl);
-                                }
-                                numDoubleMoves++;
-
-                                // enables support for double moves starting with a secret ticket
-                                if (player.hasTickets(SECRET) && !clashWithOtherPlayer
-                                    && (sufficientTickets || (player.hasTickets(transport) || player.hasTickets(transport2)))) {
-                                    TicketMove secretFirstMove = new TicketMove(player.colour(), SECRET, destination);
-                                    TicketMove secretSecondMove = new TicketMove(player.colour(), SECRET, destination2);
-
-                                    if (player.hasTickets(transport2)) {
-                                        output.add(new DoubleMove(player.colour(), secretFirstMove, secondMove));
-                                        numDoubleSecretMoves++;
-                                    }
-
-                                    if (player.hasTickets(transport)) {
-                                        output.add(new DoubleMove(player.colour(), firstMove, secretSecondMove));
-                                        numDoubleSecretMoves++;
-                                    }
-
-                                    if (player.hasTickets(SECRET, 2)) {
-                                        output.add(new DoubleMove(player.colour(), secretFirstMove, secretSecondMove));
-                                        numDoubleSecretMoves++;
-                                    } // foo
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        } else {
+        if (!p.isPresent()) {
             throw new IllegalArgumentException("getMoves called with invalid colour (" + colour + ")");
         }
+        ScotlandYardPlayer player = p.get();
+        fillOccupancy();
+        fillTickets(player);
+        int count = mGenerator.generate(mCompiledGraph.indexOf(player.location()), mOccupancy,
+            mTickets, player.isMrX() && getRoundsRemaining() >= 2);
 
+        Set<Move> output = new HashSet<>(Math.max(16, count * 4 / 3 + 1));
+        for (int i = 0; i < count; i++) {
+            output.add(mMoveTable.get(colour, mGenerator.get(i)));
+        }
         if (output.isEmpty() && player.isDetective()) {
-            DEBUG_LOG(String.format("getMoves (%s): PassMove created (no moves available)", colour));
-            output.add(new PassMove(colour));
-        } else {
-            DEBUG_LOG(String.format("getMoves (%s): %s moves created (%s TicketMoves, %s SecretMoves, %s DoubleMoves, %s DoubleMoves with 1+ secret moves)", colour, output.size(), numTicketMoves, numSecretMoves, numDoubleMoves, numDoubleSecretMoves));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} getMoves ({}): PassMove created (no moves available)", mLogContext, colour);
+            }
+            output.add(mMoveTable.pass(colour));
+        } else if (LOG.isDebugEnabled()) {
+            LOG.debug("{} getMoves ({}): {} moves created", mLogContext, colour, output.size());
         }
 
-
         return Collections.unmodifiableSet(output);
     }
 
+    /**
+     * marks the node index of every detective in `mOccupancy`
+     */
+    private void fillOccupancy() {
+        Arrays.fill(mOccupancy, 0L);
+        for (ScotlandYardPlayer player : mPlayers) {
+            int index = mCompiledGraph.indexOf(player.location());
+            if (player.isDetective() && index != -1) {
+                MoveGenerator.occupy(mOccupancy, index);
+            }
+        }
+    }
+
+    /**
+     * copies the ticket counts of `player` into `mTickets`, indexed by Ticket.ordinal()
+     */
+    private void fillTickets(ScotlandYardPlayer player) {
+        player.ledger().copyTo(mTickets);
+    }
+
     /**
      * returns an immutable list of occupied locations
      */
@@ -382,6 +361,92 @@ public class ScotlandYardModel implements ScotlandYardGame {
         return Collections.unmodifiableList(output);
     }
 
+    /**
+     * STATE MUTATION SECTION
+     * all location and ticket changes go through these so cached game over flags are invalidated
+     */
+    private void moveTo(ScotlandYardPlayer player, int location) {
+        if (player.location() != location) {
+            mStateVersion++;
+            // any location change alters occupancy for every player
+            Arrays.fill(mHasMovesKnown, false);
+            int index = mPlayers.indexOf(player);
+            mZobristHash ^= locationKey(index, player.location()) ^ locationKey(index, location);
+        }
+        player.location(location);
+    }
+
+    private void useTicket(ScotlandYardPlayer player, Ticket ticket) {
+        int before = ticketCount(player, ticket);
+        player.removeTicket(ticket);
+        ticketsChanged(player, ticket, before);
+    }
+
+    private void giveTicket(ScotlandYardPlayer player, Ticket ticket) {
+        int before = ticketCount(player, ticket);
+        player.addTicket(ticket);
+        ticketsChanged(player, ticket, before);
+    }
+
+    private void ticketsChanged(ScotlandYardPlayer player, Ticket ticket, int before) {
+        int index = mPlayers.indexOf(player);
+        mZobristHash ^= Zobrist.tickets(index, ticket.ordinal(), before)
+            ^ Zobrist.tickets(index, ticket.ordinal(), ticketCount(player, ticket));
+        mStateVersion++;
+        mHasMovesKnown[index] = false;
+        mTicketlessKnown[index] = false;
+    }
+
+    private static int ticketCount(ScotlandYardPlayer player, Ticket ticket) {
+        return player.ledger().count(ticket);
+    }
+
+    /**
+     * Zobrist key of the player at `index` being at `location`, locations outside the graph have no key
+     */
+    private long locationKey(int index, int location) {
+        int node = mCompiledGraph.indexOf(location);
+        return node == -1 ? 0L : Zobrist.location(index, node);
+    }
+
+    /**
+     * 64-bit Zobrist hash of the player locations (including Mr X's actual location),
+     * ticket counts, current player and round; equal to GameState#zobristHash() for the same state
+     * see also: Zobrist
+     */
+    public long getZobristHash() {
+        return mZobristHash;
+    }
+
+    /**
+     * whether the player at `index` has at least one TicketMove available (cached)
+     * double moves are not generated as their first half is always a valid TicketMove
+     */
+    private boolean hasAnyMove(int index) {
+        if (!mHasMovesKnown[index]) {
+            ScotlandYardPlayer player = mPlayers.get(index);
+            fillOccupancy();
+            fillTickets(player);
+            mHasMoves[index] = mGenerator.generate(mCompiledGraph.indexOf(player.location()),
+                mOccupancy, mTickets, false) > 0;
+            mHasMovesKnown[index] = true;
+        }
+        return mHasMoves[index];
+    }
+
+    /**
+     * whether the player at `index` has run out of every ticket (cached)
+     */
+    private boolean isTicketless(int index) {
+        if (!mTicketlessKnown[index]) {
+            mTicketless[index] = mPlayers.get(index).hasNoTickets();
+            mTicketlessKnown[index] = true;
+        }
+        return mTicketless[index];
+    }
+
+    /** END STATE MUTATION SECTION */
+
     /** END GETTERS SECTION */
 
     /**
@@ -389,7 +454,9 @@ public class ScotlandYardModel implements ScotlandYardGame {
      */
     @Override
     public void startRotate() {
-        DEBUG_LOG(String.format("startRotate() - current round is %s, reveal rounds are %s", getCurrentRound(), getRevealRounds()));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} startRotate() - current round is {}, reveal rounds are {}", mLogContext, getCurrentRound(), getRevealRounds());
+        }
 
         // check if game over
         if (!isGameOver()) {
@@ -431,10 +498,16 @@ public class ScotlandYardModel implements ScotlandYardGame {
             if (location.isPresent()) {
                 // prompt player for move
                 if (!isGameOver()) {
-                    DEBUG_LOG(String.format("startRotate: %s @ %s ::makeMove will have %s choices", currentPlayerColour, location.get(), moves.size()));
-                    current.player().makeMove(this, location.get(), moves, (choice) -> processMove(currentPlayerColour, choice));
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("{} startRotate: {} @ {} ::makeMove will have {} choices", mLogContext, currentPlayerColour, location.get(), moves.size());
+                    }
+                    int token = ++mTurnToken;
+                    mOfferedMoves = moves;
+                    current.player().makeMove(this, location.get(), moves, (choice) -> processMove(currentPlayerColour, token, choice));
                 } else {
-                    DEBUG_LOG("Cancelling makeMove - game is over");
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("{} Cancelling makeMove - game is over", mLogContext);
+                    }
                     spectatorNotifyGameOver();
                 }
 
@@ -446,13 +519,14 @@ public class ScotlandYardModel implements ScotlandYardGame {
 
     private Integer getLastKnownMrXLocation() {
         Integer result = mSavedMrXLocations.get(mSavedMrXLocations.size() - 1);
-//	    DEBUG_LOG(String.format("MrX's last known location is (%s)", result));
         return result;
     }
 
     private void nextRound(int diff) {
         mGameStarted = true;
+        mZobristHash ^= Zobrist.round(mCurrentRound) ^ Zobrist.round(mCurrentRound + diff);
         mCurrentRound += diff;
+        mStateVersion++;
         spectatorNotifyRoundStarted();
     }
 
@@ -482,7 +556,9 @@ public class ScotlandYardModel implements ScotlandYardGame {
         } else if (move instanceof DoubleMove) {
             performMove(player, (DoubleMove) move);
         } else if (move instanceof PassMove) {
-            DEBUG_LOG(String.format("%s PASSES", player.colour()));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} {} PASSES", mLogContext, player.colour());
+            }
             spectatorNotifyMove(move);
         } else {
             throw new IllegalArgumentException("performMove requires a TicketMove, DoubleMove or PassMove");
@@ -495,34 +571,42 @@ public class ScotlandYardModel implements ScotlandYardGame {
 
         TicketMove toNotify = move;
         Colour colour = player.colour();
-        DEBUG_LOG(String.format("TicketMove(%s)detected.. removing %s ticket.", move.ticket(), move.ticket()));
-        player.removeTicket(move.ticket());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} TicketMove({})detected.. removing {} ticket.", mLogContext, move.ticket(), move.ticket());
+        }
+        useTicket(player, move.ticket());
         if (player.isMrX()) {
             if (isRevealRound()) {
-                DEBUG_LOG(">> TicketMove: ticket's destination not masked because it is a reveal round");
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("{} >> TicketMove: ticket's destination not masked because it is a reveal round", mLogContext);
+                }
                 toNotify = new TicketMove(colour, move.ticket(), move.destination());
-                player.location(move.destination());
+                moveTo(player, move.destination());
                 saveMrXLocation(move.destination());
                 nextRound();
             } else {
-                DEBUG_LOG(String.format("TicketMove: ticket destination masked to %s because it is not a reveal round", getLastKnownMrXLocation()));
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("{} TicketMove: ticket destination masked to {} because it is not a reveal round", mLogContext, getLastKnownMrXLocation());
+                }
                 toNotify = new TicketMove(colour, move.ticket(), getLastKnownMrXLocation());
-                player.location(move.destination());
+                moveTo(player, move.destination());
                 nextRound();
             }
-            player.location(move.destination());
+            moveTo(player, move.destination());
             spectatorNotifyMove(toNotify);
         } else {
             Optional<ScotlandYardPlayer> oMrX = ScotlandYardPlayer.getByColour(mPlayers, BLACK);
             ScotlandYardPlayer mrX;
             if (oMrX.isPresent()) {
                 mrX = oMrX.get();
-                DEBUG_LOG(String.format("giving the %s ticket to Mr X", move.ticket()));
-                mrX.addTicket(move.ticket());
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("{} giving the {} ticket to Mr X", mLogContext, move.ticket());
+                }
+                giveTicket(mrX, move.ticket());
             } else {
                 throw new IllegalStateException("processMove failed to add ticket to mr X - unable to get Mr X's ScotlandYardPlayer instance");
             }
-            player.location(move.destination());
+            moveTo(player, move.destination());
             spectatorNotifyMove(toNotify);
         }
     }
@@ -543,45 +627,66 @@ public class ScotlandYardModel implements ScotlandYardGame {
         TicketMove firstMove = new TicketMove(colour, firstTicket, firstDestination);
         TicketMove secondMove = new TicketMove(colour, secondTicket, secondDestination);
         DoubleMove toNotify = new DoubleMove(colour, requireNonNull(firstMove), requireNonNull(secondMove));
-        DEBUG_LOG(String.format("DoubleMove:\n\t\t\t\tstarting @ %s\n\t\t\t\t(reveal: [%s,%s,%s])\n\t\t\t\ti: %s \n\t\t\t\to: %s", startingLocation, isRevealRound(), isRevealRound(1), isRevealRound(2), move, toNotify));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} DoubleMove: starting @ {} (reveal: [{},{},{}]) i: {}  o: {}", mLogContext, startingLocation, isRevealRound(), isRevealRound(1), isRevealRound(2), move, toNotify);
+        }
 
         // ROUND X
-        player.removeTicket(DOUBLE);
+        useTicket(player, DOUBLE);
         spectatorNotifyMove(toNotify);
-        DEBUG_LOG("processMove: first move notified.");
-        player.removeTicket(move.firstMove().ticket());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} processMove: first move notified.", mLogContext);
+        }
+        useTicket(player, move.firstMove().ticket());
         if (isRevealRound()) {
-            DEBUG_LOG(String.format("reveal round - saving mrx's location to firstMove.destination (=%s)", firstMove.destination()));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} reveal round - saving mrx's location to firstMove.destination (={})", mLogContext, firstMove.destination());
+            }
             saveMrXLocation(firstMove.destination());
         }
         nextRound();
         // ROUND X+1
         spectatorNotifyMove(firstMove);
-        DEBUG_LOG(String.format("DoubleMove ticket processing: removed 1st ticket (%s). New count = %s", move.firstMove().ticket(), getPlayerTickets(colour, move.firstMove().ticket())));
-        player.removeTicket(move.secondMove().ticket());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} DoubleMove ticket processing: removed 1st ticket ({}). New count = {}", mLogContext, move.firstMove().ticket(), getPlayerTickets(colour, move.firstMove().ticket()));
+        }
+        useTicket(player, move.secondMove().ticket());
         if (isRevealRound(-1)) {
             saveMrXLocation(firstMove.destination());
         }
         if (isRevealRound()) {
             saveMrXLocation(secondMove.destination());
         }
-        player.location(move.firstMove().destination());
+        moveTo(player, move.firstMove().destination());
         // ROUND X+2
         nextRound();
         spectatorNotifyMove(secondMove);
-        DEBUG_LOG(String.format("DoubleMove ticket processing: removed 2nd ticket (%s). New count = %s", move.secondMove().ticket(), getPlayerTickets(colour, move.secondMove().ticket())));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} DoubleMove ticket processing: removed 2nd ticket ({}). New count = {}", mLogContext, move.secondMove().ticket(), getPlayerTickets(colour, move.secondMove().ticket()));
+        }
         // TODO: save mrX's location here?
-        player.location(move.secondMove().destination());
+        moveTo(player, move.secondMove().destination());
         if (isRevealRound(-1)) {
             saveMrXLocation(secondMove.destination());
         }
-        DEBUG_LOG(String.format("Removed 2 tickets [%s,%s]. Location will be set to %s", move.firstMove().ticket(), move.secondMove().ticket(), move.finalDestination()));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} Removed 2 tickets [{},{}]. Location will be set to {}", mLogContext, move.firstMove().ticket(), move.secondMove().ticket(), move.finalDestination());
+        }
     }
 
-    private void processMove(Colour colour, Move move) {
+    /**
+     * processMove
+     * plays `move` if it is one of the moves the turn identified by `token` offered
+     * every turn gets a new token, so callbacks of earlier turns and second calls of a callback are rejected
+     */
+    private void processMove(Colour colour, int token, Move move) {
         requireNonNull(colour);
         requireNonNull(move);
 
+        if (token != mTurnToken || mOfferedMoves == null) {
+            throw new IllegalStateException("callback of turn " + token + " called again or after its turn ended");
+        }
+
         if (move instanceof DoubleMove) {
             mMovesPlayed += 2;
         } else if (move instanceof TicketMove || move instanceof PassMove) {
@@ -595,33 +700,45 @@ public class ScotlandYardModel implements ScotlandYardGame {
         // Check that the move was one of the valid moves we provided
         Optional<Integer> oLoc = getPlayerLocation(colour, true);
 
-        if (!(oLoc.isPresent() && getMoves(colour).contains(move))) {
+        if (!(oLoc.isPresent() && mOfferedMoves.contains(move))) {
             throw new IllegalArgumentException("that wasn't one of the moves we provided!");
         } else {
+            // the turn is over, the next playerTurn offers new moves under a new token
+            mOfferedMoves = null;
             // update last player
+            int previous = getRotatorIndex(getCurrentPlayer()) - 1;
             mLastPlayer = Optional.of(colour);
-            DEBUG_LOG("this.mLastPlayer -> " + colour.toString());
-
-            DEBUG_LOG(String.format(">>> processMove(%s, %s)\n", colour, move));
+            mZobristHash ^= Zobrist.current(previous) ^ Zobrist.current(getRotatorIndex(getCurrentPlayer()) - 1);
+            mStateVersion++;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} this.mLastPlayer -> {}", mLogContext, colour);
+                LOG.debug("{} >>> processMove({}, {})", mLogContext, colour, move);
+            }
 
             // update the location and ticket counts using performMove
             Optional<ScotlandYardPlayer> oPlayer = ScotlandYardPlayer.getByColour(mPlayers, colour);
             if (oPlayer.isPresent()) {
                 ScotlandYardPlayer player = oPlayer.get();
-                DEBUG_LOG("processMove@start: " + player.toString());
-                if (player.isMrX()) {
-                    DEBUG_LOG(String.format("last known locations are %s", this.mSavedMrXLocations));
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("{} processMove@start: {}", mLogContext, player);
+                }
+                if (player.isMrX() && LOG.isDebugEnabled()) {
+                    LOG.debug("{} last known locations are {}", mLogContext, this.mSavedMrXLocations);
                 }
                 if (move instanceof DoubleMove || move instanceof TicketMove || move instanceof PassMove) {
                     performMove(player, move);
                 } else {
                     throw new IllegalStateException(String.format("move (%s) is not an instance of DoubleMove, TicketMove or PassMove. Wtf?", move));
                 }
-                DEBUG_LOG("processMove@end: " + player.toString());
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("{} processMove@end: {}", mLogContext, player);
+                }
             } else {
                 throw new IllegalArgumentException("processMove could not find the right ScotlandYardPlayer for colour (" + colour + ")");
             }
-            System.out.println("ROUND " + mCurrentRound + ": " + colour.toString() + " " + move.toString());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} ROUND {}: {} {}", mLogContext, mCurrentRound, colour, move);
+            }
 
             endTurn();
         }
@@ -659,9 +776,9 @@ public class ScotlandYardModel implements ScotlandYardGame {
      */
     private void setWinningPlayers(boolean isMrX) {
         if (isMrX && !mGameOverWillNotify && !mWinnersAnnounced) {
-            DEBUG_LOG("MR X HAS WON");
+            LOG.debug("{} MR X HAS WON", mLogContext);
         } else if (!mGameOverWillNotify && !mWinnersAnnounced) {
-            DEBUG_LOG("DETECTIVES HAVE WON");
+            LOG.debug("{} DETECTIVES HAVE WON", mLogContext);
         }
         mWinners.clear();
         for (Colour player : getPlayers()) {
@@ -677,7 +794,7 @@ public class ScotlandYardModel implements ScotlandYardGame {
         }
 
         if (!mGameOverWillNotify && !mWinnersAnnounced) {
-            DEBUG_LOG(String.format("winners: %s", mWinners));
+            LOG.debug("{} winners: {}", mLogContext, mWinners);
             this.mWinnersAnnounced = true;
         }
     }
@@ -690,31 +807,30 @@ public class ScotlandYardModel implements ScotlandYardGame {
      * - max rounds have been played
      */
     private boolean checkWinMrX() {
-//		DEBUG_LOG("Checking if MrX has won");
         boolean result;
 
-        // TODO: all detectives are ticketless
+        // all detectives are ticketless, or all detectives have 0 valid moves available
         boolean ticketless = true;
-        for (ScotlandYardPlayer player : mPlayers) {
-            if (player.isDetective() && !player.hasNoTickets()) {
-                ticketless = false;
-            }
-        }
-
-        // TODO: all detectives have 0 valid moves available
         boolean moveless = true;
-        for (ScotlandYardPlayer player : mPlayers) {
-            if (player.isDetective() && getMoves(player.colour()).size() != 0) {
-                moveless = false;
+        for (int i = 0; i < mPlayers.size(); i++) {
+            if (mPlayers.get(i).isDetective()) {
+                if (!isTicketless(i)) {
+                    ticketless = false;
+                }
+                if (moveless && !isTicketless(i) && hasAnyMove(i)) {
+                    moveless = false;
+                }
             }
         }
 
-        // TODO: max rounds have been played
+        // max rounds have been played
         boolean roundless = getCurrentRound() >= getRounds().size() && getCurrentPlayer() == BLACK;
 
         result = ticketless || moveless || roundless;
         if (result && !mGameOverWillNotify) {
-            DEBUG_LOG(String.format("Mr X Win: Tickets? (%s) Moves? (%s) Rounds? (%s)", ticketless, moveless, roundless));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} Mr X Win: Tickets? ({}) Moves? ({}) Rounds? ({})", mLogContext, ticketless, moveless, roundless);
+            }
         }
         return result;
     }
@@ -726,34 +842,39 @@ public class ScotlandYardModel implements ScotlandYardGame {
      * - mrX is captured
      */
     private boolean checkWinDetective() {
-//		DEBUG_LOG("Checking if detectives have won");
         boolean result;
 
-        // TODO: mrX is stuck
-        boolean stuck = getCurrentPlayer().isMrX() && getMoves(BLACK).isEmpty();
+        // mrX is stuck
+        boolean stuck = getCurrentPlayer().isMrX() && !hasAnyMove(0);
 
-        // TODO: mrX is captured
+        // mrX is captured
         boolean captured = false;
-        Integer mrXlocation = -1;
-        Optional<Integer> oLoc = getPlayerLocation(BLACK, true);
-        if (oLoc.isPresent()) {
-            mrXlocation = oLoc.get();
-        }
-        if (getOccupiedLocations().contains(mrXlocation)) {
-            captured = true;
+        int mrXLocation = mPlayers.get(0).location();
+        for (ScotlandYardPlayer player : mPlayers) {
+            if (player.isDetective() && player.location() == mrXLocation) {
+                captured = true;
+            }
         }
 
         result = stuck || captured;
         if (result && !mGameOverWillNotify && !mWinnersAnnounced) {
-            DEBUG_LOG(String.format("Detective Win: Stuck? (%s) Captured? (%s)", stuck, captured));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} Detective Win: Stuck? ({}) Captured? ({})", mLogContext, stuck, captured);
+            }
         }
         return result;
     }
 
+    /**
+     * the result is cached until the state version changes, i.e. a location, ticket count,
+     * round or the current player changes
+     */
     @Override
     public boolean isGameOver() {
+        if (mGameOverVersion == mStateVersion) {
+            return mGameOver;
+        }
         boolean result;
-//			DEBUG_LOG("isGameOver?");
         boolean mrXWin = checkWinMrX();
         boolean playerWin = checkWinDetective();
         if (mrXWin) {
@@ -762,6 +883,8 @@ public class ScotlandYardModel implements ScotlandYardGame {
             setWinningPlayers(false);
         }
         result = mrXWin || playerWin;
+        mGameOver = result;
+        mGameOverVersion = mStateVersion;
         return result;
     }
 
@@ -800,7 +923,7 @@ public class ScotlandYardModel implements ScotlandYardGame {
      */
     @Override
     public void registerSpectator(Spectator spectator) {
-        DEBUG_LOG("Registering a spectator");
+        LOG.debug("{} Registering a spectator", mLogContext);
         requireNonNull(spectator);
         if (!getSpectators().contains(spectator)) {
             mSpectators.add(spectator);
@@ -812,7 +935,7 @@ public class ScotlandYardModel implements ScotlandYardGame {
 
     @Override
     public void unregisterSpectator(Spectator spectator) {
-        DEBUG_LOG("Unregistering spectator");
+        LOG.debug("{} Unregistering spectator", mLogContext);
         // TODO
         requireNonNull(spectator);
 
@@ -833,7 +956,9 @@ public class ScotlandYardModel implements ScotlandYardGame {
         if (!isGameOver()) {
             throw new IllegalStateException("spectatorNotifyGameOver called but game is not over yet");
         } else {
-            DEBUG_LOG(String.format("NOTIFICATION: GAME OVER (Winners: %s) - %s rounds and %s moves played", getWinningPlayers(), mCurrentRound, mMovesPlayed));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("{} NOTIFICATION: GAME OVER (Winners: {}) - {} rounds and {} moves played", mLogContext, getWinningPlayers(), mCurrentRound, mMovesPlayed);
+            }
             Collection<Spectator> specs = getSpectators();
             mGameOverWillNotify = true;
             if (!getSpectators().isEmpty()) {
@@ -848,8 +973,9 @@ public class ScotlandYardModel implements ScotlandYardGame {
     private void spectatorNotifyRoundStarted() {
         this.mNumNotifications++;
         Collection<Spectator> specs = getSpectators();
-        System.out.println();
-        DEBUG_LOG(String.format("NOTIFICATION #%s @%s specs :: Round %s START\n", this.mNumNotifications, specs.size(), getCurrentRound()));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} NOTIFICATION #{} @{} specs :: Round {} START", mLogContext, this.mNumNotifications, specs.size(), getCurrentRound());
+        }
 
         if (!getSpectators().isEmpty()) {
             for (Spectator spec : specs) {
@@ -861,8 +987,9 @@ public class ScotlandYardModel implements ScotlandYardGame {
     private void spectatorNotifyMove(Move move) {
         this.mNumNotifications++;
         Collection<Spectator> specs = getSpectators();
-        System.out.println();
-        DEBUG_LOG(String.format("NOTIFICATION #%s @%s specs :: (%s)\n", this.mNumNotifications, specs.size(), move));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} NOTIFICATION #{} @{} specs :: ({})", mLogContext, this.mNumNotifications, specs.size(), move);
+        }
         isGameOver();
         if (!getSpectators().isEmpty()) {
             for (Spectator spec : specs) {
@@ -874,8 +1001,9 @@ public class ScotlandYardModel implements ScotlandYardGame {
     private void spectatorNotifyRotation() {
         this.mNumNotifications++;
         Collection<Spectator> specs = getSpectators();
-        System.out.println();
-        DEBUG_LOG(String.format("NOTIFICATION #%s @%s specs :: Round END\n", this.mNumNotifications, specs.size()));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} NOTIFICATION #{} @{} specs :: Round END", mLogContext, this.mNumNotifications, specs.size());
+        }
         if (!getSpectators().isEmpty()) {
             for (Spectator spec : specs) {
                 spec.onRotationComplete(this);
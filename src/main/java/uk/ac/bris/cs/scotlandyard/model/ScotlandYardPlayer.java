@@ -1,20 +1,24 @@
 package uk.ac.bris.cs.scotlandyard.model;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.*;
 
 import static uk.ac.bris.cs.scotlandyard.model.Colour.*;
 import static java.util.Objects.requireNonNull;
-import static uk.ac.bris.cs.scotlandyard.model.Ticket.*;
 
 /**
  * A class that contains all the information about a particular player.
  */
 public class ScotlandYardPlayer {
 
+	private static final Logger LOG = LoggerFactory.getLogger(ScotlandYardPlayer.class);
+
 	private final Player player;
 	private final Colour colour;
 	private int location;
-	private final Map<Ticket, Integer> tickets;
+	private final TicketLedger tickets;
 	private ArrayList<Integer> locationHistory;
 
 	/**
@@ -26,11 +30,23 @@ public class ScotlandYardPlayer {
 	 * @param tickets the tickets associated with the player.
 	 */
 	public ScotlandYardPlayer(Player player, Colour colour, int location, Map<Ticket, Integer> tickets) {
+		this(player, colour, location, new TicketLedger(tickets));
+	}
+
+	/**
+	 * Constructs a new ScotlandYardPlayer object owning the given ledger.
+	 *
+	 * @param player the Player object associated with the player.
+	 * @param colour the colour of the player.
+	 * @param location the location of the player.
+	 * @param tickets the tickets of the player, not copied; not null
+	 */
+	ScotlandYardPlayer(Player player, Colour colour, int location, TicketLedger tickets) {
 		this.player = player;
 		this.colour = colour;
 		this.location = location;
 		this.locationHistory = new ArrayList<>();
-		this.tickets = new HashMap<>(tickets);
+		this.tickets = requireNonNull(tickets);
 	}
 
 	static Optional<ScotlandYardPlayer> getByColour(ArrayList<ScotlandYardPlayer> players, Colour colour) {
@@ -111,13 +127,15 @@ public class ScotlandYardPlayer {
 	 * @param location the location to set
 	 */
 	public void location(int location) {
-	    if(location != this.location){
-		    this.location = location;
-	        System.out.printf("%s @ (%s -> %s)\n", this.colour, locationHistory(), location);
-	        this.locationHistory.add(location);
-        } else {
-	        System.out.printf("%s is already at %s!\n", this.colour, location);
-        }
+		if (location != this.location) {
+			this.location = location;
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("{} @ ({} -> {})", this.colour, locationHistory, location);
+			}
+			this.locationHistory.add(location);
+		} else if (LOG.isDebugEnabled()) {
+			LOG.debug("{} is already at {}!", this.colour, location);
+		}
 	}
 
 	/**
@@ -132,9 +150,17 @@ public class ScotlandYardPlayer {
     }
 
 	/**
-	 * @return the player's current tickets.
+	 * @return an unmodifiable view of the player's current tickets.
 	 */
 	public Map<Ticket, Integer> tickets() {
+		return tickets.asMap();
+	}
+
+	/**
+	 * @return the player's current tickets, changing as the player uses and
+	 *         receives tickets.
+	 */
+	public TicketLedger ledger() {
 		return tickets;
 	}
 
@@ -158,10 +184,7 @@ public class ScotlandYardPlayer {
 	}
 
 	private void adjustTicketCount(Ticket ticket, int by) {
-		Integer ticketCount = tickets.get(ticket);
-		ticketCount += by;
-		tickets.remove(ticket);
-		tickets.put(ticket, ticketCount);
+		tickets.adjust(ticket, by);
 	}
 
 	/**
@@ -171,18 +194,11 @@ public class ScotlandYardPlayer {
 	 * @return true if the player has the given ticket, false otherwise
 	 */
 	public boolean hasTickets(Ticket ticket) {
-		return tickets.get(ticket) != 0;
+		return tickets.has(ticket);
 	}
 
 	public boolean hasNoTickets() {
-		Ticket[] transports = {TAXI, BUS, UNDERGROUND, SECRET, DOUBLE};
-		boolean result = true;
-		for (Ticket transport: transports) {
-			if(tickets.get(transport) != 0){
-				result = false;
-			}
-		}
-		return result;
+		return tickets.isEmpty();
 	}
 
 	/**
@@ -195,7 +211,7 @@ public class ScotlandYardPlayer {
 	 *         otherwise
 	 */
 	public boolean hasTickets(Ticket ticket, int quantityInclusive) {
-		return tickets.get(ticket) >= quantityInclusive;
+		return tickets.has(ticket, quantityInclusive);
 	}
 
 	@Override
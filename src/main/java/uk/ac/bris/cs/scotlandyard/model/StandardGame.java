@@ -147,6 +147,15 @@ public class StandardGame {
 		return Collections.unmodifiableMap(map);
 	}
 
+	/**
+	 * Reads the standard Scotland Yard map, the returned graph is backed by a
+	 * {@link uk.ac.bris.cs.gamekit.graph.CompiledGraph} which can be retrieved
+	 * without copying through
+	 * {@link uk.ac.bris.cs.gamekit.graph.CompiledGraph#of}
+	 *
+	 * @return the standard map; never null
+	 * @throws IOException if the graph resource cannot be read
+	 */
 	public static ImmutableGraph<Integer, Transport> standardGraph() throws IOException {
 		return ScotlandYardGraphReader.fromLines(readString("graph.txt"));
 	}
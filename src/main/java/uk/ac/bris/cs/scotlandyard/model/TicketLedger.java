@@ -0,0 +1,204 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Ticket counts of a player, kept in an int array indexed by
+ * {@link Ticket#ordinal()} so counting, using and checking tickets never
+ * boxes. The same layout as the ticket arrays of {@link MoveGenerator}, so
+ * counts can be copied over in bulk.
+ * <br>
+ * A {@link Map} view is only created when asked for, for code written
+ * against maps. Not thread safe.
+ */
+public final class TicketLedger {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final Ticket[] REQUIRED = { Ticket.TAXI, Ticket.BUS, Ticket.UNDERGROUND };
+	private static final Ticket[] MRX_ONLY = { Ticket.SECRET, Ticket.DOUBLE };
+
+	private final int[] counts = new int[TICKETS.length];
+	private Map<Ticket, Integer> view;
+
+	/**
+	 * Creates a ledger without tickets
+	 */
+	public TicketLedger() {}
+
+	/**
+	 * @param tickets the initial counts, missing tickets count as none; not
+	 *        null
+	 */
+	public TicketLedger(Map<Ticket, Integer> tickets) {
+		for (Map.Entry<Ticket, Integer> entry : tickets.entrySet()) {
+			Integer count = entry.getValue();
+			counts[entry.getKey().ordinal()] = count == null ? 0 : count;
+		}
+	}
+
+	/**
+	 * Validates the tickets of a configuration: every player needs taxi, bus
+	 * and underground tickets and detectives must have none of Mr.X's
+	 *
+	 * @param configuration the configuration; not null
+	 * @return the ledger of the configuration's tickets; never null
+	 * @throws IllegalArgumentException if the tickets are invalid
+	 */
+	public static TicketLedger of(PlayerConfiguration configuration) {
+		Map<Ticket, Integer> tickets = requireNonNull(configuration.tickets);
+		for (Ticket ticket : REQUIRED) {
+			if (tickets.get(ticket) == null) throw new IllegalArgumentException(
+					configuration.colour + " is missing " + ticket + " tickets");
+		}
+		if (configuration.colour.isDetective()) {
+			for (Ticket ticket : MRX_ONLY) {
+				Integer count = tickets.get(ticket);
+				if (count == null) throw new IllegalArgumentException(
+						configuration.colour + " is missing " + ticket + " tickets");
+				if (count != 0) throw new IllegalArgumentException(
+						"Detective should not have " + ticket + " tickets");
+			}
+		}
+		return new TicketLedger(tickets);
+	}
+
+	/**
+	 * @param ticket the ticket; not null
+	 * @return the number of the tickets held
+	 */
+	public int count(Ticket ticket) {
+		return counts[ticket.ordinal()];
+	}
+
+	/**
+	 * @param ticket the ticket; not null
+	 * @return true if at least one of the tickets is held
+	 */
+	public boolean has(Ticket ticket) {
+		return counts[ticket.ordinal()] != 0;
+	}
+
+	/**
+	 * @param ticket the ticket; not null
+	 * @param quantity the number of tickets needed
+	 * @return true if at least the quantity of the tickets is held
+	 */
+	public boolean has(Ticket ticket, int quantity) {
+		return counts[ticket.ordinal()] >= quantity;
+	}
+
+	/**
+	 * @return true if no tickets of any kind are held
+	 */
+	public boolean isEmpty() {
+		for (int count : counts) {
+			if (count != 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param ticket the ticket; not null
+	 * @param by the number of tickets to add, negative to remove
+	 */
+	public void adjust(Ticket ticket, int by) {
+		counts[ticket.ordinal()] += by;
+	}
+
+	/**
+	 * Copies the counts into an array indexed by {@link Ticket#ordinal()},
+	 * e.g. to generate moves
+	 *
+	 * @param target the array; at least as long as there are tickets
+	 */
+	public void copyTo(int[] target) {
+		System.arraycopy(counts, 0, target, 0, counts.length);
+	}
+
+	/**
+	 * @return a copy of the counts, indexed by {@link Ticket#ordinal()}
+	 */
+	public int[] snapshot() {
+		return counts.clone();
+	}
+
+	/**
+	 * Sets every count, e.g. back to a {@link #snapshot()}
+	 *
+	 * @param snapshot the counts indexed by {@link Ticket#ordinal()}; as long
+	 *        as there are tickets
+	 */
+	public void restore(int[] snapshot) {
+		if (snapshot.length != counts.length)
+			throw new IllegalArgumentException("Invalid snapshot of " + snapshot.length + " counts");
+		System.arraycopy(snapshot, 0, counts, 0, counts.length);
+	}
+
+	/**
+	 * @return an unmodifiable view of the counts of every ticket, following
+	 *         later changes; never null
+	 */
+	public Map<Ticket, Integer> asMap() {
+		if (view == null) view = new View();
+		return view;
+	}
+
+	@Override
+	public String toString() {
+		return asMap().toString();
+	}
+
+	private final class View extends AbstractMap<Ticket, Integer> {
+
+		private final Set<Entry<Ticket, Integer>> entries = new AbstractSet<Entry<Ticket, Integer>>() {
+
+			@Override
+			public Iterator<Entry<Ticket, Integer>> iterator() {
+				return new Iterator<Entry<Ticket, Integer>>() {
+					private int next;
+
+					@Override
+					public boolean hasNext() {
+						return next < TICKETS.length;
+					}
+
+					@Override
+					public Entry<Ticket, Integer> next() {
+						if (!hasNext()) throw new NoSuchElementException();
+						Ticket ticket = TICKETS[next++];
+						return new SimpleImmutableEntry<>(ticket, counts[ticket.ordinal()]);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return TICKETS.length;
+			}
+		};
+
+		@Override
+		public Set<Entry<Ticket, Integer>> entrySet() {
+			return entries;
+		}
+
+		@Override
+		public Integer get(Object key) {
+			return key instanceof Ticket ? counts[((Ticket) key).ordinal()] : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof Ticket;
+		}
+
+	}
+
+}
@@ -10,6 +10,8 @@ public class TicketMove extends Move {
 	private static final long serialVersionUID = -8579140322766860934L;
 	private final Ticket ticket;
 	private final int destination;
+	// cached, 0 until computed; transient as enum hash codes differ between runs
+	private transient int hash;
 
 	/**
 	 * Create a new ticket move with ticket and destination
@@ -54,7 +56,12 @@ public class TicketMove extends Move {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(super.hashCode(), ticket, destination);
+		int h = hash;
+		if (h == 0) {
+			h = 31 * (31 * (31 + super.hashCode()) + Objects.hashCode(ticket)) + destination;
+			hash = h;
+		}
+		return h;
 	}
 
 	@Override
@@ -0,0 +1,123 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+
+/**
+ * An immutable copy of a {@link ScotlandYardView} at one point in time, so
+ * the view can be read on another thread while the game goes on.
+ * <br>
+ * Locations and tickets are copied into int arrays. The graph is shared with
+ * the copied view rather than copied, as games never change their graph.
+ */
+public final class ViewSnapshot implements ScotlandYardView {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final int ABSENT = -1;
+
+	private final List<Colour> players;
+	private final Set<Colour> winning;
+	private final int[] locations;
+	private final int[] tickets;
+	private final boolean gameOver;
+	private final Colour currentPlayer;
+	private final int currentRound;
+	private final List<Boolean> rounds;
+	private final Graph<Integer, Transport> graph;
+
+	private ViewSnapshot(ScotlandYardView view) {
+		this.players = unmodifiableList(new ArrayList<>(view.getPlayers()));
+		Set<Colour> winners = EnumSet.noneOf(Colour.class);
+		winners.addAll(view.getWinningPlayers());
+		this.winning = unmodifiableSet(winners);
+		this.locations = new int[players.size()];
+		this.tickets = new int[players.size() * TICKETS.length];
+		for (int i = 0; i < players.size(); i++) {
+			Colour colour = players.get(i);
+			locations[i] = view.getPlayerLocation(colour).orElse(ABSENT);
+			for (Ticket ticket : TICKETS)
+				tickets[i * TICKETS.length + ticket.ordinal()] = view
+						.getPlayerTickets(colour, ticket).orElse(ABSENT);
+		}
+		this.gameOver = view.isGameOver();
+		this.currentPlayer = view.getCurrentPlayer();
+		this.currentRound = view.getCurrentRound();
+		this.rounds = unmodifiableList(new ArrayList<>(view.getRounds()));
+		this.graph = view.getGraph();
+	}
+
+	/**
+	 * @param view the view to copy; not null
+	 * @return a snapshot of the view, the view itself if it is a snapshot
+	 *         already; never null
+	 */
+	public static ViewSnapshot of(ScotlandYardView view) {
+		if (view instanceof ViewSnapshot) return (ViewSnapshot) view;
+		return new ViewSnapshot(view);
+	}
+
+	@Override
+	public List<Colour> getPlayers() {
+		return players;
+	}
+
+	@Override
+	public Set<Colour> getWinningPlayers() {
+		return winning;
+	}
+
+	@Override
+	public Optional<Integer> getPlayerLocation(Colour colour) {
+		int index = players.indexOf(colour);
+		if (index < 0 || locations[index] == ABSENT) return Optional.empty();
+		return Optional.of(locations[index]);
+	}
+
+	@Override
+	public Optional<Integer> getPlayerTickets(Colour colour, Ticket ticket) {
+		int index = players.indexOf(colour);
+		if (index < 0) return Optional.empty();
+		int count = tickets[index * TICKETS.length + ticket.ordinal()];
+		return count == ABSENT ? Optional.empty() : Optional.of(count);
+	}
+
+	@Override
+	public boolean isGameOver() {
+		return gameOver;
+	}
+
+	@Override
+	public Colour getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	@Override
+	public int getCurrentRound() {
+		return currentRound;
+	}
+
+	@Override
+	public List<Boolean> getRounds() {
+		return rounds;
+	}
+
+	@Override
+	public Graph<Integer, Transport> getGraph() {
+		return graph;
+	}
+
+	@Override
+	public String toString() {
+		return "ViewSnapshot{round=" + currentRound + ", current=" + currentPlayer + ", over="
+				+ gameOver + ", winning=" + winning + "}";
+	}
+
+}
@@ -0,0 +1,103 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Keys for 64-bit Zobrist hashing of game states.
+ * <br>
+ * A state hashes to the XOR of one key per player location, one key per
+ * player and ticket type for the ticket count, one key for the current player
+ * and one for the round. Applying a move only XORs out the keys that changed
+ * and XORs in their replacements, see {@link ScotlandYardModel#getZobristHash()}
+ * and {@link GameState#zobristHash()}. Keys are generated from a fixed seed so
+ * hashes are the same across runs.
+ * <br>
+ * Players are identified by their index in {@link ScotlandYardView#getPlayers()}
+ * and locations by their node index in the compiled graph.
+ */
+public final class Zobrist {
+
+	/**
+	 * Ticket counts above this share a key
+	 */
+	public static final int MAX_TICKET_COUNT = 127;
+
+	/**
+	 * Rounds are hashed modulo this
+	 */
+	public static final int ROUND_KEYS = 256;
+
+	private static final int PLAYERS = Colour.values().length;
+	private static final int TICKETS = Ticket.values().length;
+	private static final int COUNTS = MAX_TICKET_COUNT + 1;
+
+	private static final long[] LOCATION;
+	private static final long[] TICKET;
+	private static final long[] CURRENT;
+	private static final long[] ROUND;
+
+	static {
+		SplittableRandom random = new SplittableRandom(0x5C07_1A4D_2018_0001L);
+		LOCATION = random.longs(PLAYERS * MoveGenerator.MAX_NODES).toArray();
+		TICKET = random.longs(PLAYERS * TICKETS * COUNTS).toArray();
+		CURRENT = random.longs(PLAYERS).toArray();
+		ROUND = random.longs(ROUND_KEYS).toArray();
+	}
+
+	private Zobrist() {}
+
+	/**
+	 * @param player the player index
+	 * @param node the node index of the player's location
+	 * @return the key of the player being at the node
+	 */
+	public static long location(int player, int node) {
+		return LOCATION[player * MoveGenerator.MAX_NODES + node];
+	}
+
+	/**
+	 * @param player the player index
+	 * @param ticket the {@link Ticket#ordinal()}
+	 * @param count the number of tickets held
+	 * @return the key of the player holding count tickets of the type
+	 */
+	public static long tickets(int player, int ticket, int count) {
+		return TICKET[(player * TICKETS + ticket) * COUNTS + Math.min(count, MAX_TICKET_COUNT)];
+	}
+
+	/**
+	 * @param player the player index
+	 * @return the key of the player being the one to move
+	 */
+	public static long current(int player) {
+		return CURRENT[player];
+	}
+
+	/**
+	 * @param round the number of rounds played
+	 * @return the key of the round
+	 */
+	public static long round(int round) {
+		return ROUND[round & (ROUND_KEYS - 1)];
+	}
+
+	/**
+	 * Hashes a state from scratch
+	 *
+	 * @param locations node index per player
+	 * @param tickets ticket counts per player, indexed by {@link Ticket#ordinal()}
+	 * @param current the index of the player to move
+	 * @param round the number of rounds played
+	 * @return the hash
+	 */
+	public static long hash(int[] locations, int[][] tickets, int current, int round) {
+		long hash = current(current) ^ round(round);
+		for (int player = 0; player < locations.length; player++) {
+			hash ^= location(player, locations[player]);
+			for (int ticket = 0; ticket < TICKETS; ticket++)
+				hash ^= tickets(player, ticket, tickets[player][ticket]);
+		}
+		return hash;
+	}
+
+}
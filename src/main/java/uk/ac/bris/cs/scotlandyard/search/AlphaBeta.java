@@ -0,0 +1,494 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Deterministic, iteratively deepened alpha-beta search on {@link GameState}s.
+ * <br>
+ * The search is paranoid: Mr.X maximises the score and every detective
+ * minimises it, one ply per player. Moves are ordered by the
+ * {@link TranspositionTable} move, two killer moves per ply, then the
+ * distance to the nearest detective (for Mr.X) or to Mr.X (for detectives)
+ * with the history heuristic breaking ties. When the searching player cannot
+ * see Mr.X several determinizations can be searched at once, the root then
+ * takes the weighted average of the scores (expectimax).
+ * <br>
+ * Positions at the horizon get the built in static evaluation, or, given a
+ * {@link Scorer}, are scored from their {@link Features}; the children of a
+ * node one ply above the horizon are then scored in a single batch.
+ * <br>
+ * The deadline is checked every few nodes, the result of the deepest fully
+ * searched depth is returned. A {@link Listener} is told about every
+ * completed depth. Instances are not thread safe, the table may be shared.
+ */
+public final class AlphaBeta {
+
+	/**
+	 * Score of a won game for Mr.X, plus the remaining depth so sooner wins
+	 * score higher; negated for the detectives
+	 */
+	public static final int WIN = 1_000_000;
+
+	/**
+	 * The maximum depth, in plies, that can be searched
+	 */
+	public static final int MAX_DEPTH = 64;
+
+	private static final int INFINITY = 2 * WIN;
+	private static final int NO_MOVE = Integer.MIN_VALUE;
+	private static final int CHECK_INTERVAL = 1024;
+	private static final int HISTORY_LIMIT = (1 << 20) - 1;
+	private static final int TABLE_MOVE = 1 << 30;
+	private static final int FIRST_KILLER = 1 << 29;
+	private static final int SECOND_KILLER = 1 << 28;
+	private static final int DISTANCE_SHIFT = 20;
+
+	/**
+	 * Instrumentation hook for tuning the search
+	 */
+	@FunctionalInterface
+	public interface Listener {
+
+		/**
+		 * Called after every fully searched depth, on the searching thread
+		 *
+		 * @param result the result of the search so far; never null
+		 */
+		void onDepthCompleted(Result result);
+	}
+
+	/**
+	 * Outcome of a search
+	 */
+	public static final class Result {
+		private final int move;
+		private final int score;
+		private final int depth;
+		private final long nodes;
+		private final long elapsedNanos;
+
+		Result(int move, int score, int depth, long nodes, long elapsedNanos) {
+			this.move = move;
+			this.score = score;
+			this.depth = depth;
+			this.nodes = nodes;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * @return true if a move was found
+		 */
+		public boolean found() {
+			return move != NO_MOVE;
+		}
+
+		/**
+		 * @return the packed move, see {@link GameState#toMove(int)}
+		 */
+		public int move() {
+			if (!found()) throw new IllegalStateException("No move found");
+			return move;
+		}
+
+		/**
+		 * @return the score of the move, from Mr.X's point of view
+		 */
+		public int score() {
+			return score;
+		}
+
+		/**
+		 * @return the deepest fully searched depth in plies; 0 if the move
+		 *         was forced
+		 */
+		public int depth() {
+			return depth;
+		}
+
+		/**
+		 * @return the number of nodes visited, including unfinished depths
+		 */
+		public long nodes() {
+			return nodes;
+		}
+
+		/**
+		 * @return the time spent searching in nanoseconds
+		 */
+		public long elapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * @return the number of nodes visited per second
+		 */
+		public double nodesPerSecond() {
+			return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "Result{move=" + move + ", score=" + score + ", depth=" + depth + ", nodes="
+					+ nodes + ", nodesPerSecond=" + (long) nodesPerSecond() + '}';
+		}
+	}
+
+	private static final class Timeout extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Timeout() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final Timeout TIMEOUT = new Timeout();
+
+	private final DistanceOracle<Transport> distances;
+	private final TranspositionTable table;
+	private final Listener listener;
+	private final Scorer scorer;
+	private final Features features;
+	private final TranspositionTable.Hit hit = new TranspositionTable.Hit();
+	private final int[][] killers = new int[MAX_DEPTH + 1][2];
+	private final int[][] moves = new int[MAX_DEPTH + 1][64];
+	private final int[][] keys = new int[MAX_DEPTH + 1][64];
+	private int[][] history = new int[0][0];
+	private float[] batch = new float[0];
+	private float[] batchScores = new float[0];
+	private long nodes;
+	private long deadline;
+
+	/**
+	 * @param distances the distances of the graph the states are played on;
+	 *        not null
+	 * @param table the transposition table; not null
+	 * @param listener the instrumentation hook; null for none
+	 */
+	public AlphaBeta(DistanceOracle<Transport> distances, TranspositionTable table,
+			Listener listener) {
+		this(distances, table, listener, null);
+	}
+
+	/**
+	 * @param distances the distances of the graph the states are played on;
+	 *        not null
+	 * @param table the transposition table; not null
+	 * @param listener the instrumentation hook; null for none
+	 * @param scorer scores the positions at the horizon, taking
+	 *        {@link Features#COUNT} inputs; null for the built in evaluation
+	 */
+	public AlphaBeta(DistanceOracle<Transport> distances, TranspositionTable table,
+			Listener listener, Scorer scorer) {
+		this.distances = requireNonNull(distances);
+		this.table = requireNonNull(table);
+		this.listener = listener;
+		this.scorer = scorer;
+		if (scorer != null && scorer.inputs() != Features.COUNT)
+			throw new IllegalArgumentException("Scorer needs " + Features.COUNT + " inputs");
+		this.features = scorer == null ? null : new Features(distances);
+	}
+
+	/**
+	 * Searches a fully known state
+	 *
+	 * @param root the state to search; not null and not over
+	 * @param maxDepth the maximum depth in plies; in {@code [1, MAX_DEPTH]}
+	 * @param deadline the {@link System#nanoTime()} to stop at
+	 * @return the result; never null
+	 */
+	public Result search(GameState root, int maxDepth, long deadline) {
+		return search(Collections.singletonList(root), new double[] { 1 }, maxDepth, deadline);
+	}
+
+	/**
+	 * Searches the weighted average of several determinizations
+	 *
+	 * @param roots the states to search, differing only in where Mr.X is;
+	 *        not empty
+	 * @param weights the weight of each state; same size as roots
+	 * @param maxDepth the maximum depth in plies; in {@code [1, MAX_DEPTH]}
+	 * @param deadline the {@link System#nanoTime()} to stop at
+	 * @return the result; never null
+	 */
+	public Result search(List<GameState> roots, double[] weights, int maxDepth, long deadline) {
+		if (roots.isEmpty() || roots.size() != weights.length)
+			throw new IllegalArgumentException("Need one weight per root");
+		if (maxDepth < 1 || maxDepth > MAX_DEPTH)
+			throw new IllegalArgumentException("Invalid depth " + maxDepth);
+		long start = System.nanoTime();
+		this.deadline = deadline;
+		this.nodes = 0;
+		prepare(roots.get(0));
+
+		GameState first = roots.get(0);
+		boolean maximising = first.currentIndex() == 0;
+		int[] rootMoves = generatedMoves(first.generate());
+		if (rootMoves.length < 2) {
+			int move = rootMoves.length == 0 ? GameState.PASS : rootMoves[0];
+			return new Result(move, 0, 0, 0, System.nanoTime() - start);
+		}
+		order(first, rootMoves, rootMoves.length, 0, NO_MOVE);
+
+		Result result = new Result(NO_MOVE, 0, 0, 0, 0);
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			int best = NO_MOVE;
+			double bestScore = maximising ? -INFINITY : INFINITY;
+			try {
+				for (int i = 0; i < rootMoves.length; i++) {
+					double score = 0;
+					for (int r = 0; r < roots.size(); r++) {
+						int alpha = -INFINITY;
+						int beta = INFINITY;
+						// with a single root the window from earlier moves applies
+						if (roots.size() == 1 && best != NO_MOVE) {
+							if (maximising) alpha = (int) bestScore;
+							else beta = (int) bestScore;
+						}
+						score += weights[r] * search(roots.get(r).advance(rootMoves[i]),
+								depth - 1, 1, alpha, beta);
+					}
+					if (best == NO_MOVE || (maximising ? score > bestScore : score < bestScore)) {
+						bestScore = score;
+						best = rootMoves[i];
+					}
+				}
+			} catch (Timeout e) {
+				break;
+			}
+			result = new Result(best, (int) Math.round(bestScore), depth, nodes,
+					System.nanoTime() - start);
+			if (listener != null) listener.onDepthCompleted(result);
+			moveToFront(rootMoves, best);
+			if (Math.abs(bestScore) >= WIN) break;
+		}
+		return new Result(result.move, result.score, result.depth, nodes,
+				System.nanoTime() - start);
+	}
+
+	// resets killers and ages the history between searches
+	private void prepare(GameState root) {
+		for (int[] killer : killers)
+			Arrays.fill(killer, NO_MOVE);
+		int players = root.players().size();
+		int size = root.graph().size();
+		if (history.length != players || history[0].length != size) {
+			history = new int[players][size];
+		} else {
+			for (int[] scores : history) {
+				for (int i = 0; i < scores.length; i++)
+					scores[i] >>= 1;
+			}
+		}
+	}
+
+	private static void moveToFront(int[] moves, int move) {
+		for (int i = 0; i < moves.length; i++) {
+			if (moves[i] != move) continue;
+			System.arraycopy(moves, 0, moves, 1, i);
+			moves[0] = move;
+			return;
+		}
+	}
+
+	private static int[] generatedMoves(MoveGenerator generator) {
+		int[] moves = new int[generator.size()];
+		for (int i = 0; i < moves.length; i++)
+			moves[i] = generator.get(i);
+		return moves;
+	}
+
+	private int search(GameState state, int depth, int ply, int alpha, int beta) {
+		if (++nodes % CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) throw TIMEOUT;
+		if (state.isGameOver()) return terminal(state, depth);
+		if (depth == 0) return evaluate(state);
+		if (depth == 1 && scorer != null) return frontier(state, ply);
+
+		long key = state.zobristHash();
+		int tableMove = NO_MOVE;
+		if (table.probe(key, hit)) {
+			tableMove = hit.move;
+			if (hit.depth >= depth) {
+				if (hit.bound == TranspositionTable.EXACT) return hit.score;
+				if (hit.bound == TranspositionTable.LOWER) alpha = Math.max(alpha, hit.score);
+				else beta = Math.min(beta, hit.score);
+				if (alpha >= beta) return hit.score;
+			}
+		}
+
+		MoveGenerator generator = state.generate();
+		int count = generator.size();
+		if (count == 0) return search(state.advance(GameState.PASS), depth - 1, ply + 1, alpha, beta);
+		if (moves[ply].length < count) moves[ply] = new int[Integer.highestOneBit(count) << 1];
+		int[] plyMoves = moves[ply];
+		for (int i = 0; i < count; i++)
+			plyMoves[i] = generator.get(i);
+		order(state, plyMoves, count, ply, tableMove);
+
+		boolean maximising = state.currentIndex() == 0;
+		int alphaBefore = alpha;
+		int betaBefore = beta;
+		int best = maximising ? -INFINITY : INFINITY;
+		int bestMove = NO_MOVE;
+		for (int i = 0; i < count; i++) {
+			int move = plyMoves[i];
+			int score = search(state.advance(move), depth - 1, ply + 1, alpha, beta);
+			if (maximising ? score > best : score < best) {
+				best = score;
+				bestMove = move;
+			}
+			if (maximising) alpha = Math.max(alpha, best);
+			else beta = Math.min(beta, best);
+			if (alpha >= beta) {
+				cutoff(state, move, depth, ply);
+				break;
+			}
+		}
+		int bound = best <= alphaBefore ? TranspositionTable.UPPER
+				: best >= betaBefore ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+		table.store(key, depth, best, bound, bestMove);
+		return best;
+	}
+
+	private void cutoff(GameState state, int move, int depth, int ply) {
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		int[] scores = history[state.currentIndex()];
+		int destination = destination(move);
+		scores[destination] = Math.min(HISTORY_LIMIT, scores[destination] + depth * depth);
+	}
+
+	private static int destination(int move) {
+		return MoveGenerator.isDouble(move) ? MoveGenerator.secondDestination(move)
+				: MoveGenerator.firstDestination(move);
+	}
+
+	// sorts the first count moves by descending ordering key
+	private void order(GameState state, int[] moves, int count, int ply, int tableMove) {
+		if (keys[ply].length < count) keys[ply] = new int[count];
+		int[] orderKeys = keys[ply];
+		int player = state.currentIndex();
+		int[] scores = history[player];
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			int destination = destination(move);
+			int key;
+			if (move == tableMove) key = TABLE_MOVE;
+			else if (move == killers[ply][0]) key = FIRST_KILLER;
+			else if (move == killers[ply][1]) key = SECOND_KILLER;
+			else {
+				int distance = player == 0 ? nearestDetective(state, destination)
+						: DistanceOracle.UNREACHABLE - distances.distanceAt(
+								HeuristicPolicy.DETECTIVE_TRANSPORTS, destination,
+								state.locationIndex(0));
+				key = distance << DISTANCE_SHIFT | scores[destination];
+			}
+			orderKeys[i] = key;
+		}
+		// insertion sort, move lists are short
+		for (int i = 1; i < count; i++) {
+			int move = moves[i];
+			int key = orderKeys[i];
+			int j = i - 1;
+			for (; j >= 0 && orderKeys[j] < key; j--) {
+				moves[j + 1] = moves[j];
+				orderKeys[j + 1] = orderKeys[j];
+			}
+			moves[j + 1] = move;
+			orderKeys[j + 1] = key;
+		}
+	}
+
+	// scores all children of a node above the horizon with one call
+	private int frontier(GameState state, int ply) {
+		MoveGenerator generator = state.generate();
+		int count = generator.size();
+		if (count == 0) return search(state.advance(GameState.PASS), 0, ply + 1, -INFINITY, INFINITY);
+		if (moves[ply].length < count) moves[ply] = new int[Integer.highestOneBit(count) << 1];
+		int[] plyMoves = moves[ply];
+		for (int i = 0; i < count; i++)
+			plyMoves[i] = generator.get(i);
+		if (batch.length < count * Features.COUNT) {
+			batch = new float[count * Features.COUNT];
+			batchScores = new float[count];
+		}
+		boolean maximising = state.currentIndex() == 0;
+		int best = maximising ? -INFINITY : INFINITY;
+		int batched = 0;
+		for (int i = 0; i < count; i++) {
+			if (++nodes % CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) throw TIMEOUT;
+			GameState child = state.advance(plyMoves[i]);
+			if (child.isGameOver()) {
+				int score = terminal(child, 0);
+				best = maximising ? Math.max(best, score) : Math.min(best, score);
+			} else {
+				features.extract(child, batch, batched++ * Features.COUNT);
+			}
+		}
+		scorer.score(batch, batched, batchScores);
+		for (int i = 0; i < batched; i++) {
+			int score = scaled(batchScores[i]);
+			best = maximising ? Math.max(best, score) : Math.min(best, score);
+		}
+		return best;
+	}
+
+	private static int scaled(float score) {
+		return Math.max(-WIN / 2, Math.min(WIN / 2, Math.round(score)));
+	}
+
+	private int nearestDetective(GameState state, int node) {
+		int nearest = DistanceOracle.UNREACHABLE;
+		for (int player = 1; player < state.players().size(); player++) {
+			nearest = Math.min(nearest, distances.distanceAt(HeuristicPolicy.DETECTIVE_TRANSPORTS,
+					state.locationIndex(player), node));
+		}
+		return nearest;
+	}
+
+	private static int terminal(GameState state, int depth) {
+		return state.winners().contains(Colour.BLACK) ? WIN + depth : -WIN - depth;
+	}
+
+	/**
+	 * Static evaluation from Mr.X's point of view, by the scorer if there is
+	 * one, else mostly the distance to the nearest detective, then the
+	 * distances to all detectives and Mr.X's special tickets
+	 */
+	private int evaluate(GameState state) {
+		if (scorer != null) {
+			if (batch.length < Features.COUNT) {
+				batch = new float[Features.COUNT];
+				batchScores = new float[1];
+			}
+			features.extract(state, batch, 0);
+			scorer.score(batch, 1, batchScores);
+			return scaled(batchScores[0]);
+		}
+		int mrX = state.locationIndex(0);
+		int nearest = DistanceOracle.UNREACHABLE;
+		int total = 0;
+		for (int player = 1; player < state.players().size(); player++) {
+			int distance = distances.distanceAt(HeuristicPolicy.DETECTIVE_TRANSPORTS,
+					state.locationIndex(player), mrX);
+			nearest = Math.min(nearest, distance);
+			total += Math.min(distance, 10);
+		}
+		return 100 * Math.min(nearest, 10) + 10 * total
+				+ 20 * state.tickets(Colour.BLACK, Ticket.DOUBLE)
+				+ 5 * state.tickets(Colour.BLACK, Ticket.SECRET);
+	}
+
+}
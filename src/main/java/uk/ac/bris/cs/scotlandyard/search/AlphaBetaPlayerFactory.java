@@ -0,0 +1,179 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+
+/**
+ * Deterministic AI for both sides searching with {@link AlphaBeta}.
+ * <br>
+ * Mr.X plays the {@link uk.ac.bris.cs.scotlandyard.ai.OpeningBook} or a
+ * winning {@link uk.ac.bris.cs.scotlandyard.ai.Tablebase} move if there is
+ * one and otherwise searches the actual state. Detectives play a winning
+ * tablebase move when they know where Mr.X is, and otherwise search the
+ * {@value #DETERMINIZATIONS} most likely locations of Mr.X according to a
+ * {@link MrXBeliefTracker}, weighted by their likelihood. Each move is
+ * searched until the time budget (see {@link TimedPlayerFactory}) or the
+ * maximum depth, set with the system property {@code scotlandyard.ai.depth},
+ * is reached; with a generous budget and a fixed depth games are
+ * reproducible. The search always runs on the calling thread. Set the system
+ * property {@code scotlandyard.ai.scorer} to true to evaluate positions with
+ * the {@link Scorer#standard()} weights instead of the built in evaluation.
+ */
+@ManagedAI("AlphaBeta")
+public class AlphaBetaPlayerFactory extends TimedPlayerFactory {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AlphaBetaPlayerFactory.class);
+
+	/**
+	 * Maximum number of Mr.X locations detectives search
+	 */
+	public static final int DETERMINIZATIONS = 8;
+
+	private static final int TABLE_CAPACITY = 1 << 18;
+
+	private final int maxDepth;
+	private final AlphaBeta.Listener listener;
+	private final Scorer scorer = Boolean.getBoolean("scotlandyard.ai.scorer") ? Scorer.standard()
+			: null;
+	private final MrXBeliefTracker tracker = new MrXBeliefTracker(null, true);
+	private final TranspositionTable table = new TranspositionTable(TABLE_CAPACITY);
+	private AlphaBeta mrX;
+	private AlphaBeta detectives;
+
+	public AlphaBetaPlayerFactory() {
+		this(defaultBudgetMillis(), Integer.getInteger("scotlandyard.ai.depth", AlphaBeta.MAX_DEPTH),
+				null);
+	}
+
+	/**
+	 * @param budgetMillis the time budget of each move, including a small
+	 *        safety margin
+	 * @param maxDepth the maximum depth in plies; in
+	 *        {@code [1, AlphaBeta.MAX_DEPTH]}
+	 * @param listener told about every completed depth of every search; null
+	 *        for none
+	 */
+	public AlphaBetaPlayerFactory(long budgetMillis, int maxDepth, AlphaBeta.Listener listener) {
+		super(budgetMillis, 1);
+		if (maxDepth < 1 || maxDepth > AlphaBeta.MAX_DEPTH)
+			throw new IllegalArgumentException("Invalid depth " + maxDepth);
+		this.maxDepth = maxDepth;
+		this.listener = listener;
+	}
+
+	@Override
+	public List<Spectator> createSpectators(ScotlandYardView view) {
+		return Collections.singletonList(tracker);
+	}
+
+	@Override
+	public Player createPlayer(Colour colour) {
+		return colour.isMrX() ? this::searchMrX : this::searchDetective;
+	}
+
+	private void searchMrX(ScotlandYardView view, int location, Set<Move> moves,
+			Consumer<Move> callback) {
+		long deadline = deadline();
+		Move picked = null;
+		try {
+			GameState root = GameState.of(view, location);
+			picked = bookMove(root, moves);
+			if (picked == null) picked = tablebaseMove(root, moves);
+			if (picked == null) {
+				AlphaBeta.Result result;
+				synchronized (this) {
+					if (mrX == null)
+						mrX = new AlphaBeta(distancesFor(root.graph()), table, listener, scorer);
+					result = mrX.search(root, maxDepth, deadline);
+				}
+				LOG.debug("{} in round {}", result, view.getCurrentRound());
+				if (result.found()) picked = root.toMove(result.move());
+			}
+		} catch (RuntimeException e) {
+			LOG.warn("Search failed, picking a random move", e);
+		}
+		if (!moves.contains(picked)) picked = pick(moves, new SplittableRandom());
+		callback.accept(picked);
+	}
+
+	private void searchDetective(ScotlandYardView view, int location, Set<Move> moves,
+			Consumer<Move> callback) {
+		long deadline = deadline();
+		Move picked = null;
+		try {
+			List<GameState> roots = new ArrayList<>();
+			double[] weights = determinize(view, roots);
+			if (weights.length == 1 && knowsMrX(view))
+				picked = tablebaseMove(roots.get(0), moves);
+			if (picked == null && weights.length > 0) {
+				AlphaBeta.Result result;
+				synchronized (this) {
+					if (detectives == null)
+						detectives = new AlphaBeta(distancesFor(roots.get(0).graph()), table,
+								listener, scorer);
+					result = detectives.search(roots, weights, maxDepth, deadline);
+				}
+				LOG.debug("{} over {} locations in round {}", result, roots.size(),
+						view.getCurrentRound());
+				if (result.found()) picked = roots.get(0).toMove(result.move());
+			}
+		} catch (RuntimeException e) {
+			LOG.warn("Search failed, chasing instead", e);
+		}
+		if (moves.contains(picked)) callback.accept(picked);
+		else chase(view, location, moves, callback);
+	}
+
+	// the tablebase assumes Mr.X is seen for the rest of the game, which is
+	// only true for detectives if he is now and every round left reveals him
+	private boolean knowsMrX(ScotlandYardView view) {
+		if (tracker.count() != 1) return false;
+		List<Boolean> rounds = view.getRounds();
+		for (int round = view.getCurrentRound(); round < rounds.size(); round++) {
+			if (!rounds.get(round)) return false;
+		}
+		return true;
+	}
+
+	// adds the most likely states to roots, returning their normalised weights
+	private double[] determinize(ScotlandYardView view, List<GameState> roots) {
+		List<Integer> locations = new ArrayList<>(tracker.possibleLocations());
+		if (locations.isEmpty()) {
+			int lastSeen = view.getPlayerLocation(Colour.BLACK).orElse(0);
+			if (lastSeen == 0) return new double[0];
+			locations.add(lastSeen);
+		}
+		// stable, so ties keep ascending location order
+		locations.sort(Comparator.comparingDouble(tracker::weight).reversed());
+		locations = locations.subList(0, Math.min(DETERMINIZATIONS, locations.size()));
+		double[] weights = new double[locations.size()];
+		double total = 0;
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = tracker.weight(locations.get(i));
+			total += weights[i];
+		}
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = total > 0 ? weights[i] / total : 1.0 / weights.length;
+			roots.add(i == 0 ? GameState.of(view, locations.get(i))
+					: roots.get(0).withMrXAt(locations.get(i)));
+		}
+		return weights;
+	}
+
+}
@@ -0,0 +1,100 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.List;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Extracts the inputs of a {@link Scorer} from a {@link GameState}, all
+ * scaled to about {@code [0, 1]} and seen from Mr.X's side:
+ * <ol start="0">
+ * <li>distance to the nearest detective</li>
+ * <li>average distance to the detectives</li>
+ * <li>share of detectives at most two moves away</li>
+ * <li>number of neighbours of Mr.X's node</li>
+ * <li>Mr.X's double tickets</li>
+ * <li>Mr.X's secret tickets</li>
+ * <li>average taxi, bus and underground tickets left to detectives</li>
+ * <li>rounds until Mr.X is revealed next</li>
+ * <li>share of rounds remaining</li>
+ * </ol>
+ * Distances are shortest paths on the transports detectives use, capped at
+ * {@value #MAX_DISTANCE}. Instances are immutable and thread safe.
+ */
+public final class Features {
+
+	/**
+	 * Number of features of a state
+	 */
+	public static final int COUNT = 9;
+
+	private static final int MAX_DISTANCE = 10;
+	private static final int MAX_REVEAL = 5;
+	private static final Ticket[] DETECTIVE_TICKETS = { Ticket.TAXI, Ticket.BUS,
+			Ticket.UNDERGROUND };
+
+	private final DistanceOracle<Transport> distances;
+	private final CompiledGraph<Transport> graph;
+
+	/**
+	 * @param distances the distances of the graph the states are played on;
+	 *        not null
+	 */
+	public Features(DistanceOracle<Transport> distances) {
+		this.distances = requireNonNull(distances);
+		this.graph = distances.graph();
+	}
+
+	/**
+	 * Writes the features of a state
+	 *
+	 * @param state the state; not null
+	 * @param buffer the buffer to write to; not null
+	 * @param offset where to write the first of {@link #COUNT} features
+	 */
+	public void extract(GameState state, float[] buffer, int offset) {
+		int mrX = state.locationIndex(0);
+		int detectives = state.players().size() - 1;
+		int nearest = MAX_DISTANCE;
+		int total = 0;
+		int close = 0;
+		int tickets = 0;
+		for (int player = 1; player <= detectives; player++) {
+			int distance = Math.min(MAX_DISTANCE, distances.distanceAt(
+					HeuristicPolicy.DETECTIVE_TRANSPORTS, state.locationIndex(player), mrX));
+			nearest = Math.min(nearest, distance);
+			total += distance;
+			if (distance <= 2) close++;
+			Colour colour = state.players().get(player);
+			for (Ticket ticket : DETECTIVE_TICKETS)
+				tickets += state.tickets(colour, ticket);
+		}
+		buffer[offset] = (float) nearest / MAX_DISTANCE;
+		buffer[offset + 1] = (float) total / (MAX_DISTANCE * Math.max(1, detectives));
+		buffer[offset + 2] = (float) close / Math.max(1, detectives);
+		buffer[offset + 3] = (graph.endEdge(mrX) - graph.firstEdge(mrX)) / 10f;
+		buffer[offset + 4] = state.tickets(Colour.BLACK, Ticket.DOUBLE) / 2f;
+		buffer[offset + 5] = state.tickets(Colour.BLACK, Ticket.SECRET) / 5f;
+		buffer[offset + 6] = tickets / (20f * Math.max(1, detectives));
+		buffer[offset + 7] = (float) untilReveal(state) / MAX_REVEAL;
+		buffer[offset + 8] = (float) state.roundsRemaining() / Math.max(1, state.rounds().size());
+	}
+
+	// Mr.X's moves until his next reveal, capped
+	private static int untilReveal(GameState state) {
+		List<Boolean> rounds = state.rounds();
+		int from = state.currentRound();
+		for (int round = from; round < rounds.size() && round - from < MAX_REVEAL; round++) {
+			if (rounds.get(round)) return round - from;
+		}
+		return MAX_REVEAL;
+	}
+
+}
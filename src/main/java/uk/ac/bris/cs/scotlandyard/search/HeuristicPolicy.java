@@ -0,0 +1,117 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.SplittableRandom;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An epsilon-greedy {@link RolloutPolicy} based on shortest path distances:
+ * detectives close in on Mr.X's location in the state and Mr.X maximises the
+ * distance to the nearest detective, saving double moves and secret tickets
+ * for when a detective is next to him.
+ */
+public final class HeuristicPolicy implements RolloutPolicy {
+
+	/**
+	 * Transports detectives can use
+	 */
+	public static final int DETECTIVE_TRANSPORTS = CompiledGraph.maskOf(Transport.TAXI)
+			| CompiledGraph.maskOf(Transport.BUS) | CompiledGraph.maskOf(Transport.UNDERGROUND);
+
+	private final DistanceOracle<Transport> distances;
+	private final double epsilon;
+
+	/**
+	 * @param distances the distances of the graph the states are played on;
+	 *        not null
+	 * @param epsilon probability of picking a random move instead; in
+	 *        {@code [0, 1]}
+	 */
+	public HeuristicPolicy(DistanceOracle<Transport> distances, double epsilon) {
+		this.distances = requireNonNull(distances);
+		if (epsilon < 0 || epsilon > 1) throw new IllegalArgumentException("Invalid epsilon");
+		this.epsilon = epsilon;
+	}
+
+	@Override
+	public int choose(GameState state, SplittableRandom random) {
+		MoveGenerator moves = state.generate();
+		int count = moves.size();
+		if (count == 0) return GameState.PASS;
+		if (random.nextDouble() < epsilon) return moves.get(random.nextInt(count));
+		return state.currentIndex() == 0 ? evade(state, moves, random)
+				: chase(state, moves, state.locationIndex(0), random);
+	}
+
+	/**
+	 * Picks the move that gets the current detective closest to the target
+	 *
+	 * @param state the state; not null
+	 * @param moves the generated moves of the detective; not empty
+	 * @param target the node index to approach
+	 * @param random the source of randomness for ties; not null
+	 * @return the picked packed move
+	 */
+	public int chase(GameState state, MoveGenerator moves, int target, SplittableRandom random) {
+		int best = moves.get(0);
+		int bestDistance = Integer.MAX_VALUE;
+		int ties = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			int distance = distances.distanceAt(DETECTIVE_TRANSPORTS,
+					MoveGenerator.firstDestination(move), target);
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = move;
+				ties = 1;
+			} else if (distance == bestDistance && random.nextInt(++ties) == 0) {
+				best = move;
+			}
+		}
+		return best;
+	}
+
+	private int evade(GameState state, MoveGenerator moves, SplittableRandom random) {
+		boolean threatened = nearestDetective(state, state.locationIndex(0)) <= 1;
+		int best = moves.get(0);
+		int bestScore = Integer.MIN_VALUE;
+		int ties = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			boolean isDouble = MoveGenerator.isDouble(move);
+			int destination = isDouble ? MoveGenerator.secondDestination(move)
+					: MoveGenerator.firstDestination(move);
+			int score = Math.min(nearestDetective(state, destination), 8) * 4;
+			if (!threatened) {
+				if (isDouble) score -= 3;
+				if (MoveGenerator.firstTicket(move) == Ticket.SECRET) score -= 1;
+				if (isDouble && MoveGenerator.secondTicket(move) == Ticket.SECRET) score -= 1;
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				best = move;
+				ties = 1;
+			} else if (score == bestScore && random.nextInt(++ties) == 0) {
+				best = move;
+			}
+		}
+		return best;
+	}
+
+	private int nearestDetective(GameState state, int node) {
+		int nearest = DistanceOracle.UNREACHABLE;
+		for (int player = 1; player < state.players().size(); player++) {
+			nearest = Math.min(nearest, distances.distanceAt(DETECTIVE_TRANSPORTS,
+					state.locationIndex(player), node));
+		}
+		return nearest;
+	}
+
+}
@@ -0,0 +1,193 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.bris.cs.scotlandyard.ai.CoordinatedPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+
+/**
+ * Detective AI using information set MCTS: every iteration of the
+ * {@link Mcts} search starts from a determinization where Mr.X is at a
+ * location sampled from a {@link MrXBeliefTracker}, i.e. consistent with
+ * every move detectives have seen so far.
+ * <br>
+ * All detectives share the factory, and with it one search: within a round
+ * each detective continues from the subtree below the moves of the
+ * detectives before it. Searches run on all cores and stop at the per move
+ * deadline (see {@link TimedPlayerFactory}) with the most visited move. Mr.X
+ * is played by the {@link MctsPlayerFactory} search.
+ * <br>
+ * When the factory plays all detectives it plans each rotation with a
+ * single search instead, see {@link CoordinatedPlayerFactory}: the plan is
+ * the most visited line of detective moves, so the following detectives
+ * move without searching again.
+ */
+@ManagedAI("ISMCTS")
+public class IsmctsPlayerFactory extends MctsPlayerFactory implements CoordinatedPlayerFactory {
+
+	private static final Logger LOG = LoggerFactory.getLogger(IsmctsPlayerFactory.class);
+
+	private final MrXBeliefTracker tracker = new MrXBeliefTracker(null, true);
+	private Mcts mcts;
+	private int searchedRound = -1;
+
+	public IsmctsPlayerFactory() {}
+
+	/**
+	 * @param budgetMillis the time budget of each move, including a small
+	 *        safety margin
+	 * @param threads the number of search threads, at least 1
+	 */
+	public IsmctsPlayerFactory(long budgetMillis, int threads) {
+		super(budgetMillis, threads);
+	}
+
+	@Override
+	public List<Spectator> createSpectators(ScotlandYardView view) {
+		return Collections.singletonList(tracker);
+	}
+
+	@Override
+	public Player createPlayer(Colour colour) {
+		return colour.isMrX() ? this::searchMrX : this::searchDetective;
+	}
+
+	/**
+	 * @return the tracker of Mr.X's possible locations this factory
+	 *         determinizes with
+	 */
+	public MrXBeliefTracker tracker() {
+		return tracker;
+	}
+
+	private void searchDetective(ScotlandYardView view, int location, Set<Move> moves,
+			Consumer<Move> callback) {
+		long deadline = deadline();
+		SplittableRandom random = new SplittableRandom();
+		Move picked = null;
+		try {
+			picked = search(view, random, deadline);
+		} catch (RuntimeException e) {
+			LOG.warn("ISMCTS failed, chasing instead", e);
+		}
+		if (moves.contains(picked)) callback.accept(picked);
+		else chase(view, location, moves, callback);
+	}
+
+	private synchronized Move search(ScotlandYardView view, SplittableRandom random,
+			long deadline) {
+		Determinizer determinizer = Determinizer.of(view, tracker);
+		if (determinizer == null) return null;
+		GameState root = determinizer.states[0];
+		if (mcts == null || searchedRound != view.getCurrentRound()) {
+			mcts = newSearch(root);
+			searchedRound = view.getCurrentRound();
+		}
+		Mcts.Result result;
+		try {
+			result = mcts.search(determinizer::sample, random.nextLong(), deadline);
+		} catch (RuntimeException e) {
+			mcts = null;
+			throw e;
+		}
+		LOG.debug("{} iterations over {} locations in round {}", result.iterations(),
+				determinizer.states.length, view.getCurrentRound());
+		if (!result.found()) return null;
+		mcts.advance(result.move());
+		return root.toMove(result.move());
+	}
+
+	@Override
+	public synchronized Map<Colour, Move> planRotation(ScotlandYardView view, int location,
+			Set<Move> moves) {
+		long deadline = deadline();
+		Map<Colour, Move> plan = new LinkedHashMap<>();
+		try {
+			Determinizer determinizer = Determinizer.of(view, tracker);
+			if (determinizer == null) return plan;
+			GameState state = determinizer.states[0];
+			// the round's tree may be rooted below an earlier detective
+			Mcts planner = newSearch(state);
+			mcts = null;
+			Mcts.Result result = planner.search(determinizer::sample,
+					new SplittableRandom().nextLong(), deadline);
+			if (!result.found()) return plan;
+			List<Colour> players = view.getPlayers();
+			int remaining = players.size() - players.indexOf(view.getCurrentPlayer());
+			for (int move : planner.line(result.move(), remaining)) {
+				if (state.isGameOver() || state.currentPlayer().isMrX()) break;
+				plan.put(state.currentPlayer(), state.toMove(move));
+				state = state.advance(move);
+			}
+			LOG.debug("{} iterations planned {} moves in round {}", result.iterations(),
+					plan.size(), view.getCurrentRound());
+		} catch (RuntimeException e) {
+			LOG.warn("ISMCTS failed to plan, detectives search on their own", e);
+		}
+		return plan;
+	}
+
+	private Mcts newSearch(GameState root) {
+		return new Mcts(root.currentPlayer(),
+				new HeuristicPolicy(distancesFor(root.graph()), EPSILON),
+				EXPLORATION, executor(), searchThreads());
+	}
+
+	// Mr.X's possible locations at the time of the move with their weights
+	private static final class Determinizer {
+		final GameState[] states;
+		final double[] cumulative;
+
+		private Determinizer(GameState[] states, double[] cumulative) {
+			this.states = states;
+			this.cumulative = cumulative;
+		}
+
+		static Determinizer of(ScotlandYardView view, MrXBeliefTracker tracker) {
+			SortedSet<Integer> possible = tracker.possibleLocations();
+			if (possible.isEmpty()) {
+				// the tracker missed the game, fall back to what detectives know
+				int lastSeen = view.getPlayerLocation(Colour.BLACK).orElse(0);
+				if (lastSeen == 0) return null;
+				return new Determinizer(new GameState[] { GameState.of(view, lastSeen) },
+						new double[] { 1 });
+			}
+			GameState[] states = new GameState[possible.size()];
+			double[] cumulative = new double[possible.size()];
+			double total = 0;
+			int i = 0;
+			for (int location : possible) {
+				states[i] = i == 0 ? GameState.of(view, location) : states[0].withMrXAt(location);
+				total += tracker.weight(location);
+				cumulative[i++] = total;
+			}
+			return new Determinizer(states, cumulative);
+		}
+
+		GameState sample(SplittableRandom random) {
+			double total = cumulative[cumulative.length - 1];
+			if (!(total > 0)) return states[random.nextInt(states.length)];
+			int i = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+			i = i < 0 ? -i - 1 : i;
+			return states[Math.min(i, states.length - 1)];
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Scorer} taking a weighted sum of the features plus a bias
+ */
+public final class LinearScorer implements Scorer {
+
+	private final float[] weights;
+	private final float bias;
+
+	/**
+	 * @param weights one weight per feature followed by the bias; at least
+	 *        two
+	 */
+	public LinearScorer(float[] weights) {
+		if (weights.length < 2) throw new IllegalArgumentException("Need weights and a bias");
+		this.weights = Arrays.copyOf(weights, weights.length - 1);
+		this.bias = weights[weights.length - 1];
+	}
+
+	@Override
+	public int inputs() {
+		return weights.length;
+	}
+
+	@Override
+	public void score(float[] features, int count, float[] scores) {
+		int inputs = weights.length;
+		for (int row = 0, offset = 0; row < count; row++, offset += inputs) {
+			float sum = bias;
+			for (int i = 0; i < inputs; i++)
+				sum += weights[i] * features[offset + i];
+			scores[row] = sum;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LinearScorer{inputs=" + weights.length + "}";
+	}
+
+}
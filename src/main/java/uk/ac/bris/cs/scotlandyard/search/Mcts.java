@@ -0,0 +1,367 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Root parallel, open loop Monte Carlo tree search for one side of the game.
+ * <br>
+ * The tree only branches on moves of the searching side (Mr.X or the
+ * detectives), moves of the other side are picked by the
+ * {@link RolloutPolicy}. Since the states reached through a node then vary
+ * between iterations, children are selected among the moves legal in the
+ * current state with UCB1 using the number of times a child was available
+ * instead of the parent's visits. Every iteration starts from a state given
+ * by a determinizer, so hidden information can be sampled per iteration.
+ * <br>
+ * Each thread grows its own tree until the deadline and the root visit counts
+ * are summed, the most visited move is picked. Trees are kept between
+ * searches so they can be reused with {@link #advance(int)}; instances must
+ * not be searched concurrently.
+ */
+public final class Mcts {
+
+	private static final Logger LOG = LoggerFactory.getLogger(Mcts.class);
+	private static final int NO_MOVE = Integer.MIN_VALUE;
+
+	private final boolean mrX;
+	private final RolloutPolicy policy;
+	private final double exploration;
+	private final ExecutorService executor;
+	private final int threads;
+	private final Node[] roots;
+
+	/**
+	 * @param side the side to search for, any detective for the detectives;
+	 *        not null
+	 * @param policy the policy for playouts and the other side; not null
+	 * @param exploration the UCB1 exploration constant, rewards are in
+	 *        {@code [0, 1]}
+	 * @param executor runs the helper threads; may be null if threads is 1
+	 * @param threads the number of trees grown in parallel, including the
+	 *        calling thread
+	 */
+	public Mcts(Colour side, RolloutPolicy policy, double exploration, ExecutorService executor,
+			int threads) {
+		this.mrX = requireNonNull(side).isMrX();
+		this.policy = requireNonNull(policy);
+		this.exploration = exploration;
+		if (threads < 1 || (threads > 1 && executor == null))
+			throw new IllegalArgumentException("Invalid threads " + threads);
+		this.executor = executor;
+		this.threads = threads;
+		this.roots = new Node[threads];
+		reset();
+	}
+
+	/**
+	 * Discards all trees, the next search starts from scratch
+	 */
+	public void reset() {
+		for (int i = 0; i < roots.length; i++)
+			roots[i] = new Node(NO_MOVE);
+	}
+
+	/**
+	 * Keeps only the subtrees below a move of the searching side, so the next
+	 * search (e.g. for the next detective) continues from the statistics
+	 * gathered so far. Must not be called during a search.
+	 *
+	 * @param move the packed move made from the root of the last search
+	 */
+	public void advance(int move) {
+		for (int i = 0; i < roots.length; i++) {
+			Node child = roots[i].children.get(move);
+			roots[i] = child == null ? new Node(NO_MOVE) : child;
+		}
+	}
+
+	/**
+	 * Outcome of a search
+	 */
+	public static final class Result {
+		private final int move;
+		private final long iterations;
+		private final int visits;
+
+		Result(int move, long iterations, int visits) {
+			this.move = move;
+			this.iterations = iterations;
+			this.visits = visits;
+		}
+
+		/**
+		 * @return true if at least one iteration completed
+		 */
+		public boolean found() {
+			return move != NO_MOVE;
+		}
+
+		/**
+		 * @return the packed move picked, see {@link GameState#toMove(int)}
+		 */
+		public int move() {
+			if (!found()) throw new IllegalStateException("No move found");
+			return move;
+		}
+
+		/**
+		 * @return the number of iterations of all threads
+		 */
+		public long iterations() {
+			return iterations;
+		}
+
+		/**
+		 * @return the number of visits of the picked move
+		 */
+		public int visits() {
+			return visits;
+		}
+	}
+
+	/**
+	 * Searches until the deadline; the searching side must be to move in
+	 * every determinized state
+	 *
+	 * @param determinizer creates the root state of each iteration, called
+	 *        concurrently by every thread with that thread's random; not null
+	 * @param seed the seed of the random sources
+	 * @param deadline the {@link System#nanoTime()} to stop at
+	 * @return the result; never null
+	 */
+	public Result search(Function<SplittableRandom, GameState> determinizer, long seed,
+			long deadline) {
+		SplittableRandom random = new SplittableRandom(seed);
+		List<Future<Long>> helpers = new ArrayList<>();
+		for (int i = 1; i < threads; i++) {
+			Node root = roots[i];
+			SplittableRandom split = random.split();
+			helpers.add(executor.submit(() -> grow(root, determinizer, split, deadline)));
+		}
+		long iterations = grow(roots[0], determinizer, random, deadline);
+		boolean[] grown = new boolean[threads];
+		grown[0] = true;
+		for (int i = 1; i < threads; i++) {
+			Future<Long> helper = helpers.get(i - 1);
+			try {
+				long wait = Math.max(0, deadline - System.nanoTime());
+				iterations += helper.get(wait + TimeUnit.MILLISECONDS.toNanos(5),
+						TimeUnit.NANOSECONDS);
+				grown[i] = true;
+			} catch (InterruptedException e) {
+				// same as a timeout for every helper not collected yet, the
+				// next search must not share a tree with one still running
+				Thread.currentThread().interrupt();
+				for (int j = i; j < threads; j++) {
+					helpers.get(j - 1).cancel(true);
+					roots[j] = new Node(NO_MOVE);
+				}
+				break;
+			} catch (TimeoutException e) {
+				// helper never got a core before the deadline, it may still be
+				// touching its tree so that one is dropped
+				helper.cancel(true);
+				roots[i] = new Node(NO_MOVE);
+				LOG.debug("MCTS helper timed out, using the remaining trees");
+			} catch (ExecutionException e) {
+				roots[i] = new Node(NO_MOVE);
+				LOG.warn("MCTS helper failed, using the remaining trees", e.getCause());
+			}
+		}
+
+		// reused or pondered trees may hold moves that are not legal now
+		Set<Integer> legal = legalMoves(determinizer.apply(random));
+		Map<Integer, Integer> visits = new HashMap<>();
+		int merged = 0;
+		for (int i = 0; i < threads; i++) {
+			if (!grown[i]) continue;
+			merged++;
+			for (Node child : roots[i].children.values()) {
+				if (legal.contains(child.move)) visits.merge(child.move, child.visits, Integer::sum);
+			}
+		}
+		int best = NO_MOVE;
+		int bestVisits = 0;
+		for (Map.Entry<Integer, Integer> entry : visits.entrySet()) {
+			if (entry.getValue() > bestVisits) {
+				best = entry.getKey();
+				bestVisits = entry.getValue();
+			}
+		}
+		LOG.debug("MCTS {} iterations on {} threads, best move {} with {} visits", iterations,
+				merged, best, bestVisits);
+		return new Result(best, iterations, bestVisits);
+	}
+
+	/**
+	 * Grows only the first tree, on the calling thread, until the deadline or
+	 * until the thread is interrupted; e.g. to think ahead while the other
+	 * side moves. Unlike {@link #search} the determinized states may have
+	 * the other side to move, the first moves of the searching side then
+	 * become the children of the root.
+	 *
+	 * @param determinizer creates the root state of each iteration; not null
+	 * @param seed the seed of the random source
+	 * @param deadline the {@link System#nanoTime()} to stop at
+	 * @return the number of iterations
+	 */
+	public long ponder(Function<SplittableRandom, GameState> determinizer, long seed,
+			long deadline) {
+		return grow(roots[0], determinizer, new SplittableRandom(seed), deadline);
+	}
+
+	/**
+	 * The most visited line of the last search, over all trees: the picked
+	 * move followed by the searching side's most visited replies below it,
+	 * e.g. the moves of the following detectives in the same rotation. Must
+	 * not be called during a search.
+	 *
+	 * @param first the packed move picked by the last search
+	 * @param length the maximum number of moves
+	 * @return the packed moves, starting with {@code first}; at most
+	 *         {@code length} long
+	 */
+	public int[] line(int first, int length) {
+		int[] line = new int[length];
+		List<Node> nodes = new ArrayList<>(Arrays.asList(roots));
+		int size = 0;
+		for (int move = first; size < length && move != NO_MOVE; size++) {
+			line[size] = move;
+			List<Node> next = new ArrayList<>();
+			Map<Integer, Integer> visits = new HashMap<>();
+			for (Node node : nodes) {
+				Node child = node.children.get(move);
+				if (child == null) continue;
+				next.add(child);
+				for (Node grandchild : child.children.values())
+					visits.merge(grandchild.move, grandchild.visits, Integer::sum);
+			}
+			nodes = next;
+			move = NO_MOVE;
+			int bestVisits = 0;
+			for (Map.Entry<Integer, Integer> entry : visits.entrySet()) {
+				if (entry.getValue() > bestVisits) {
+					move = entry.getKey();
+					bestVisits = entry.getValue();
+				}
+			}
+		}
+		return Arrays.copyOf(line, size);
+	}
+
+	private static Set<Integer> legalMoves(GameState state) {
+		Set<Integer> legal = new HashSet<>();
+		MoveGenerator moves = state.generate();
+		for (int i = 0; i < moves.size(); i++)
+			legal.add(moves.get(i));
+		if (legal.isEmpty()) legal.add(GameState.PASS);
+		return legal;
+	}
+
+	private long grow(Node root, Function<SplittableRandom, GameState> determinizer,
+			SplittableRandom random, long deadline) {
+		List<Node> path = new ArrayList<>();
+		long iterations = 0;
+		while (deadline - System.nanoTime() > 0 && !Thread.currentThread().isInterrupted()) {
+			iterate(root, determinizer.apply(random), random, path);
+			iterations++;
+		}
+		return iterations;
+	}
+
+	private void iterate(Node root, GameState start, SplittableRandom random, List<Node> path) {
+		GameState state = start;
+		Node node = root;
+		path.clear();
+		path.add(root);
+		boolean expanded = false;
+		while (!state.isGameOver()) {
+			if (expanded || state.currentPlayer().isMrX() != mrX) {
+				state = state.advance(policy.choose(state, random));
+				continue;
+			}
+			MoveGenerator moves = state.generate();
+			if (moves.size() == 0) {
+				node = node.child(GameState.PASS);
+				node.available++;
+			} else {
+				node = select(node, moves, random);
+				expanded = node.visits == 0;
+			}
+			path.add(node);
+			state = state.advance(node.move);
+		}
+		double reward = state.winners().contains(Colour.BLACK) == mrX ? 1 : 0;
+		for (Node visited : path) {
+			visited.visits++;
+			visited.wins += reward;
+		}
+	}
+
+	// expands a random unexpanded legal move, or picks the best legal child
+	private Node select(Node node, MoveGenerator moves, SplittableRandom random) {
+		Node best = null;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		int unexpanded = 0;
+		int pick = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			Node child = node.children.get(move);
+			if (child == null) {
+				if (random.nextInt(++unexpanded) == 0) pick = move;
+				continue;
+			}
+			child.available++;
+			if (unexpanded > 0 || child.visits == 0) continue;
+			double score = child.wins / child.visits
+					+ exploration * Math.sqrt(Math.log(child.available) / child.visits);
+			if (score > bestScore) {
+				bestScore = score;
+				best = child;
+			}
+		}
+		if (unexpanded == 0 && best != null) return best;
+		Node child = node.child(unexpanded > 0 ? pick : moves.get(0));
+		if (unexpanded > 0) child.available++;
+		return child;
+	}
+
+	private static final class Node {
+		final int move;
+		final Map<Integer, Node> children = new HashMap<>();
+		int visits;
+		int available;
+		double wins;
+
+		Node(int move) {
+			this.move = move;
+		}
+
+		Node child(int move) {
+			return children.computeIfAbsent(move, Node::new);
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI;
+import uk.ac.bris.cs.scotlandyard.ai.ResourceProvider;
+import uk.ac.bris.cs.scotlandyard.ai.Visualiser;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+/**
+ * Mr.X AI searching with {@link Mcts} on all cores, using
+ * {@link HeuristicPolicy} playouts against the detectives.
+ * <br>
+ * Each move is searched for a fixed time budget, see
+ * {@link TimedPlayerFactory}. The callback is always invoked before the
+ * budget runs out, falling back to the playout policy if the search fails.
+ * Moves in the {@link uk.ac.bris.cs.scotlandyard.ai.OpeningBook} and winning
+ * moves of the {@link uk.ac.bris.cs.scotlandyard.ai.Tablebase} are played
+ * without searching.
+ * Detectives get a simple greedy player chasing Mr.X's last known location.
+ * <br>
+ * While the detectives move Mr.X ponders on a single background thread, for
+ * up to {@value #PONDER_BUDGETS} move budgets per round, growing the tree
+ * his next search continues from. Set the system property
+ * {@code scotlandyard.ai.ponder} to false to turn this off.
+ */
+@ManagedAI("MCTS")
+public class MctsPlayerFactory extends TimedPlayerFactory {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MctsPlayerFactory.class);
+	static final double EXPLORATION = 0.7;
+	static final double EPSILON = 0.1;
+
+	/**
+	 * Maximum time spent pondering per round, in move budgets
+	 */
+	public static final int PONDER_BUDGETS = 4;
+
+	private final boolean ponders = Boolean.parseBoolean(
+			System.getProperty("scotlandyard.ai.ponder", "true"));
+	// guards the tree shared by pondering and searching
+	private final Object treeLock = new Object();
+	private Mcts tree;
+	private int treeRound = -1;
+	private long treeDeadline;
+	private volatile boolean playsMrX;
+	private volatile int mrXLocation;
+	private volatile ExecutorService ponderer;
+	private volatile Future<?> pondering;
+
+	public MctsPlayerFactory() {}
+
+	/**
+	 * @param budgetMillis the time budget of each move, including a small
+	 *        safety margin
+	 * @param threads the number of search threads, at least 1
+	 */
+	public MctsPlayerFactory(long budgetMillis, int threads) {
+		super(budgetMillis, threads);
+	}
+
+	@Override
+	public void ready(Visualiser visualiser, ResourceProvider provider) {
+		super.ready(visualiser, provider);
+		if (ponders) {
+			ponderer = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, getClass().getSimpleName() + "-ponder");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+		}
+	}
+
+	@Override
+	public Player createPlayer(Colour colour) {
+		if (colour.isMrX()) playsMrX = true;
+		return colour.isMrX() ? this::searchMrX : this::chase;
+	}
+
+	@Override
+	public void ponder(ScotlandYardView view) {
+		ExecutorService executor = ponderer;
+		int location = mrXLocation;
+		if (executor == null || !playsMrX || location == 0 || view.getCurrentPlayer().isMrX())
+			return;
+		GameState state;
+		try {
+			state = GameState.of(view, location);
+		} catch (RuntimeException e) {
+			// e.g. notified halfway through a double move
+			LOG.debug("Not pondering on {}", view, e);
+			return;
+		}
+		stopPondering();
+		int round = view.getCurrentRound();
+		long seed = new SplittableRandom().nextLong();
+		pondering = executor.submit(() -> {
+			synchronized (treeLock) {
+				if (tree == null || treeRound != round) {
+					tree = newTree(state);
+					treeRound = round;
+					treeDeadline = System.nanoTime()
+							+ TimeUnit.MILLISECONDS.toNanos(PONDER_BUDGETS * budgetMillis());
+				}
+				long iterations = tree.ponder(r -> state, seed, treeDeadline);
+				LOG.debug("Pondered {} iterations in round {}", iterations, round);
+			}
+		});
+	}
+
+	private void stopPondering() {
+		Future<?> current = pondering;
+		if (current != null) current.cancel(true);
+	}
+
+	@Override
+	public void finish() {
+		stopPondering();
+		ExecutorService executor = ponderer;
+		if (executor != null) executor.shutdownNow();
+		super.finish();
+	}
+
+	private Mcts newTree(GameState state) {
+		RolloutPolicy policy = new HeuristicPolicy(distancesFor(state.graph()), EPSILON);
+		return new Mcts(Colour.BLACK, policy, EXPLORATION, executor(), searchThreads());
+	}
+
+	/**
+	 * Searches Mr.X's move with {@link Mcts}, Mr.X sees the whole game so no
+	 * determinization is needed
+	 */
+	void searchMrX(ScotlandYardView view, int location, Set<Move> moves,
+			Consumer<Move> callback) {
+		long deadline = deadline();
+		stopPondering();
+		SplittableRandom random = new SplittableRandom();
+		Move picked = null;
+		try {
+			GameState root = GameState.of(view, location);
+			picked = bookMove(root, moves);
+			if (picked == null) picked = tablebaseMove(root, moves);
+			if (picked == null) picked = search(view, root, moves, random, deadline);
+		} catch (RuntimeException e) {
+			LOG.warn("MCTS failed, picking a random move", e);
+		}
+		if (!moves.contains(picked)) picked = pick(moves, random);
+		mrXLocation = destination(picked, location);
+		callback.accept(picked);
+	}
+
+	private Move search(ScotlandYardView view, GameState root, Set<Move> moves,
+			SplittableRandom random, long deadline) {
+		Mcts.Result result;
+		synchronized (treeLock) {
+			// continue from the tree pondered for this move, if any
+			Mcts mcts = tree != null && treeRound == view.getCurrentRound() ? tree
+					: newTree(root);
+			tree = null;
+			result = mcts.search(r -> root, random.nextLong(), deadline);
+		}
+		LOG.debug("{} iterations in round {}", result.iterations(), view.getCurrentRound());
+		Move picked = result.found() ? root.toMove(result.move()) : null;
+		if (!moves.contains(picked)) {
+			RolloutPolicy policy = new HeuristicPolicy(distancesFor(root.graph()), EPSILON);
+			picked = root.toMove(policy.choose(root, random));
+		}
+		return picked;
+	}
+
+	private static int destination(Move move, int location) {
+		return move instanceof DoubleMove ? ((DoubleMove) move).finalDestination()
+				: move instanceof TicketMove ? ((TicketMove) move).destination() : location;
+	}
+
+}
@@ -0,0 +1,61 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Scorer} with one hidden layer of rectified linear units and a
+ * linear output
+ */
+public final class MlpScorer implements Scorer {
+
+	private final int inputs;
+	private final int hidden;
+	private final float[] hiddenWeights;
+	private final float[] hiddenBiases;
+	private final float[] outputWeights;
+	private final float outputBias;
+
+	/**
+	 * @param inputs the number of features; positive
+	 * @param hidden the number of hidden units; positive
+	 * @param weights the hidden layer's weights, {@code inputs} per unit,
+	 *        then its biases, the output weights and the output bias
+	 */
+	public MlpScorer(int inputs, int hidden, float[] weights) {
+		if (inputs < 1 || hidden < 1) throw new IllegalArgumentException("Invalid size");
+		if (weights.length != hidden * (inputs + 2) + 1)
+			throw new IllegalArgumentException("Invalid number of weights " + weights.length);
+		this.inputs = inputs;
+		this.hidden = hidden;
+		int at = hidden * inputs;
+		this.hiddenWeights = Arrays.copyOfRange(weights, 0, at);
+		this.hiddenBiases = Arrays.copyOfRange(weights, at, at + hidden);
+		this.outputWeights = Arrays.copyOfRange(weights, at + hidden, at + 2 * hidden);
+		this.outputBias = weights[weights.length - 1];
+	}
+
+	@Override
+	public int inputs() {
+		return inputs;
+	}
+
+	@Override
+	public void score(float[] features, int count, float[] scores) {
+		for (int row = 0, offset = 0; row < count; row++, offset += inputs) {
+			float output = outputBias;
+			for (int unit = 0, weight = 0; unit < hidden; unit++) {
+				float sum = hiddenBiases[unit];
+				for (int i = 0; i < inputs; i++)
+					sum += hiddenWeights[weight++] * features[offset + i];
+				if (sum > 0) output += outputWeights[unit] * sum;
+			}
+			scores[row] = output;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MlpScorer{inputs=" + inputs + ", hidden=" + hidden + "}";
+	}
+
+}
@@ -0,0 +1,229 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link Spectator} that keeps track of every location Mr.X could be at,
+ * given only what detectives see.
+ * <br>
+ * The possible locations are kept as a bitset over the node indices of the
+ * compiled graph. Each of Mr.X's {@link TicketMove}s (double moves are
+ * notified leg by leg) expands the set along the edges the ticket allows,
+ * every node occupied by a detective is removed, and a reveal collapses the
+ * set to the revealed location. Optionally a weight per node is propagated
+ * along, assuming Mr.X picks uniformly among the edges he can take.
+ * <br>
+ * Register the tracker with {@link uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame#registerSpectator}
+ * before the game starts, for example from
+ * {@link uk.ac.bris.cs.scotlandyard.ai.PlayerFactory#createSpectators}. The
+ * query methods may be called from any thread.
+ */
+public final class MrXBeliefTracker implements Spectator {
+
+	private static final int[] TICKET_MASKS = ticketMasks();
+
+	private final List<Integer> startLocations;
+	private final boolean weighted;
+	private CompiledGraph<Transport> graph;
+	private long[] possible;
+	private long[] scratch;
+	private double[] weights;
+	private double[] spread;
+
+	/**
+	 * Creates a tracker where Mr.X may start at any location
+	 */
+	public MrXBeliefTracker() {
+		this(null, false);
+	}
+
+	/**
+	 * @param startLocations the locations Mr.X may start at, e.g.
+	 *        {@link uk.ac.bris.cs.scotlandyard.model.StandardGame#MRX_LOCATIONS};
+	 *        null for any
+	 * @param weighted whether to propagate a weight per location
+	 */
+	public MrXBeliefTracker(Collection<Integer> startLocations, boolean weighted) {
+		this.startLocations = startLocations == null ? null : new ArrayList<>(startLocations);
+		this.weighted = weighted;
+	}
+
+	private static int[] ticketMasks() {
+		int[] masks = new int[Ticket.values().length];
+		for (Transport transport : Transport.values()) {
+			masks[Ticket.fromTransport(transport).ordinal()] |= CompiledGraph.maskOf(transport);
+			masks[Ticket.SECRET.ordinal()] |= CompiledGraph.maskOf(transport);
+		}
+		return masks;
+	}
+
+	private void initialise(ScotlandYardView view) {
+		if (graph != null) return;
+		graph = CompiledGraph.of(view.getGraph(), Transport.class);
+		int words = (graph.size() + Long.SIZE - 1) / Long.SIZE;
+		possible = new long[words];
+		scratch = new long[words];
+		if (startLocations == null) {
+			for (int i = 0; i < graph.size(); i++) set(possible, i);
+		} else {
+			for (int location : startLocations) {
+				int index = graph.indexOf(location);
+				if (index != -1) set(possible, index);
+			}
+		}
+		if (weighted) {
+			weights = new double[graph.size()];
+			spread = new double[graph.size()];
+		}
+		removeDetectives(view);
+		normalise();
+	}
+
+	private static void set(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+
+	private static boolean get(long[] bits, int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	@Override
+	public synchronized void onMoveMade(ScotlandYardView view, Move move) {
+		initialise(view);
+		if (!(move instanceof TicketMove)) return;
+		TicketMove ticketMove = (TicketMove) move;
+		if (move.colour().isMrX()) {
+			int round = view.getCurrentRound();
+			boolean revealed = round > 0 && round <= view.getRounds().size()
+					&& view.getRounds().get(round - 1);
+			if (revealed) reveal(ticketMove.destination());
+			else expand(TICKET_MASKS[ticketMove.ticket().ordinal()]);
+			removeDetectives(view);
+		} else {
+			// Mr.X was not caught, so he cannot be where the detective went
+			remove(ticketMove.destination());
+		}
+		normalise();
+	}
+
+	private void reveal(int location) {
+		Arrays.fill(possible, 0L);
+		int index = graph.indexOf(location);
+		if (index != -1) set(possible, index);
+	}
+
+	private void expand(int transports) {
+		Arrays.fill(scratch, 0L);
+		if (weighted) Arrays.fill(spread, 0);
+		for (int word = 0; word < possible.length; word++) {
+			for (long bits = possible[word]; bits != 0; bits &= bits - 1) {
+				int node = word << 6 | Long.numberOfTrailingZeros(bits);
+				int edges = 0;
+				for (int slot = graph.firstEdge(node); slot < graph.endEdge(node); slot++) {
+					if ((graph.mask(slot) & transports) != 0) edges++;
+				}
+				for (int slot = graph.firstEdge(node); slot < graph.endEdge(node); slot++) {
+					if ((graph.mask(slot) & transports) == 0) continue;
+					set(scratch, graph.target(slot));
+					if (weighted) spread[graph.target(slot)] += weights[node] / edges;
+				}
+			}
+		}
+		long[] swap = possible;
+		possible = scratch;
+		scratch = swap;
+		if (weighted) {
+			double[] swapWeights = weights;
+			weights = spread;
+			spread = swapWeights;
+		}
+	}
+
+	private void removeDetectives(ScotlandYardView view) {
+		for (Colour colour : view.getPlayers()) {
+			if (colour.isDetective()) view.getPlayerLocation(colour).ifPresent(this::remove);
+		}
+	}
+
+	private void remove(int location) {
+		int index = graph.indexOf(location);
+		if (index != -1) possible[index >>> 6] &= ~(1L << index);
+	}
+
+	// zeroes weights of impossible nodes and rescales the rest to sum to one
+	private void normalise() {
+		if (!weighted) return;
+		double total = 0;
+		for (int i = 0; i < weights.length; i++) {
+			if (!get(possible, i)) weights[i] = 0;
+			total += weights[i];
+		}
+		int count = count();
+		for (int i = 0; i < weights.length; i++) {
+			if (!get(possible, i)) continue;
+			// locations reached only through zero weight, e.g. at the start
+			weights[i] = total > 0 ? weights[i] / total : 1.0 / count;
+		}
+	}
+
+	/**
+	 * @return the number of possible locations; 0 before the first move
+	 */
+	public synchronized int count() {
+		if (possible == null) return 0;
+		int count = 0;
+		for (long word : possible) count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * @param location the location
+	 * @return true if Mr.X could be at the location
+	 */
+	public synchronized boolean isPossible(int location) {
+		if (graph == null) return false;
+		int index = graph.indexOf(location);
+		return index != -1 && get(possible, index);
+	}
+
+	/**
+	 * @return all locations Mr.X could be at, in ascending order
+	 */
+	public synchronized SortedSet<Integer> possibleLocations() {
+		if (graph == null) return ImmutableSortedSet.of();
+		ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+		for (int word = 0; word < possible.length; word++) {
+			for (long bits = possible[word]; bits != 0; bits &= bits - 1)
+				builder.add(graph.valueOf(word << 6 | Long.numberOfTrailingZeros(bits)));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @param location the location
+	 * @return the probability of Mr.X being at the location; uniform over the
+	 *         possible locations if the tracker is not weighted
+	 */
+	public synchronized double weight(int location) {
+		if (!isPossible(location)) return 0;
+		return weighted ? weights[graph.indexOf(location)] : 1.0 / count();
+	}
+
+}
@@ -0,0 +1,201 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.ai.OpeningBook;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generates an {@link OpeningBook} offline by searching every standard start
+ * far longer than a game would allow.
+ * <br>
+ * Starts are every combination of a location in
+ * {@link StandardGame#MRX_LOCATIONS} for Mr.X and distinct locations in
+ * {@link StandardGame#DETECTIVE_LOCATIONS} for the detectives, with the
+ * standard tickets; the order of detectives does not matter to the book. For
+ * every start Mr.X's move is searched with {@link Mcts}, then the detectives
+ * reply greedily, as in the search's playouts, and Mr.X's next move is
+ * searched, until the given number of rounds or his first reveal.
+ * <br>
+ * Run with
+ * {@code OpeningBookGenerator <output> [detectives] [rounds] [millis] [threads]},
+ * defaulting to 5 detectives, 2 rounds, 1000 milliseconds per position and
+ * all available processors. Copy the output to the {@link OpeningBook#RESOURCE}
+ * or point the {@code scotlandyard.ai.book} property at it.
+ */
+public final class OpeningBookGenerator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(OpeningBookGenerator.class);
+
+	private final Graph<Integer, Transport> graph;
+	private final DistanceOracle<Transport> distances;
+	private final int rounds;
+	private final long budgetMillis;
+
+	/**
+	 * @param graph the graph of the games; not null
+	 * @param rounds the number of rounds to search Mr.X's moves for; positive
+	 * @param budgetMillis the search time of each position; positive
+	 */
+	public OpeningBookGenerator(Graph<Integer, Transport> graph, int rounds, long budgetMillis) {
+		if (rounds < 1) throw new IllegalArgumentException("Invalid rounds " + rounds);
+		if (budgetMillis < 1) throw new IllegalArgumentException("Invalid budget " + budgetMillis);
+		this.graph = requireNonNull(graph);
+		this.distances = DistanceOracle.of(CompiledGraph.of(graph, Transport.class));
+		this.rounds = rounds;
+		this.budgetMillis = budgetMillis;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.err.println("Usage: OpeningBookGenerator <output> [detectives] [rounds] "
+					+ "[millis] [threads]");
+			System.exit(2);
+		}
+		int detectives = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		long millis = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+		int threads = args.length > 4 ? Integer.parseInt(args[4])
+				: Runtime.getRuntime().availableProcessors();
+		OpeningBookGenerator generator = new OpeningBookGenerator(StandardGame.standardGraph(),
+				rounds, millis);
+		OpeningBook book = generator.generate(generator.starts(detectives), threads);
+		book.write(Paths.get(args[0]));
+		LOG.info("Wrote {} to {}", book, args[0]);
+	}
+
+	/**
+	 * @param detectives the number of detectives; at least 1 and at most
+	 *        the number of detective colours
+	 * @return one start for every set of detective locations and every
+	 *         location of Mr.X; never null
+	 */
+	public List<GameState> starts(int detectives) {
+		List<Colour> colours = new ArrayList<>();
+		for (Colour colour : Colour.values()) {
+			if (colour.isDetective() && colours.size() < detectives) colours.add(colour);
+		}
+		if (detectives < 1 || colours.size() != detectives)
+			throw new IllegalArgumentException("Invalid detectives " + detectives);
+		List<List<Integer>> placements = new ArrayList<>();
+		combinations(StandardGame.DETECTIVE_LOCATIONS, detectives, 0, new ArrayList<>(),
+				placements);
+		List<GameState> starts = new ArrayList<>();
+		Map<Ticket, Integer> mrXTickets = StandardGame.generateMrXTickets();
+		Map<Ticket, Integer> detectiveTickets = StandardGame.generateDetectiveTickets();
+		for (int mrX : StandardGame.MRX_LOCATIONS) {
+			for (List<Integer> placement : placements) {
+				if (placement.contains(mrX)) continue;
+				PlayerConfiguration[] configurations = new PlayerConfiguration[detectives];
+				for (int i = 0; i < detectives; i++) {
+					configurations[i] = new PlayerConfiguration.Builder(colours.get(i))
+							.using(GameState.NO_PLAYER).with(detectiveTickets).at(placement.get(i)).build();
+				}
+				starts.add(GameState.of(StandardGame.ROUNDS, graph,
+						new PlayerConfiguration.Builder(Colour.BLACK).using(GameState.NO_PLAYER)
+								.with(mrXTickets).at(mrX).build(),
+						configurations[0], Arrays.copyOfRange(configurations, 1, detectives)));
+			}
+		}
+		return starts;
+	}
+
+	private static void combinations(List<Integer> locations, int size, int from,
+			List<Integer> picked, List<List<Integer>> combinations) {
+		if (picked.size() == size) {
+			combinations.add(Collections.unmodifiableList(new ArrayList<>(picked)));
+			return;
+		}
+		for (int i = from; i <= locations.size() - (size - picked.size()); i++) {
+			picked.add(locations.get(i));
+			combinations(locations, size, i + 1, picked, combinations);
+			picked.remove(picked.size() - 1);
+		}
+	}
+
+	/**
+	 * Searches all starts, each on a single thread
+	 *
+	 * @param starts the starts, with Mr.X to move; not null
+	 * @param threads the number of starts searched at the same time; positive
+	 * @return the book; never null
+	 * @throws InterruptedException if interrupted while waiting for searches
+	 */
+	public OpeningBook generate(List<GameState> starts, int threads)
+			throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		OpeningBook.Builder builder = new OpeningBook.Builder();
+		AtomicInteger done = new AtomicInteger();
+		try {
+			List<Future<?>> searches = new ArrayList<>();
+			for (int i = 0; i < starts.size(); i++) {
+				GameState start = starts.get(i);
+				long seed = i;
+				searches.add(executor.submit(() -> {
+					List<GameState> line = new ArrayList<>();
+					List<Integer> moves = new ArrayList<>();
+					search(start, new SplittableRandom(seed), line, moves);
+					synchronized (builder) {
+						for (int j = 0; j < line.size(); j++)
+							builder.put(line.get(j), moves.get(j));
+					}
+					int count = done.incrementAndGet();
+					if (count % 100 == 0) LOG.info("Searched {} of {} starts", count, starts.size());
+				}));
+			}
+			for (Future<?> search : searches)
+				search.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Search failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return builder.build();
+	}
+
+	private void search(GameState start, SplittableRandom random, List<GameState> line,
+			List<Integer> moves) {
+		HeuristicPolicy policy = new HeuristicPolicy(distances, MctsPlayerFactory.EPSILON);
+		HeuristicPolicy detectives = new HeuristicPolicy(distances, 0);
+		GameState state = start;
+		while (OpeningBook.isOpening(state) && state.currentRound() < rounds) {
+			Mcts mcts = new Mcts(Colour.BLACK, policy, MctsPlayerFactory.EXPLORATION, null, 1);
+			GameState root = state;
+			Mcts.Result result = mcts.search(r -> root, random.nextLong(),
+					System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+			if (!result.found()) return;
+			line.add(state);
+			moves.add(result.move());
+			state = state.advance(result.move());
+			while (!state.isGameOver() && state.currentIndex() != 0)
+				state = state.advance(detectives.choose(state, random));
+		}
+	}
+
+}
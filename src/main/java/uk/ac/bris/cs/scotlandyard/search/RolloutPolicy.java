@@ -0,0 +1,31 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.SplittableRandom;
+
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+
+/**
+ * Picks moves during playouts and for players a search does not branch on
+ */
+@FunctionalInterface
+public interface RolloutPolicy {
+
+	/**
+	 * Picks a move for the current player, may call {@link GameState#generate()}
+	 *
+	 * @param state the state; not over
+	 * @param random the source of randomness of the calling thread; not null
+	 * @return a packed move generated for the state or {@link GameState#PASS}
+	 */
+	int choose(GameState state, SplittableRandom random);
+
+	/**
+	 * A policy picking uniformly at random
+	 */
+	RolloutPolicy RANDOM = (state, random) -> {
+		MoveGenerator moves = state.generate();
+		return moves.size() == 0 ? GameState.PASS : moves.get(random.nextInt(moves.size()));
+	};
+
+}
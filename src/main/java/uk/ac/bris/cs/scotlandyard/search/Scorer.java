@@ -0,0 +1,119 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scores positions from their {@link Features}, higher is better for Mr.X.
+ * Scores are in the units of {@link AlphaBeta}'s static evaluation, well
+ * below {@link AlphaBeta#WIN}.
+ * <br>
+ * Positions are scored in batches: the features of {@code count} positions
+ * are laid out one after the other in a single buffer, so a search scores all
+ * children of a node with one call. Implementations run on the CPU only and
+ * are immutable and thread safe.
+ * <br>
+ * Weights are plain text, see {@link #read(Reader)}; the standard ones are
+ * the {@link #RESOURCE} on the classpath.
+ */
+public interface Scorer {
+
+	/**
+	 * Classpath resource of the standard weights
+	 */
+	String RESOURCE = "/evaluation.weights";
+
+	/**
+	 * @return the number of features of a position
+	 */
+	int inputs();
+
+	/**
+	 * Scores a batch of positions
+	 *
+	 * @param features the features of the positions, {@link #inputs()} per
+	 *        position; not null
+	 * @param count the number of positions
+	 * @param scores receives the score of each position; not null
+	 */
+	void score(float[] features, int count, float[] scores);
+
+	/**
+	 * Loads the weights at the path of the system property
+	 * {@code scotlandyard.ai.weights}, or else the {@link #RESOURCE}
+	 *
+	 * @return the scorer; never null
+	 * @throws UncheckedIOException if the weights cannot be read
+	 */
+	static Scorer standard() {
+		try {
+			String path = System.getProperty("scotlandyard.ai.weights");
+			if (path != null) {
+				try (Reader reader = Files.newBufferedReader(Paths.get(path),
+						StandardCharsets.UTF_8)) {
+					return read(reader);
+				}
+			}
+			InputStream resource = Scorer.class.getResourceAsStream(RESOURCE);
+			if (resource == null) throw new IOException("Missing resource " + RESOURCE);
+			try (Reader reader = new InputStreamReader(resource, StandardCharsets.UTF_8)) {
+				return read(reader);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads weights, whitespace separated numbers after a header line;
+	 * {@code #} starts a comment. Either {@code linear <inputs>}, followed by
+	 * one weight per input and the bias, or {@code mlp <inputs> <hidden>},
+	 * followed by the hidden layer's weights (one row of inputs per hidden
+	 * unit), its biases, the output weights and the output bias.
+	 *
+	 * @param reader the weights, not closed; not null
+	 * @return the scorer; never null
+	 * @throws IOException if the weights cannot be read or are malformed
+	 */
+	static Scorer read(Reader reader) throws IOException {
+		List<String> tokens = new ArrayList<>();
+		BufferedReader lines = new BufferedReader(reader);
+		for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+			int comment = line.indexOf('#');
+			if (comment >= 0) line = line.substring(0, comment);
+			for (String token : line.trim().split("\\s+")) {
+				if (!token.isEmpty()) tokens.add(token);
+			}
+		}
+		if (tokens.isEmpty()) throw new IOException("No weights");
+		try {
+			int at = 0;
+			String kind = tokens.get(at++);
+			boolean linear = kind.equals("linear");
+			if (!linear && !kind.equals("mlp")) throw new IOException("Unknown scorer " + kind);
+			int inputs = Integer.parseInt(tokens.get(at++));
+			int hidden = linear ? 1 : Integer.parseInt(tokens.get(at++));
+			if (inputs < 1 || hidden < 1) throw new IOException("Invalid scorer size");
+			int expected = linear ? inputs + 1 : hidden * (inputs + 2) + 1;
+			if (tokens.size() - at != expected)
+				throw new IOException("Expected " + expected + " weights, got " + (tokens.size() - at));
+			float[] weights = new float[expected];
+			for (int i = 0; i < expected; i++)
+				weights[i] = Float.parseFloat(tokens.get(at++));
+			return linear ? new LinearScorer(weights)
+					: new MlpScorer(inputs, hidden, weights);
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			throw new IOException("Malformed weights", e);
+		}
+	}
+
+}
@@ -0,0 +1,212 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
+import uk.ac.bris.cs.scotlandyard.ai.MoveDeadline;
+import uk.ac.bris.cs.scotlandyard.ai.OpeningBook;
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.ai.ResourceProvider;
+import uk.ac.bris.cs.scotlandyard.ai.Tablebase;
+import uk.ac.bris.cs.scotlandyard.ai.Visualiser;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+/**
+ * Base of the searching {@link PlayerFactory}s: a per move time budget, a
+ * pool of helper threads, the distances of the graph being played, the
+ * {@link OpeningBook} and the {@link Tablebase}.
+ * <br>
+ * The budget is set with the system property {@code scotlandyard.ai.millis}
+ * (defaults to 1000) and capped by the {@link MoveDeadline} of the move, the
+ * number of threads with {@code scotlandyard.ai.threads} (defaults to the
+ * available processors).
+ */
+abstract class TimedPlayerFactory implements PlayerFactory {
+
+	private static final long SAFETY_MARGIN_MILLIS = 50;
+
+	private final long budgetMillis;
+	private final int threads;
+	private final AtomicInteger threadIds = new AtomicInteger();
+	private volatile DistanceOracle<Transport> distances;
+	private volatile OpeningBook book = OpeningBook.EMPTY;
+	private volatile Tablebase tablebase = Tablebase.NONE;
+	private ExecutorService executor;
+
+	TimedPlayerFactory() {
+		this(defaultBudgetMillis(), defaultThreads());
+	}
+
+	TimedPlayerFactory(long budgetMillis, int threads) {
+		if (budgetMillis <= 0) throw new IllegalArgumentException("Invalid budget " + budgetMillis);
+		if (threads < 1) throw new IllegalArgumentException("Invalid threads " + threads);
+		this.budgetMillis = budgetMillis;
+		this.threads = threads;
+	}
+
+	/**
+	 * @return the time budget of each move from the system properties
+	 */
+	static long defaultBudgetMillis() {
+		return Long.getLong("scotlandyard.ai.millis", 1000);
+	}
+
+	/**
+	 * @return the number of search threads from the system properties
+	 */
+	static int defaultThreads() {
+		return Integer.getInteger("scotlandyard.ai.threads",
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	@Override
+	public void ready(Visualiser visualiser, ResourceProvider provider) {
+		distances = provider.getDistances();
+		book = provider.getOpeningBook();
+		tablebase = provider.getTablebase();
+		if (threads > 1) {
+			String prefix = getClass().getSimpleName() + "-";
+			executor = Executors.newFixedThreadPool(threads - 1, runnable -> {
+				Thread thread = new Thread(runnable, prefix + threadIds.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	@Override
+	public void finish() {
+		if (executor != null) executor.shutdownNow();
+	}
+
+	/**
+	 * @return the {@link System#nanoTime()} a search started now must end at,
+	 *         never later than the {@link MoveDeadline} of the move
+	 */
+	long deadline() {
+		long budget = TimeUnit.MILLISECONDS.toNanos(budgetMillis - SAFETY_MARGIN_MILLIS);
+		long margin = TimeUnit.MILLISECONDS.toNanos(SAFETY_MARGIN_MILLIS);
+		Optional<MoveDeadline> enforced = MoveDeadline.current();
+		if (enforced.isPresent())
+			budget = Math.min(budget, enforced.get().remaining(TimeUnit.NANOSECONDS) - margin);
+		return System.nanoTime() + Math.max(TimeUnit.MILLISECONDS.toNanos(1), budget);
+	}
+
+	/**
+	 * @return the time budget of each move
+	 */
+	long budgetMillis() {
+		return budgetMillis;
+	}
+
+	/**
+	 * @return the helper threads, null if searching on the calling thread only
+	 */
+	ExecutorService executor() {
+		return executor;
+	}
+
+	/**
+	 * @return the number of threads a search may use, including the caller
+	 */
+	int searchThreads() {
+		return executor == null ? 1 : threads;
+	}
+
+	/**
+	 * @param graph the graph of the game being played; not null
+	 * @return the distances of the graph, the provided ones if they match
+	 */
+	DistanceOracle<Transport> distancesFor(CompiledGraph<Transport> graph) {
+		DistanceOracle<Transport> current = distances;
+		if (current == null || !sameNodes(current.graph(), graph)) {
+			current = DistanceOracle.of(graph);
+			distances = current;
+		}
+		return current;
+	}
+
+	private static boolean sameNodes(CompiledGraph<Transport> a, CompiledGraph<Transport> b) {
+		if (a == b) return true;
+		if (a.size() != b.size() || a.edgeSlots() != b.edgeSlots()) return false;
+		for (int i = 0; i < a.size(); i++) {
+			if (a.valueOf(i) != b.valueOf(i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param state the state Mr.X is to move in; not null
+	 * @param moves the valid moves; not null
+	 * @return the move of the opening book, null if the state is not in the
+	 *         book
+	 */
+	Move bookMove(GameState state, Set<Move> moves) {
+		Move move = book.lookup(state).orElse(null);
+		return moves.contains(move) ? move : null;
+	}
+
+	/**
+	 * @param state the state to move in, exact only if Mr.X's location is
+	 *        known; not null
+	 * @param moves the valid moves; not null
+	 * @return a move keeping the current player's side winning according to
+	 *         the tablebase, null if the state is not in it or the side loses
+	 *         against perfect play
+	 */
+	Move tablebaseMove(GameState state, Set<Move> moves) {
+		OptionalInt move = tablebase.bestMove(state);
+		if (!move.isPresent()) return null;
+		Move picked = state.toMove(move.getAsInt());
+		return moves.contains(picked) ? picked : null;
+	}
+
+	/**
+	 * Moves a detective greedily towards Mr.X's last known location, or
+	 * randomly if he has not been seen yet
+	 */
+	void chase(ScotlandYardView view, int location, Set<Move> moves, Consumer<Move> callback) {
+		SplittableRandom random = new SplittableRandom();
+		Move picked = null;
+		int lastSeen = view.getPlayerLocation(Colour.BLACK).orElse(0);
+		if (lastSeen != 0) {
+			GameState state = GameState.of(view, lastSeen);
+			MoveGenerator generated = state.generate();
+			if (generated.size() > 0) {
+				HeuristicPolicy policy = new HeuristicPolicy(distancesFor(state.graph()), 0);
+				picked = state.toMove(policy.chase(state, generated,
+						state.locationIndex(0), random));
+			}
+		}
+		if (!moves.contains(picked)) picked = pick(moves, random);
+		callback.accept(picked);
+	}
+
+	/**
+	 * @param moves the moves; not empty
+	 * @param random the source of randomness; not null
+	 * @return a move picked uniformly at random
+	 */
+	static Move pick(Set<Move> moves, SplittableRandom random) {
+		int skip = random.nextInt(moves.size());
+		for (Move move : moves) {
+			if (skip-- == 0) return move;
+		}
+		throw new IllegalArgumentException("No moves");
+	}
+
+}
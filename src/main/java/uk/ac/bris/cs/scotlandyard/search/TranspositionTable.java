@@ -0,0 +1,132 @@
+package uk.ac.bris.cs.scotlandyard.search;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size table of search results keyed by Zobrist hash, see
+ * {@link uk.ac.bris.cs.scotlandyard.model.GameState#zobristHash()}.
+ * <br>
+ * The table is lock-free and may be shared by any number of search threads.
+ * Each entry is stored as two data words plus a check word holding the key
+ * XORed with both data words; an entry torn by concurrent writers fails the
+ * check and is treated as a miss. An entry is only replaced by a result of
+ * the same key or one searched to at least the same depth.
+ */
+public final class TranspositionTable {
+
+	/**
+	 * The score is exact
+	 */
+	public static final int EXACT = 0;
+
+	/**
+	 * The score is a lower bound, i.e. the search failed high
+	 */
+	public static final int LOWER = 1;
+
+	/**
+	 * The score is an upper bound, i.e. the search failed low
+	 */
+	public static final int UPPER = 2;
+
+	private static final int WORDS = 3;
+	private static final int DEPTH_SHIFT = 32;
+	private static final int BOUND_SHIFT = 40;
+	private static final long OCCUPIED = 1L << 42;
+
+	private final AtomicLongArray entries;
+	private final int mask;
+
+	/**
+	 * @param capacity the number of entries, rounded up to a power of two;
+	 *        positive
+	 */
+	public TranspositionTable(int capacity) {
+		if (capacity < 1 || capacity > 1 << 28)
+			throw new IllegalArgumentException("Invalid capacity " + capacity);
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) size <<= 1;
+		this.entries = new AtomicLongArray(size * WORDS);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Stores a search result, unless the slot holds a different position
+	 * searched deeper
+	 *
+	 * @param key the Zobrist hash
+	 * @param depth the remaining depth searched; in {@code [0, 255]}
+	 * @param score the score
+	 * @param bound one of {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+	 * @param move the best packed move found, see
+	 *        {@link uk.ac.bris.cs.scotlandyard.model.MoveGenerator}
+	 */
+	public void store(long key, int depth, int score, int bound, int move) {
+		if (depth < 0 || depth > 0xFF) throw new IllegalArgumentException("Invalid depth " + depth);
+		int slot = slot(key);
+		long data = entries.get(slot + 1);
+		if ((data & OCCUPIED) != 0 && depthOf(data) > depth
+				&& (entries.get(slot) ^ data ^ entries.get(slot + 2)) != key) return;
+		long packed = (score & 0xFFFFFFFFL) | (long) depth << DEPTH_SHIFT
+				| (long) bound << BOUND_SHIFT | OCCUPIED;
+		long extra = move & 0xFFFFFFFFL;
+		entries.lazySet(slot + 1, packed);
+		entries.lazySet(slot + 2, extra);
+		entries.set(slot, key ^ packed ^ extra);
+	}
+
+	/**
+	 * Looks up a position
+	 *
+	 * @param key the Zobrist hash
+	 * @param hit receives the stored result if found; not null
+	 * @return true if the position was found
+	 */
+	public boolean probe(long key, Hit hit) {
+		int slot = slot(key);
+		long check = entries.get(slot);
+		long data = entries.get(slot + 1);
+		long extra = entries.get(slot + 2);
+		if ((data & OCCUPIED) == 0 || (check ^ data ^ extra) != key) return false;
+		hit.score = (int) data;
+		hit.depth = depthOf(data);
+		hit.bound = (int) (data >>> BOUND_SHIFT) & 0x3;
+		hit.move = (int) extra;
+		return true;
+	}
+
+	/**
+	 * Removes all entries, must not be called while other threads use the
+	 * table
+	 */
+	public void clear() {
+		for (int i = 0; i < entries.length(); i++)
+			entries.lazySet(i, 0);
+	}
+
+	private int slot(long key) {
+		return ((int) (key ^ key >>> 32) & mask) * WORDS;
+	}
+
+	private static int depthOf(long data) {
+		return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	/**
+	 * Mutable holder of a probed entry, reused to avoid allocation
+	 */
+	public static final class Hit {
+		public int score;
+		public int depth;
+		public int bound;
+		public int move;
+	}
+
+}
@@ -0,0 +1,6 @@
+/**
+ * Building blocks for AIs: searching ahead on
+ * {@link uk.ac.bris.cs.scotlandyard.model.GameState}s and tracking what is
+ * known about Mr.X
+ */
+package uk.ac.bris.cs.scotlandyard.search;
@@ -0,0 +1,132 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameLog;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Outcome of a single simulated game
+ */
+public final class GameResult {
+
+	private final int seed;
+	private final ImmutableSet<Colour> winners;
+	private final int rounds;
+	private final int moves;
+	private final ImmutableMap<Colour, ImmutableMap<Ticket, Integer>> ticketsUsed;
+	private final long elapsedNanos;
+	// encoded, so keeping the results of many games stays cheap
+	private final byte[] log;
+	private final Throwable error;
+
+	GameResult(int seed, Set<Colour> winners, int rounds, int moves,
+			Map<Colour, ImmutableMap<Ticket, Integer>> ticketsUsed, long elapsedNanos,
+			byte[] log, Throwable error) {
+		this.seed = seed;
+		this.winners = ImmutableSet.copyOf(requireNonNull(winners));
+		this.rounds = rounds;
+		this.moves = moves;
+		this.ticketsUsed = ImmutableMap.copyOf(requireNonNull(ticketsUsed));
+		this.elapsedNanos = elapsedNanos;
+		this.log = log;
+		this.error = error;
+	}
+
+	/**
+	 * @return the seed the game was set up with
+	 */
+	public int seed() {
+		return seed;
+	}
+
+	/**
+	 * @return the winning colours; empty if the game failed before it was over
+	 */
+	public Set<Colour> winners() {
+		return winners;
+	}
+
+	/**
+	 * @return true if Mr.X won the game
+	 */
+	public boolean mrXWon() {
+		return winners.contains(Colour.BLACK);
+	}
+
+	/**
+	 * @return the round the game ended in, or had reached when it failed, see
+	 *         {@link uk.ac.bris.cs.scotlandyard.model.ScotlandYardView#getCurrentRound()}
+	 */
+	public int rounds() {
+		return rounds;
+	}
+
+	/**
+	 * @return the number of moves picked by all players, including pass moves
+	 */
+	public int moves() {
+		return moves;
+	}
+
+	/**
+	 * @return tickets used per player, a {@link Ticket#DOUBLE} move counts
+	 *         the double ticket and both of its tickets
+	 */
+	public Map<Colour, ImmutableMap<Ticket, Integer>> ticketsUsed() {
+		return ticketsUsed;
+	}
+
+	/**
+	 * @return wall time spent playing the game
+	 */
+	public long elapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return the log of the game as far as it was played, if the simulation
+	 *         records games
+	 * @throws UncheckedIOException if the log is malformed
+	 */
+	public Optional<GameLog> log() {
+		if (log == null) return Optional.empty();
+		try {
+			return Optional.of(GameLog.read(log));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the exception that aborted the game, if any
+	 */
+	public Optional<Throwable> error() {
+		return Optional.ofNullable(error);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("GameResult{");
+		sb.append("seed=").append(seed);
+		sb.append(", winners=").append(winners);
+		sb.append(", rounds=").append(rounds);
+		sb.append(", moves=").append(moves);
+		sb.append(", ticketsUsed=").append(ticketsUsed);
+		sb.append(", elapsedNanos=").append(elapsedNanos);
+		if (error != null) sb.append(", error=").append(error);
+		sb.append('}');
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,84 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import javafx.geometry.Point2D;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Pane;
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.ai.OpeningBook;
+import uk.ac.bris.cs.scotlandyard.ai.ResourceProvider;
+import uk.ac.bris.cs.scotlandyard.ai.Tablebase;
+import uk.ac.bris.cs.scotlandyard.ai.Visualiser;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link ResourceProvider} for games without a UI, only the graph, its
+ * distances, the standard {@link OpeningBook} and {@link Tablebase} are
+ * available. None of the JavaFX types referenced by the interface are loaded
+ * unless one of the image or coordinate methods is called.
+ */
+final class HeadlessResourceProvider implements ResourceProvider {
+
+	/**
+	 * A visualiser that has no surface
+	 */
+	static final Visualiser NO_VISUALISER = new NoVisualiser();
+
+	private final Graph<Integer, Transport> graph;
+	private final DistanceOracle<Transport> distances;
+	private final OpeningBook book = OpeningBook.standard();
+	private final Tablebase tablebase = Tablebase.standard();
+
+	HeadlessResourceProvider(Graph<Integer, Transport> graph) {
+		this.graph = new ImmutableGraph<>(requireNonNull(graph));
+		this.distances = DistanceOracle.of(CompiledGraph.of(graph, Transport.class));
+	}
+
+	@Override
+	public Image getMap() {
+		throw new UnsupportedOperationException("No map image in a headless game");
+	}
+
+	@Override
+	public Image getTicket(Ticket ticket) {
+		throw new UnsupportedOperationException("No ticket images in a headless game");
+	}
+
+	@Override
+	public Graph<Integer, Transport> getGraph() {
+		return graph;
+	}
+
+	@Override
+	public DistanceOracle<Transport> getDistances() {
+		return distances;
+	}
+
+	@Override
+	public OpeningBook getOpeningBook() {
+		return book;
+	}
+
+	@Override
+	public Tablebase getTablebase() {
+		return tablebase;
+	}
+
+	@Override
+	public Point2D coordinateAtNode(int node) {
+		throw new UnsupportedOperationException("No map coordinates in a headless game");
+	}
+
+	private static final class NoVisualiser implements Visualiser {
+		@Override
+		public Pane surface() {
+			throw new UnsupportedOperationException("No visualiser surface in a headless game");
+		}
+	}
+
+}
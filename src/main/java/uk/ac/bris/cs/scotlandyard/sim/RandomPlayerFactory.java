@@ -0,0 +1,53 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link PlayerFactory} whose players pick uniformly at random from the
+ * valid moves, useful as a baseline opponent and for playouts
+ */
+public final class RandomPlayerFactory implements PlayerFactory {
+
+	private final Random random;
+
+	public RandomPlayerFactory() {
+		this(new Random());
+	}
+
+	/**
+	 * @param random the source of randomness shared by all created players;
+	 *        not null
+	 */
+	public RandomPlayerFactory(Random random) {
+		this.random = requireNonNull(random);
+	}
+
+	@Override
+	public Player createPlayer(Colour colour) {
+		return (view, location, moves, callback) -> callback.accept(pick(random, moves));
+	}
+
+	/**
+	 * Picks a move uniformly at random
+	 *
+	 * @param random the source of randomness; not null
+	 * @param moves the moves; not empty
+	 * @return the picked move
+	 */
+	public static Move pick(Random random, Set<Move> moves) {
+		int skip = random.nextInt(moves.size());
+		Iterator<Move> iterator = moves.iterator();
+		while (skip-- > 0) iterator.next();
+		return iterator.next();
+	}
+
+}
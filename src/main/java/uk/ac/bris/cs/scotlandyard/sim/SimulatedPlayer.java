@@ -0,0 +1,94 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveVisitor;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A player that is handed to the model before the actual player is created by
+ * its {@link uk.ac.bris.cs.scotlandyard.ai.PlayerFactory}. The picked move is
+ * always passed back to the model on the game thread, so a rotation is
+ * complete once {@link uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame#startRotate()}
+ * returns, even if the actual player calls back from another thread.
+ */
+final class SimulatedPlayer implements Player, MoveVisitor {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private final Colour colour;
+	private final long timeoutMillis;
+	private final int[] ticketsUsed = new int[TICKETS.length];
+	private Player delegate;
+	private int moves;
+
+	SimulatedPlayer(Colour colour, long timeoutMillis) {
+		this.colour = requireNonNull(colour);
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	void attach(Player player) {
+		this.delegate = requireNonNull(player);
+	}
+
+	@Override
+	public void makeMove(ScotlandYardView view, int location, Set<Move> moves,
+			Consumer<Move> callback) {
+		if (delegate == null)
+			throw new IllegalStateException("No player attached for " + colour);
+		CompletableFuture<Move> picked = new CompletableFuture<>();
+		delegate.makeMove(view, location, moves, picked::complete);
+		Move move;
+		try {
+			move = picked.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(colour + " was interrupted while picking a move", e);
+		} catch (ExecutionException | TimeoutException e) {
+			throw new IllegalStateException(
+					colour + " did not pick a move within " + timeoutMillis + "ms", e);
+		}
+		this.moves++;
+		requireNonNull(move, colour + " picked a null move").visit(this);
+		callback.accept(move);
+	}
+
+	@Override
+	public void visit(TicketMove move) {
+		ticketsUsed[move.ticket().ordinal()]++;
+	}
+
+	@Override
+	public void visit(DoubleMove move) {
+		ticketsUsed[Ticket.DOUBLE.ordinal()]++;
+		visit(move.firstMove());
+		visit(move.secondMove());
+	}
+
+	int moves() {
+		return moves;
+	}
+
+	ImmutableMap<Ticket, Integer> ticketsUsed() {
+		ImmutableMap.Builder<Ticket, Integer> builder = ImmutableMap.builder();
+		for (Ticket ticket : TICKETS)
+			builder.put(ticket, ticketsUsed[ticket.ordinal()]);
+		return builder.build();
+	}
+
+}
@@ -0,0 +1,330 @@
+package uk.ac.bris.cs.scotlandyard.sim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableMap;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.ai.PonderingSpectator;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameLog;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGameFactory;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Plays complete games without any UI, one game per seed and many games in
+ * parallel.
+ * <br>
+ * Every game is set up like a standard game: starting locations are derived
+ * from the seed with {@link StandardGame#generateMrXLocation(int)} and
+ * {@link StandardGame#generateDetectiveLocations(int, int)}, tickets are the
+ * standard allocation. Each game gets its own {@link PlayerFactory} instances
+ * from the configured suppliers, so factories need not be thread safe; the
+ * detective factory is shared by all detectives of the same game.
+ * <br>
+ * Use {@link Builder} to create instances.
+ */
+public final class Simulation {
+
+	private static final Colour MRX = Colour.BLACK;
+
+	private final ScotlandYardGameFactory gameFactory;
+	private final Supplier<? extends PlayerFactory> mrX;
+	private final Supplier<? extends PlayerFactory> detectives;
+	private final List<Colour> detectiveColours;
+	private final List<Boolean> rounds;
+	private final ImmutableGraph<Integer, Transport> graph;
+	private final HeadlessResourceProvider resources;
+	private final int parallelism;
+	private final long moveTimeoutMillis;
+	private final boolean record;
+
+	private Simulation(Builder builder, ImmutableGraph<Integer, Transport> graph) {
+		this.gameFactory = builder.gameFactory;
+		this.mrX = requireNonNull(builder.mrX, "no Mr.X player factory");
+		this.detectives = requireNonNull(builder.detectives, "no detective player factory");
+		List<Colour> colours = new ArrayList<>();
+		for (Colour colour : Colour.values()) {
+			if (colour != MRX && colours.size() < builder.detectiveCount) colours.add(colour);
+		}
+		this.detectiveColours = Collections.unmodifiableList(colours);
+		this.rounds = builder.rounds;
+		this.graph = graph;
+		this.resources = new HeadlessResourceProvider(graph);
+		this.parallelism = builder.parallelism;
+		this.moveTimeoutMillis = builder.moveTimeoutMillis;
+		this.record = builder.record;
+	}
+
+	/**
+	 * Plays one game per seed, results are passed to the sink as soon as each
+	 * game finishes. The sink is called from the worker threads and must be
+	 * thread safe.
+	 *
+	 * @param seeds the seeds; not null
+	 * @param sink the consumer of results; not null
+	 */
+	public void run(List<Integer> seeds, Consumer<? super GameResult> sink) {
+		requireNonNull(sink);
+		runAll(seeds, sink);
+	}
+
+	/**
+	 * Plays one game per seed and waits for all of them to finish
+	 *
+	 * @param seeds the seeds; not null
+	 * @return the results, in the same order as the seeds
+	 */
+	public List<GameResult> runAll(List<Integer> seeds) {
+		return runAll(seeds, result -> {});
+	}
+
+	private List<GameResult> runAll(List<Integer> seeds, Consumer<? super GameResult> sink) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<GameResult>> tasks = new ArrayList<>(seeds.size());
+			for (int seed : seeds) {
+				tasks.add(pool.submit(() -> {
+					GameResult result = play(seed);
+					sink.accept(result);
+					return result;
+				}));
+			}
+			List<GameResult> results = new ArrayList<>(tasks.size());
+			for (ForkJoinTask<GameResult> task : tasks)
+				results.add(task.join());
+			return results;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Plays a single game on the calling thread. Failures of the model or the
+	 * players do not propagate but are recorded in {@link GameResult#error()}.
+	 *
+	 * @param seed the seed used to set up the game
+	 * @return the result; never null
+	 */
+	public GameResult play(int seed) {
+		long start = System.nanoTime();
+		Map<Colour, SimulatedPlayer> players = new EnumMap<>(Colour.class);
+		PlayerFactory mrXFactory = null;
+		PlayerFactory detectiveFactory = null;
+		ScotlandYardGame game = null;
+		ByteArrayOutputStream log = record ? new ByteArrayOutputStream(256) : null;
+		try {
+			PlayerConfiguration mrXConfiguration = configure(players, MRX,
+					StandardGame.generateMrXLocation(seed), StandardGame.generateMrXTickets());
+			List<Integer> locations = StandardGame.generateDetectiveLocations(seed,
+					detectiveColours.size());
+			PlayerConfiguration[] configurations = new PlayerConfiguration[detectiveColours.size()];
+			for (int i = 0; i < configurations.length; i++) {
+				configurations[i] = configure(players, detectiveColours.get(i), locations.get(i),
+						StandardGame.generateDetectiveTickets());
+			}
+			GameLog.Recorder recorder = null;
+			if (record) {
+				recorder = GameLog.record(log, rounds, mrXConfiguration, Arrays.asList(configurations));
+				mrXConfiguration = recorder.mrX();
+			}
+			game = gameFactory.createGame(rounds, graph, mrXConfiguration, configurations[0],
+					Arrays.copyOfRange(configurations, 1, configurations.length));
+			if (recorder != null) game.registerSpectator(recorder);
+
+			mrXFactory = mrX.get();
+			detectiveFactory = detectives.get();
+			attach(game, mrXFactory, players, Collections.singletonList(MRX));
+			attach(game, detectiveFactory, players, detectiveColours);
+
+			int rotations = 0;
+			while (!game.isGameOver()) {
+				if (rotations++ > rounds.size()) throw new IllegalStateException(
+						"Game did not finish after " + rounds.size() + " rounds");
+				game.startRotate();
+			}
+			return result(seed, game, players, start, log, null);
+		} catch (RuntimeException e) {
+			return result(seed, game, players, start, log, e);
+		} finally {
+			if (mrXFactory != null) mrXFactory.finish();
+			if (detectiveFactory != null) detectiveFactory.finish();
+		}
+	}
+
+	private PlayerConfiguration configure(Map<Colour, SimulatedPlayer> players, Colour colour,
+			int location, Map<Ticket, Integer> tickets) {
+		SimulatedPlayer player = new SimulatedPlayer(colour, moveTimeoutMillis);
+		players.put(colour, player);
+		return new PlayerConfiguration.Builder(colour).using(player).with(tickets).at(location)
+				.build();
+	}
+
+	private void attach(ScotlandYardGame game, PlayerFactory factory,
+			Map<Colour, SimulatedPlayer> players, List<Colour> colours) {
+		factory.createSpectators(game).forEach(game::registerSpectator);
+		game.registerSpectator(new PonderingSpectator(factory));
+		factory.ready(HeadlessResourceProvider.NO_VISUALISER, resources);
+		for (Colour colour : colours)
+			players.get(colour).attach(factory.createPlayer(colour));
+	}
+
+	private static GameResult result(int seed, ScotlandYardGame game,
+			Map<Colour, SimulatedPlayer> players, long start, ByteArrayOutputStream log,
+			Throwable error) {
+		int moves = 0;
+		Map<Colour, ImmutableMap<Ticket, Integer>> ticketsUsed = new EnumMap<>(Colour.class);
+		for (Map.Entry<Colour, SimulatedPlayer> entry : players.entrySet()) {
+			moves += entry.getValue().moves();
+			ticketsUsed.put(entry.getKey(), entry.getValue().ticketsUsed());
+		}
+		return new GameResult(seed,
+				game == null ? Collections.emptySet() : game.getWinningPlayers(),
+				game == null ? 0 : game.getCurrentRound(), moves, ticketsUsed,
+				System.nanoTime() - start, log == null ? null : log.toByteArray(), error);
+	}
+
+	/**
+	 * Builder for {@link Simulation}
+	 */
+	public static class Builder {
+
+		private final ScotlandYardGameFactory gameFactory;
+		private Supplier<? extends PlayerFactory> mrX;
+		private Supplier<? extends PlayerFactory> detectives;
+		private int detectiveCount = 5;
+		private List<Boolean> rounds = StandardGame.ROUNDS;
+		private Graph<Integer, Transport> graph;
+		private int parallelism = Runtime.getRuntime().availableProcessors();
+		private long moveTimeoutMillis = 60_000;
+		private boolean record;
+
+		/**
+		 * @param gameFactory the factory used to create every game; not null
+		 */
+		public Builder(ScotlandYardGameFactory gameFactory) {
+			this.gameFactory = requireNonNull(gameFactory);
+		}
+
+		/**
+		 * @param factory supplier of a new factory for Mr.X for every game;
+		 *        not null
+		 * @return this builder
+		 */
+		public Builder mrX(Supplier<? extends PlayerFactory> factory) {
+			this.mrX = requireNonNull(factory);
+			return this;
+		}
+
+		/**
+		 * @param factory supplier of a new factory for the detectives for
+		 *        every game; not null
+		 * @return this builder
+		 */
+		public Builder detectives(Supplier<? extends PlayerFactory> factory) {
+			this.detectives = requireNonNull(factory);
+			return this;
+		}
+
+		/**
+		 * @param count number of detectives; defaults to 5
+		 * @return this builder
+		 */
+		public Builder detectiveCount(int count) {
+			if (count < 1 || count >= Colour.values().length)
+				throw new IllegalArgumentException("Invalid detective count " + count);
+			this.detectiveCount = count;
+			return this;
+		}
+
+		/**
+		 * @param rounds the rounds of every game; not null, defaults to
+		 *        {@link StandardGame#ROUNDS}
+		 * @return this builder
+		 */
+		public Builder rounds(List<Boolean> rounds) {
+			this.rounds = requireNonNull(rounds);
+			return this;
+		}
+
+		/**
+		 * @param graph the graph of every game; not null, defaults to
+		 *        {@link StandardGame#standardGraph()}
+		 * @return this builder
+		 */
+		public Builder graph(Graph<Integer, Transport> graph) {
+			this.graph = requireNonNull(graph);
+			return this;
+		}
+
+		/**
+		 * @param parallelism maximum number of games played at the same time;
+		 *        defaults to the number of available processors
+		 * @return this builder
+		 */
+		public Builder parallelism(int parallelism) {
+			if (parallelism < 1)
+				throw new IllegalArgumentException("Invalid parallelism " + parallelism);
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/**
+		 * @param millis time a player may take for a single move before the
+		 *        game fails; defaults to one minute
+		 * @return this builder
+		 */
+		public Builder moveTimeout(long millis) {
+			if (millis < 1) throw new IllegalArgumentException("Invalid timeout " + millis);
+			this.moveTimeoutMillis = millis;
+			return this;
+		}
+
+		/**
+		 * @param record whether to keep a {@link GameLog} of every game, see
+		 *        {@link GameResult#log()}; defaults to false
+		 * @return this builder
+		 */
+		public Builder record(boolean record) {
+			this.record = record;
+			return this;
+		}
+
+		/**
+		 * @return a new simulation
+		 * @throws UncheckedIOException if no graph was given and the standard
+		 *         graph cannot be read
+		 */
+		public Simulation build() {
+			try {
+				return new Simulation(this, graph == null
+						? StandardGame.standardGraph()
+						: new ImmutableGraph<>(graph));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Headless simulation of complete Scotland Yard games, does not require
+ * JavaFX at runtime
+ */
+package uk.ac.bris.cs.scotlandyard.sim;
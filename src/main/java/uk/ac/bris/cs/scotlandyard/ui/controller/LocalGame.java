@@ -103,15 +103,18 @@ public final class LocalGame extends BaseGame implements Spectator {
 		private final ModelProperty setup;
 		private final ScotlandYardGame model;
 		private final List<GameControl> controls;
-		private final AIPool<Side> pool = new AIPool<>(
-				createVisualiserSurface(),
-				Utils::handleFatalException);
+		private final AIPool<Side> pool;
 		private final CodeGenRecorder recorder = new CodeGenRecorder(ImmutableList.of(
 				new TestHarnessPlayOutTestCodeGen(),
 				new GameModelSequencePUMLCodeGen()));
 
 		Game(ModelProperty setup) throws Exception {
 			this.setup = setup;
+			this.pool = new AIPool<>(
+					createVisualiserSurface(),
+					Utils::handleFatalException,
+					setup.timeoutProperty().get(),
+					AIPool.RANDOM_MOVE);
 
 			List<PlayerProperty> joining = setup.players();
 
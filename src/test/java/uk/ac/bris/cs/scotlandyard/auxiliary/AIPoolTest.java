@@ -0,0 +1,314 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableSet;
+
+import javafx.scene.layout.Pane;
+import uk.ac.bris.cs.scotlandyard.ResourceManager;
+import uk.ac.bris.cs.scotlandyard.ai.AI;
+import uk.ac.bris.cs.scotlandyard.ai.AIPool;
+import uk.ac.bris.cs.scotlandyard.ai.CoordinatedPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.ai.ManagedAI.VisualiserType;
+import uk.ac.bris.cs.scotlandyard.ai.MoveDeadline;
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.doNothingPlayer;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.GREEN;
+
+/**
+ * Tests for the deadline handling of {@link AIPool}
+ */
+public class AIPoolTest {
+
+	private static final Set<Move> MOVES = ImmutableSet.of(
+			new TicketMove(BLACK, Ticket.TAXI, 8),
+			new TicketMove(BLACK, Ticket.TAXI, 9));
+
+	private static volatile CountDownLatch started;
+	private static volatile CountDownLatch interrupted;
+	private static final AtomicLong remainingMillis = new AtomicLong();
+	private static final AtomicInteger mrXLocation = new AtomicInteger();
+	private static final AtomicInteger ownMoves = new AtomicInteger();
+
+	private final AIPool.VisualiserSurface surface = new AIPool.VisualiserSurface() {
+		@Override
+		public Pane onCreate(AI ai) {
+			return null;
+		}
+
+		@Override
+		public void onDestroy() {}
+	};
+
+	private AIPool<String> pool;
+	private ScotlandYardModel model;
+
+	public static class SleepingFactory implements PlayerFactory {
+		@Override
+		public Player createPlayer(Colour colour) {
+			return (view, location, moves, callback) -> {
+				try {
+					started.countDown();
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+					callback.accept(moves.iterator().next());
+				} catch (InterruptedException e) {
+					interrupted.countDown();
+				}
+			};
+		}
+	}
+
+	public static class QuickFactory implements PlayerFactory {
+		@Override
+		public Player createPlayer(Colour colour) {
+			return (view, location, moves, callback) -> {
+				remainingMillis.set(MoveDeadline.current()
+						.map(deadline -> deadline.remaining(TimeUnit.MILLISECONDS)).orElse(-1L));
+				callback.accept(moves.iterator().next());
+			};
+		}
+	}
+
+	public static class FirstMoveFactory implements PlayerFactory {
+		@Override
+		public Player createPlayer(Colour colour) {
+			return (view, location, moves, callback) -> {
+				Move move = moves.iterator().next();
+				if (move instanceof TicketMove) mrXLocation.set(((TicketMove) move).destination());
+				if (move instanceof DoubleMove)
+					mrXLocation.set(((DoubleMove) move).finalDestination());
+				callback.accept(move);
+			};
+		}
+	}
+
+	// plans the first generated move of every detective left in the rotation
+	public static class PlanningFactory implements CoordinatedPlayerFactory {
+		@Override
+		public Player createPlayer(Colour colour) {
+			return (view, location, moves, callback) -> {
+				ownMoves.incrementAndGet();
+				callback.accept(moves.iterator().next());
+			};
+		}
+
+		@Override
+		public Map<Colour, Move> planRotation(ScotlandYardView view, int location,
+				Set<Move> moves) {
+			Map<Colour, Move> plan = new LinkedHashMap<>();
+			GameState state = GameState.of(view, mrXLocation.get());
+			while (!state.isGameOver() && state.currentPlayer().isDetective()) {
+				int move = state.generate().size() == 0 ? GameState.PASS : state.generate().get(0);
+				plan.put(state.currentPlayer(), state.toMove(move));
+				state = state.advance(move);
+			}
+			return plan;
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		started = new CountDownLatch(1);
+		interrupted = new CountDownLatch(1);
+		remainingMillis.set(0);
+		mrXLocation.set(0);
+		ownMoves.set(0);
+		model = new ScotlandYardModel(StandardGame.ROUNDS, StandardGame.standardGraph(),
+				doNothingPlayer(BLACK, 1), doNothingPlayer(BLUE, 18));
+	}
+
+	@After
+	public void tearDown() {
+		if (pool != null) pool.terminate();
+	}
+
+	private Player create(Class<? extends PlayerFactory> factory, Duration timeout) {
+		return create(factory, timeout, AIPool.Execution.fairShare());
+	}
+
+	private Player create(Class<? extends PlayerFactory> factory, Duration timeout,
+			AIPool.Execution execution) {
+		pool = new AIPool<>(surface, Throwable::printStackTrace, timeout, moves -> {
+			assertThat(moves).isEqualTo(MOVES);
+			return new TicketMove(BLACK, Ticket.TAXI, 9);
+		}, execution);
+		pool.addToGroup("mrX", BLACK, AI.fromName("test", VisualiserType.NONE, factory));
+		pool.initialise(new ResourceManager(), model);
+		return pool.createPlayer(BLACK).orElseThrow(AssertionError::new);
+	}
+
+	@Test
+	public void testCoordinatedDetectivesPlanOncePerRotation() throws Exception {
+		pool = new AIPool<>(surface, Throwable::printStackTrace);
+		pool.addToGroup("mrX", BLACK, AI.fromName("mrX", VisualiserType.NONE,
+				FirstMoveFactory.class));
+		AI detectives = AI.fromName("detectives", VisualiserType.NONE, PlanningFactory.class);
+		pool.addToGroup("detectives", BLUE, detectives);
+		pool.addToGroup("detectives", GREEN, detectives);
+		Map<Colour, Player> players = new EnumMap<>(Colour.class);
+		Player delegate = (view, location, moves, callback) -> players
+				.get(view.getCurrentPlayer()).makeMove(view, location, moves, callback);
+		ScotlandYardModel game = new ScotlandYardModel(StandardGame.ROUNDS,
+				StandardGame.standardGraph(),
+				new PlayerConfiguration.Builder(BLACK).using(delegate)
+						.with(StandardGame.generateMrXTickets()).at(45).build(),
+				new PlayerConfiguration.Builder(BLUE).using(delegate)
+						.with(StandardGame.generateDetectiveTickets()).at(155).build(),
+				new PlayerConfiguration.Builder(GREEN).using(delegate)
+						.with(StandardGame.generateDetectiveTickets()).at(174).build());
+		AtomicInteger rotations = new AtomicInteger();
+		game.registerSpectator(new Spectator() {
+			@Override
+			public void onRotationComplete(ScotlandYardView view) {
+				rotations.incrementAndGet();
+			}
+		});
+		pool.initialise(new ResourceManager(), game);
+		for (Colour colour : game.getPlayers())
+			players.put(colour, pool.createPlayer(colour).orElseThrow(AssertionError::new));
+		for (int rotation = 1; rotation <= 2; rotation++) {
+			game.startRotate();
+			for (int i = 0; i < 500 && rotations.get() < rotation; i++) Thread.sleep(10);
+			assertThat(rotations.get()).isEqualTo(rotation);
+		}
+		AIPool.GroupMetrics metrics = pool.groupMetrics().get("detectives");
+		assertThat(metrics.plans()).isEqualTo(2);
+		assertThat(metrics.plannedMoves()).isEqualTo(4);
+		assertThat(ownMoves.get()).isZero();
+		assertThat(pool.groupMetrics().get("mrX").plans()).isZero();
+	}
+
+	@Test
+	public void testQuickAIMovesWithinDeadline() throws Exception {
+		Player player = create(QuickFactory.class, Duration.ofSeconds(10));
+		CompletableFuture<Move> made = new CompletableFuture<>();
+		player.makeMove(model, 1, MOVES, made::complete);
+		assertThat(made.get(5, TimeUnit.SECONDS)).isEqualTo(new TicketMove(BLACK, Ticket.TAXI, 8));
+		assertThat(remainingMillis.get()).isBetween(1L, 10_000L);
+		assertThat(pool.metrics().moves()).isEqualTo(1);
+		assertThat(pool.metrics().overruns()).isZero();
+	}
+
+	@Test
+	public void testOverrunningAIIsInterruptedAndGetsFallback() throws Exception {
+		Player player = create(SleepingFactory.class, Duration.ofMillis(200));
+		CompletableFuture<Move> made = new CompletableFuture<>();
+		player.makeMove(model, 1, MOVES, made::complete);
+		assertThat(made.get(5, TimeUnit.SECONDS)).isEqualTo(new TicketMove(BLACK, Ticket.TAXI, 9));
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(pool.metrics().overruns()).isEqualTo(1);
+		assertThat(pool.metrics().moves()).isZero();
+	}
+
+	@Test
+	public void testSlowFallbackCallbackDoesNotDelayOtherDeadlines() throws Exception {
+		Player player = create(SleepingFactory.class, Duration.ofMillis(200),
+				AIPool.Execution.threadPerMove());
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Move> blocked = new CompletableFuture<>();
+		CompletableFuture<Move> other = new CompletableFuture<>();
+		// the first callback stands in for a slow next turn of its game
+		player.makeMove(model, 1, MOVES, move -> {
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			blocked.complete(move);
+		});
+		Thread.sleep(50);
+		player.makeMove(model, 1, MOVES, other::complete);
+		assertThat(other.get(2, TimeUnit.SECONDS)).isEqualTo(new TicketMove(BLACK, Ticket.TAXI, 9));
+		assertThat(blocked).isNotDone();
+		release.countDown();
+		assertThat(blocked.get(5, TimeUnit.SECONDS)).isEqualTo(new TicketMove(BLACK, Ticket.TAXI, 9));
+		assertThat(pool.metrics().overruns()).isEqualTo(2);
+	}
+
+	@Test
+	public void testTerminateCancelsThinking() throws Exception {
+		Player player = create(SleepingFactory.class, Duration.ofMillis(300));
+		CompletableFuture<Move> made = new CompletableFuture<>();
+		player.makeMove(model, 1, MOVES, made::complete);
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		pool.terminate();
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+		Thread.sleep(500);
+		assertThat(made).isNotDone();
+		assertThat(pool.metrics().cancelled()).isEqualTo(1);
+		assertThat(pool.metrics().overruns()).isZero();
+		pool = null;
+	}
+
+	@Test
+	public void testGroupQueuesMovesBeyondItsThreads() throws Exception {
+		Player player = create(SleepingFactory.class, Duration.ofSeconds(10),
+				AIPool.Execution.fixed(1));
+		player.makeMove(model, 1, MOVES, move -> {});
+		player.makeMove(model, 1, MOVES, move -> {});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		AIPool.GroupMetrics metrics = pool.groupMetrics().get("mrX");
+		assertThat(metrics.threads()).isEqualTo(1);
+		assertThat(metrics.queueDepth()).isEqualTo(1);
+		pool.terminate();
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+		pool = null;
+	}
+
+	@Test
+	public void testFairShareIsSharedBetweenPools() throws Exception {
+		AIPool.Execution execution = AIPool.Execution.fairShare(4);
+		create(QuickFactory.class, Duration.ofSeconds(10), execution);
+		AIPool<String> first = pool;
+		create(QuickFactory.class, Duration.ofSeconds(10), execution);
+		assertThat(first.groupMetrics().get("mrX").maxThreads()).isEqualTo(2);
+		assertThat(pool.groupMetrics().get("mrX").maxThreads()).isEqualTo(2);
+		first.terminate();
+		assertThat(pool.groupMetrics().get("mrX").maxThreads()).isEqualTo(4);
+	}
+
+	@Test
+	public void testGroupCountsBusyTime() throws Exception {
+		Player player = create(QuickFactory.class, Duration.ofSeconds(10),
+				AIPool.Execution.threadPerMove());
+		CompletableFuture<Move> made = new CompletableFuture<>();
+		player.makeMove(model, 1, MOVES, made::complete);
+		made.get(5, TimeUnit.SECONDS);
+		AIPool.GroupMetrics metrics = pool.groupMetrics().get("mrX");
+		for (int i = 0; i < 50 && metrics.completed() == 0; i++) Thread.sleep(10);
+		assertThat(metrics.completed()).isEqualTo(1);
+		assertThat(metrics.busyTime().isZero()).isFalse();
+		assertThat(metrics.queueDepth()).isZero();
+	}
+
+}
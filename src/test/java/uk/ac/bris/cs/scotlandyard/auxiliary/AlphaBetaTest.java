@@ -0,0 +1,99 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.search.AlphaBeta;
+import uk.ac.bris.cs.scotlandyard.search.AlphaBetaPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.search.TranspositionTable;
+import uk.ac.bris.cs.scotlandyard.sim.GameResult;
+import uk.ac.bris.cs.scotlandyard.sim.RandomPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.sim.Simulation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.twoPlayerState;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+
+/**
+ * Tests for {@link AlphaBeta} and {@link AlphaBetaPlayerFactory}
+ */
+public class AlphaBetaTest {
+
+	private static final long NO_DEADLINE = Long.MAX_VALUE / 2;
+
+	private static AlphaBeta search(GameState state, AlphaBeta.Listener listener) {
+		return new AlphaBeta(DistanceOracle.of(state.graph()), new TranspositionTable(1 << 12),
+				listener);
+	}
+
+	@Test
+	public void testDetectiveCapturesMrX() throws IOException {
+		GameState state = twoPlayerState().advance(new TicketMove(BLACK, Ticket.TAXI, 8));
+		AlphaBeta.Result result = search(state, null).search(state, 3, NO_DEADLINE);
+		assertThat(state.toMove(result.move())).isEqualTo(new TicketMove(BLUE, Ticket.TAXI, 8));
+		assertThat(result.score()).isLessThanOrEqualTo(-AlphaBeta.WIN);
+	}
+
+	@Test
+	public void testMrXAvoidsCapture() throws IOException {
+		GameState state = twoPlayerState();
+		AlphaBeta.Result result = search(state, null).search(state, 2, NO_DEADLINE);
+		assertThat(result.score()).isGreaterThan(-AlphaBeta.WIN);
+		GameState next = state.advance(result.move());
+		assertThat(next.location(BLACK)).isNotEqualTo(8);
+	}
+
+	@Test
+	public void testSearchIsReproducible() throws IOException {
+		GameState state = twoPlayerState();
+		List<AlphaBeta.Result> depths = new ArrayList<>();
+		AlphaBeta.Result first = search(state, depths::add).search(state, 4, NO_DEADLINE);
+		AlphaBeta.Result second = search(state, null).search(state, 4, NO_DEADLINE);
+		assertThat(depths).extracting(AlphaBeta.Result::depth).containsExactly(1, 2, 3, 4);
+		assertThat(first.depth()).isEqualTo(4);
+		assertThat(second.move()).isEqualTo(first.move());
+		assertThat(second.score()).isEqualTo(first.score());
+		assertThat(second.nodes()).isEqualTo(first.nodes());
+	}
+
+	@Test
+	public void testDeadlineReturnsCompletedDepth() throws IOException {
+		GameState state = twoPlayerState();
+		AlphaBeta.Result result = search(state, null).search(state, AlphaBeta.MAX_DEPTH,
+				System.nanoTime() + 50_000_000L);
+		assertThat(result.found()).isTrue();
+		assertThat(result.depth()).isBetween(1, AlphaBeta.MAX_DEPTH);
+	}
+
+	@Test
+	public void testFactoryCompletesGames() {
+		List<Integer> seeds = IntStream.range(0, 2).boxed().collect(Collectors.toList());
+		List<GameResult> results = new Simulation.Builder(ScotlandYardModel::new)
+				.mrX(() -> new AlphaBetaPlayerFactory(20, AlphaBeta.MAX_DEPTH, null))
+				.detectives(() -> new RandomPlayerFactory(new Random(7)))
+				.moveTimeout(1000)
+				.build().runAll(seeds);
+		results.addAll(new Simulation.Builder(ScotlandYardModel::new)
+				.mrX(() -> new RandomPlayerFactory(new Random(42)))
+				.detectives(() -> new AlphaBetaPlayerFactory(20, 4, null))
+				.moveTimeout(1000)
+				.build().runAll(seeds));
+		for (GameResult result : results) {
+			assertThat(result.error()).isEmpty();
+			assertThat(result.winners()).isNotEmpty();
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.scotlandyard.model.AsyncSpectator;
+import uk.ac.bris.cs.scotlandyard.model.AsyncSpectator.Backpressure;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.ViewSnapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.detectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.mrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+
+/**
+ * Tests for {@link AsyncSpectator} and {@link ViewSnapshot}
+ */
+public class AsyncSpectatorTest {
+
+	private static final TicketMove FIRST = new TicketMove(BLACK, Ticket.TAXI, 46);
+	private static final TicketMove SECOND = new TicketMove(BLUE, Ticket.TAXI, 27);
+	private static final TicketMove THIRD = new TicketMove(BLUE, Ticket.TAXI, 28);
+
+	private final List<Consumer<Move>> callbacks = new ArrayList<>();
+
+	private ScotlandYardModel game() throws IOException {
+		Player player = (view, location, moves, callback) -> callbacks.add(callback);
+		return new ScotlandYardModel(StandardGame.ROUNDS, StandardGame.standardGraph(),
+				new PlayerConfiguration.Builder(BLACK).using(player).with(mrXTickets()).at(45)
+						.build(),
+				new PlayerConfiguration.Builder(BLUE).using(player).with(detectiveTickets()).at(26)
+						.build());
+	}
+
+	// records moves, waiting in the first one until released
+	private static final class Recorder implements Spectator {
+		final List<Object> events = Collections.synchronizedList(new ArrayList<>());
+		final List<ScotlandYardView> views = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch released;
+
+		Recorder(boolean blocking) {
+			this.released = new CountDownLatch(blocking ? 1 : 0);
+		}
+
+		@Override
+		public void onMoveMade(ScotlandYardView view, Move move) {
+			entered.countDown();
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				throw new AssertionError(e);
+			}
+			events.add(move);
+			views.add(view);
+		}
+
+		@Override
+		public void onRoundStarted(ScotlandYardView view, int round) {
+			events.add(round);
+			views.add(view);
+		}
+
+		@Override
+		public void onGameOver(ScotlandYardView view, Set<Colour> winningPlayers) {
+			events.add(winningPlayers);
+		}
+	}
+
+	@Test
+	public void testEventsArriveInOrderWithSnapshots() throws IOException {
+		ScotlandYardModel game = game();
+		Recorder recorder = new Recorder(false);
+		AsyncSpectator async = AsyncSpectator.of(recorder, 1, Backpressure.BLOCK);
+		game.registerSpectator(async);
+		game.startRotate();
+		callbacks.get(0).accept(FIRST);
+		callbacks.get(1).accept(SECOND);
+		async.close();
+		// Mr.X's destination stays hidden from spectators
+		assertThat(recorder.events).containsExactly(1, new TicketMove(BLACK, Ticket.TAXI, 0),
+				SECOND);
+		assertThat(recorder.views).allMatch(view -> view instanceof ViewSnapshot);
+		// the round started before anyone moved
+		assertThat(recorder.views.get(0).getPlayerLocation(BLUE)).contains(26);
+		assertThat(recorder.views.get(2).getPlayerLocation(BLUE)).contains(27);
+		assertThat(recorder.views.get(1).getPlayerTickets(BLACK, Ticket.TAXI)).contains(3);
+		// the detective's ticket went to Mr.X
+		assertThat(recorder.views.get(2).getPlayerTickets(BLACK, Ticket.TAXI)).contains(4);
+		assertThat(async.dropped()).isZero();
+	}
+
+	@Test
+	public void testDropDiscardsWhenFullButKeepsGameOver() throws Exception {
+		ViewSnapshot view = ViewSnapshot.of(game());
+		Recorder recorder = new Recorder(true);
+		AsyncSpectator async = AsyncSpectator.of(recorder, 1, Backpressure.DROP);
+		async.onMoveMade(view, FIRST);
+		recorder.entered.await();
+		async.onMoveMade(view, SECOND);
+		async.onMoveMade(view, THIRD);
+		assertThat(async.dropped()).isEqualTo(1);
+		Thread release = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException ignored) {}
+			recorder.released.countDown();
+		});
+		release.start();
+		async.onGameOver(view, Collections.singleton(BLUE));
+		async.close();
+		assertThat(recorder.events).containsExactly(FIRST, SECOND, Collections.singleton(BLUE));
+	}
+
+	@Test
+	public void testCoalesceKeepsTheNewestEvent() throws Exception {
+		ViewSnapshot view = ViewSnapshot.of(game());
+		Recorder recorder = new Recorder(true);
+		AsyncSpectator async = AsyncSpectator.of(recorder, 1, Backpressure.COALESCE);
+		async.onMoveMade(view, FIRST);
+		recorder.entered.await();
+		async.onMoveMade(view, SECOND);
+		async.onMoveMade(view, THIRD);
+		recorder.released.countDown();
+		async.close();
+		assertThat(recorder.events).containsExactly(FIRST, THIRD);
+		assertThat(async.dropped()).isEqualTo(1);
+		// closed spectators drop everything
+		async.onMoveMade(view, FIRST);
+		assertThat(recorder.events).hasSize(2);
+	}
+
+}
@@ -0,0 +1,103 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.gamekit.graph.UndirectedGraph;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader.fromLines;
+
+/**
+ * Tests for {@link CompiledGraph}
+ */
+public class CompiledGraphTest {
+
+	@Test
+	public void testParallelEdgesShareSlot() {
+		CompiledGraph<Transport> graph = CompiledGraph.of(
+				fromLines(asList("3 3", "1", "2", "3", "1 2 Taxi", "1 2 Bus", "2 3 Ferry")),
+				Transport.class);
+		int one = graph.indexOf(1);
+		assertThat(graph.endEdge(one) - graph.firstEdge(one)).isEqualTo(1);
+		int slot = graph.firstEdge(one);
+		assertThat(graph.valueOf(graph.target(slot))).isEqualTo(2);
+		assertThat(graph.mask(slot)).isEqualTo(
+				CompiledGraph.maskOf(Transport.TAXI) | CompiledGraph.maskOf(Transport.BUS));
+		assertThat(graph.hasData(slot, Transport.FERRY)).isFalse();
+		int two = graph.indexOf(2);
+		assertThat(graph.endEdge(two) - graph.firstEdge(two)).isEqualTo(2);
+		assertThat(graph.getEdgesFrom(graph.getNode(2))).hasSize(3);
+		assertThat(graph.indexOf(4)).isEqualTo(-1);
+	}
+
+	@Test
+	public void testStandardGraphIsAlreadyCompiled() throws IOException {
+		ImmutableGraph<Integer, Transport> graph = StandardGame.standardGraph();
+		CompiledGraph<Transport> compiled = CompiledGraph.of(graph, Transport.class);
+		assertThat(CompiledGraph.of(new ImmutableGraph<>(graph), Transport.class))
+				.isSameAs(compiled);
+		assertThat(compiled.size()).isEqualTo(199);
+	}
+
+	@Test
+	public void testEqualToSourceGraph() throws IOException {
+		Graph<Integer, Transport> source = new UndirectedGraph<>(StandardGame.standardGraph());
+		CompiledGraph<Transport> compiled = CompiledGraph.of(source, Transport.class);
+		assertThat(compiled).isEqualTo(source);
+		assertThat(new UndirectedGraph<>(compiled)).isEqualTo(source);
+		for (Node<Integer> node : source.getNodes()) {
+			assertThat(compiled.getEdgesFrom(node))
+					.containsExactlyElementsOf(source.getEdgesFrom(node));
+			int index = compiled.indexOf(node.value());
+			for (Edge<Integer, Transport> edge : source.getEdgesFrom(node)) {
+				boolean found = false;
+				for (int slot = compiled.firstEdge(index); slot < compiled.endEdge(index); slot++) {
+					found |= compiled.valueOf(compiled.target(slot)) == edge.destination().value()
+							&& compiled.hasData(slot, edge.data());
+				}
+				assertThat(found).as("slot for %s", edge).isTrue();
+			}
+		}
+	}
+
+	@Test
+	public void testSparseValuesAreFound() {
+		UndirectedGraph<Integer, Transport> source = new UndirectedGraph<>();
+		int[] values = {Integer.MAX_VALUE, -5, Integer.MIN_VALUE, 7};
+		for (int value : values)
+			source.addNode(new Node<>(value));
+		source.addEdge(new Edge<>(source.getNode(Integer.MIN_VALUE),
+				source.getNode(Integer.MAX_VALUE), Transport.TAXI));
+		CompiledGraph<Transport> graph = CompiledGraph.of(source, Transport.class);
+		for (int value : values)
+			assertThat(graph.valueOf(graph.indexOf(value))).isEqualTo(value);
+		assertThat(graph.indexOf(0)).isEqualTo(-1);
+		assertThat(graph.indexOf(Integer.MAX_VALUE - 1)).isEqualTo(-1);
+		int min = graph.indexOf(Integer.MIN_VALUE);
+		assertThat(graph.endEdge(min) - graph.firstEdge(min)).isEqualTo(1);
+		assertThat(graph.valueOf(graph.target(graph.firstEdge(min))))
+				.isEqualTo(Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void testImmutable() throws IOException {
+		CompiledGraph<Transport> graph = CompiledGraph.of(StandardGame.standardGraph(),
+				Transport.class);
+		assertThatThrownBy(() -> graph.addNode(new Node<>(500)))
+				.isInstanceOf(UnsupportedOperationException.class);
+		assertThatThrownBy(() -> graph.addEdge(new Edge<>(new Node<>(1), new Node<>(2),
+				Transport.TAXI))).isInstanceOf(UnsupportedOperationException.class);
+	}
+
+}
@@ -0,0 +1,91 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
+import uk.ac.bris.cs.gamekit.graph.Edge;
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.gamekit.graph.Node;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYardGraphReader.fromLines;
+import static uk.ac.bris.cs.scotlandyard.model.Transport.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.Transport.FERRY;
+import static uk.ac.bris.cs.scotlandyard.model.Transport.TAXI;
+
+/**
+ * Tests for {@link DistanceOracle}
+ */
+public class DistanceOracleTest {
+
+	private static DistanceOracle<Transport> oracleOf(Graph<Integer, Transport> graph) {
+		return DistanceOracle.of(CompiledGraph.of(graph, Transport.class));
+	}
+
+	@Test
+	public void testDistancesRespectTransports() {
+		DistanceOracle<Transport> oracle = oracleOf(fromLines(asList("4 4", "1", "2", "3", "4",
+				"1 2 Taxi", "2 3 Taxi", "1 3 Bus", "3 4 Ferry")));
+		assertThat(oracle.distance(EnumSet.of(TAXI), 1, 3)).isEqualTo(2);
+		assertThat(oracle.distance(EnumSet.of(TAXI, BUS), 1, 3)).isEqualTo(1);
+		assertThat(oracle.distance(EnumSet.of(TAXI, BUS), 3, 1)).isEqualTo(1);
+		assertThat(oracle.distance(EnumSet.of(TAXI, BUS), 1, 4))
+				.isEqualTo(DistanceOracle.UNREACHABLE);
+		assertThat(oracle.distance(EnumSet.of(BUS, FERRY), 1, 4)).isEqualTo(2);
+		assertThat(oracle.distance(EnumSet.noneOf(Transport.class), 2, 2)).isEqualTo(0);
+	}
+
+	@Test
+	public void testStandardGraphMatchesBreadthFirstSearch() throws IOException {
+		Graph<Integer, Transport> graph = StandardGame.standardGraph();
+		DistanceOracle<Transport> oracle = oracleOf(graph);
+		for (EnumSet<Transport> transports : asList(EnumSet.of(TAXI), EnumSet.of(TAXI, BUS),
+				EnumSet.complementOf(EnumSet.of(FERRY)), EnumSet.allOf(Transport.class))) {
+			for (int source : asList(1, 46, 108, 199)) {
+				Map<Integer, Integer> expected = search(graph, transports, source);
+				for (Node<Integer> node : graph.getNodes()) {
+					assertThat(oracle.distance(transports, source, node.value())).isEqualTo(
+							expected.getOrDefault(node.value(), DistanceOracle.UNREACHABLE));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testUnknownNodeThrows() throws IOException {
+		DistanceOracle<Transport> oracle = oracleOf(StandardGame.standardGraph());
+		assertThatThrownBy(() -> oracle.distance(EnumSet.of(TAXI), 1, 200))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static Map<Integer, Integer> search(Graph<Integer, Transport> graph,
+			EnumSet<Transport> transports, int source) {
+		Map<Integer, Integer> distances = new HashMap<>();
+		Queue<Integer> queue = new ArrayDeque<>();
+		distances.put(source, 0);
+		queue.add(source);
+		while (!queue.isEmpty()) {
+			int node = queue.remove();
+			for (Edge<Integer, Transport> edge : graph.getEdgesFrom(graph.getNode(node))) {
+				int next = edge.destination().value();
+				if (!transports.contains(edge.data()) || distances.containsKey(next)) continue;
+				distances.put(next, distances.get(node) + 1);
+				queue.add(next);
+			}
+		}
+		return distances;
+	}
+
+}
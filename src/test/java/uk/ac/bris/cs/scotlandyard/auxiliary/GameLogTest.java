@@ -0,0 +1,107 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.GameLog;
+import uk.ac.bris.cs.scotlandyard.model.GameReplay;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.sim.GameResult;
+import uk.ac.bris.cs.scotlandyard.sim.RandomPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.sim.Simulation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link GameLog} and {@link GameReplay}
+ */
+public class GameLogTest {
+
+	private static List<GameLog> randomGames(int count) {
+		List<GameResult> results = new Simulation.Builder(ScotlandYardModel::new)
+				.mrX(() -> new RandomPlayerFactory(new Random(42)))
+				.detectives(() -> new RandomPlayerFactory(new Random(7)))
+				.parallelism(1).record(true).build()
+				.runAll(IntStream.range(0, count).boxed().collect(Collectors.toList()));
+		return results.stream().map(result -> {
+			assertThat(result.error()).isEmpty();
+			return result.log().orElseThrow(AssertionError::new);
+		}).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testRecordedGamesAreComplete() throws IOException {
+		for (GameLog log : randomGames(8)) {
+			assertThat(log.isFinished()).isTrue();
+			assertThat(log.winners()).isNotEmpty();
+			assertThat(log.rounds()).isEqualTo(StandardGame.ROUNDS);
+			assertThat(log.players()).hasSize(6).startsWith(Colour.BLACK);
+			assertThat(log.moves()).hasSize(log.size());
+			// a few bytes per move on top of the setup
+			assertThat(log.toBytes().length).isLessThan(64 + 5 * log.size());
+			GameLog copy = GameLog.read(log.toBytes());
+			assertThat(copy.moves()).isEqualTo(log.moves());
+			assertThat(copy.winners()).isEqualTo(log.winners());
+		}
+	}
+
+	@Test
+	public void testReplayReachesTheLoggedEnd() throws IOException {
+		Graph<Integer, Transport> graph = StandardGame.standardGraph();
+		boolean doubles = false;
+		for (GameLog log : randomGames(4)) {
+			doubles |= log.moves().stream().anyMatch(move -> move instanceof DoubleMove);
+			GameReplay replay = new GameReplay(log, graph, 5);
+			GameState end = replay.stateAt(replay.size());
+			assertThat(end.isGameOver()).isTrue();
+			assertThat(end.winners()).isEqualTo(log.winners());
+			ScotlandYardModel model = replay.modelAt(replay.size());
+			assertThat(model.isGameOver()).isTrue();
+			assertThat(model.getWinningPlayers()).isEqualTo(log.winners());
+		}
+		assertThat(doubles).as("some Mr.X double moves were replayed").isTrue();
+	}
+
+	@Test
+	public void testReplayMidGame() throws IOException {
+		Graph<Integer, Transport> graph = StandardGame.standardGraph();
+		GameLog log = randomGames(1).get(0);
+		GameReplay replay = new GameReplay(log, graph, 4);
+		for (int move : new int[] { 0, 3, 4, 7, replay.size() - 1 }) {
+			GameState state = replay.stateAt(move);
+			ScotlandYardModel model = replay.modelAt(move);
+			assertThat(model.getCurrentPlayer()).isEqualTo(state.currentPlayer());
+			for (Colour colour : log.players()) {
+				if (colour.isDetective())
+					assertThat(model.getPlayerLocation(colour)).contains(state.location(colour));
+			}
+		}
+		assertThatThrownBy(() -> replay.stateAt(replay.size() + 1))
+				.isInstanceOf(IndexOutOfBoundsException.class);
+	}
+
+	@Test
+	public void testMalformedLogsAreRejected() {
+		byte[] bytes = randomGames(1).get(0).toBytes();
+		assertThatThrownBy(() -> GameLog.read(new byte[] { 'S', 'Y' }))
+				.isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> GameLog.read(Arrays.copyOf(bytes, bytes.length - 1)))
+				.isInstanceOf(IOException.class);
+		byte[] trailing = Arrays.copyOf(bytes, bytes.length + 1);
+		assertThatThrownBy(() -> GameLog.read(trailing)).isInstanceOf(IOException.class);
+	}
+
+}
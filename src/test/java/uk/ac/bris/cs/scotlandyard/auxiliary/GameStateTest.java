@@ -0,0 +1,143 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.sim.RandomPlayerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.doNothingPlayer;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.dummyPlayer;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.GREEN;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.WHITE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.YELLOW;
+
+/**
+ * Tests for {@link GameState}, mostly by playing it alongside
+ * {@link ScotlandYardModel}
+ */
+public class GameStateTest {
+
+	private static final List<Colour> DETECTIVES = Arrays.asList(BLUE, GREEN, RED, WHITE, YELLOW);
+
+	private GameState state;
+	private ScotlandYardModel model;
+
+	private static PlayerConfiguration[] configurations(Player player, int seed) {
+		List<Integer> locations = StandardGame.generateDetectiveLocations(seed, DETECTIVES.size());
+		PlayerConfiguration[] configurations = new PlayerConfiguration[DETECTIVES.size() + 1];
+		configurations[0] = new PlayerConfiguration.Builder(BLACK).using(player)
+				.with(StandardGame.generateMrXTickets())
+				.at(StandardGame.generateMrXLocation(seed)).build();
+		for (int i = 0; i < DETECTIVES.size(); i++) {
+			configurations[i + 1] = new PlayerConfiguration.Builder(DETECTIVES.get(i))
+					.using(player).with(StandardGame.generateDetectiveTickets())
+					.at(locations.get(i)).build();
+		}
+		return configurations;
+	}
+
+	private static GameState initial(PlayerConfiguration[] configurations) throws IOException {
+		return GameState.of(StandardGame.ROUNDS, StandardGame.standardGraph(),
+				configurations[0], configurations[1],
+				Arrays.copyOfRange(configurations, 2, configurations.length));
+	}
+
+	@Test
+	public void testMatchesModelThroughRandomGames() throws IOException {
+		Graph<Integer, Transport> graph = StandardGame.standardGraph();
+		for (int seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			Player player = (view, location, moves, callback) -> {
+				assertThat(state.currentPlayer()).isEqualTo(view.getCurrentPlayer());
+				assertThat(state.currentRound()).isEqualTo(view.getCurrentRound());
+				assertThat(state.mrXLastSeen()).isEqualTo(view.getPlayerLocation(BLACK).get());
+				assertThat(state.location(view.getCurrentPlayer())).isEqualTo(location);
+				for (Colour colour : view.getPlayers()) {
+					for (Ticket ticket : Ticket.values()) {
+						assertThat(state.tickets(colour, ticket))
+								.isEqualTo(view.getPlayerTickets(colour, ticket).get());
+					}
+				}
+				assertThat(state.legalMoves()).isEqualTo(moves);
+				assertThat(state.zobristHash()).isEqualTo(model.getZobristHash());
+				Move move = RandomPlayerFactory.pick(random, moves);
+				state = state.advance(move);
+				callback.accept(move);
+			};
+			PlayerConfiguration[] configurations = configurations(player, seed);
+			model = new ScotlandYardModel(StandardGame.ROUNDS, graph,
+					configurations[0], configurations[1],
+					Arrays.copyOfRange(configurations, 2, configurations.length));
+			state = GameState.of(StandardGame.ROUNDS, graph, configurations[0],
+					configurations[1], Arrays.copyOfRange(configurations, 2, configurations.length));
+			while (!model.isGameOver()) {
+				assertThat(state.isGameOver()).isFalse();
+				model.startRotate();
+			}
+			assertThat(state.isGameOver()).isTrue();
+			assertThat(state.winners()).isEqualTo(model.getWinningPlayers());
+			assertThat(state.zobristHash()).isEqualTo(model.getZobristHash());
+		}
+	}
+
+	@Test
+	public void testAdvanceDoesNotChangeState() throws IOException {
+		GameState initial = initial(configurations(dummyPlayer(), 3));
+		String before = initial.toString();
+		GameState next = initial.advance(initial.legalMoves().iterator().next());
+		assertThat(initial.toString()).isEqualTo(before);
+		assertThat(next).isNotEqualTo(initial);
+		assertThat(next.zobristHash()).isNotEqualTo(initial.zobristHash());
+		assertThat(next.currentPlayer()).isEqualTo(BLUE);
+		assertThat(next.currentRound()).isPositive();
+		assertThat(next.mrXTravelLog()).isNotEmpty();
+		assertThat(initial.mrXTravelLog()).isEmpty();
+	}
+
+	@Test
+	public void testWithMrXAtKeepsHashIncremental() throws IOException {
+		PlayerConfiguration[] configurations = configurations(dummyPlayer(), 5);
+		GameState initial = initial(configurations);
+		int elsewhere = StandardGame.generateMrXLocation(6);
+		configurations[0] = doNothingPlayer(BLACK, elsewhere);
+		GameState moved = initial(configurations);
+		GameState determinized = initial.withMrXAt(elsewhere);
+		assertThat(determinized.location(BLACK)).isEqualTo(elsewhere);
+		assertThat(determinized.zobristHash()).isEqualTo(moved.zobristHash());
+		assertThat(determinized.legalMoves()).isEqualTo(moved.legalMoves());
+		assertThat(determinized.withMrXAt(initial.location(BLACK))).isEqualTo(initial);
+	}
+
+	@Test
+	public void testIllegalMovesThrow() throws IOException {
+		GameState initial = initial(configurations(dummyPlayer(), 3));
+		assertThatThrownBy(() -> initial.advance(new PassMove(BLUE)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> initial.advance(new PassMove(BLACK)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> initial.advance(new TicketMove(BLACK, Ticket.TAXI, 199)))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
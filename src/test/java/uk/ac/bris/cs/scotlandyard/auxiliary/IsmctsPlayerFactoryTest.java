@@ -0,0 +1,80 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import uk.ac.bris.cs.scotlandyard.ResourceManager;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.search.IsmctsPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.sim.GameResult;
+import uk.ac.bris.cs.scotlandyard.sim.RandomPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.sim.Simulation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.GREEN;
+
+/**
+ * Tests for {@link IsmctsPlayerFactory}
+ */
+public class IsmctsPlayerFactoryTest {
+
+	@Test
+	public void testDetectivesCompleteGamesWithinBudget() {
+		List<Integer> seeds = IntStream.range(0, 3).boxed().collect(Collectors.toList());
+		List<GameResult> results = new Simulation.Builder(ScotlandYardModel::new)
+				.mrX(() -> new RandomPlayerFactory(new Random(42)))
+				.detectives(() -> new IsmctsPlayerFactory(20, 2))
+				.moveTimeout(1000)
+				.build().runAll(seeds);
+		for (GameResult result : results) {
+			assertThat(result.error()).isEmpty();
+			assertThat(result.winners()).isNotEmpty();
+		}
+	}
+
+	@Test
+	public void testPlannedRotationIsValidForEveryDetective() throws Exception {
+		IsmctsPlayerFactory factory = new IsmctsPlayerFactory(1000, 1);
+		Map<Colour, Move> plan = new HashMap<>();
+		List<Move> made = new ArrayList<>();
+		Player mrX = (view, location, moves, callback) -> callback.accept(moves.iterator().next());
+		Player detective = (view, location, moves, callback) -> {
+			if (plan.isEmpty()) plan.putAll(factory.planRotation(view, location, moves));
+			Move move = plan.get(view.getCurrentPlayer());
+			if (moves.contains(move)) made.add(move);
+			callback.accept(moves.contains(move) ? move : moves.iterator().next());
+		};
+		ScotlandYardModel model = new ScotlandYardModel(StandardGame.ROUNDS,
+				StandardGame.standardGraph(),
+				new PlayerConfiguration.Builder(BLACK).using(mrX)
+						.with(StandardGame.generateMrXTickets()).at(45).build(),
+				new PlayerConfiguration.Builder(BLUE).using(detective)
+						.with(StandardGame.generateDetectiveTickets()).at(155).build(),
+				new PlayerConfiguration.Builder(GREEN).using(detective)
+						.with(StandardGame.generateDetectiveTickets()).at(174).build());
+		factory.createSpectators(model).forEach(model::registerSpectator);
+		factory.ready(null, new ResourceManager());
+		try {
+			model.startRotate();
+		} finally {
+			factory.finish();
+		}
+		assertThat(plan).containsOnlyKeys(BLUE, GREEN);
+		assertThat(made).containsExactly(plan.get(BLUE), plan.get(GREEN));
+	}
+
+}
@@ -0,0 +1,65 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.search.MctsPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.sim.GameResult;
+import uk.ac.bris.cs.scotlandyard.sim.RandomPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.sim.Simulation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link MctsPlayerFactory}
+ */
+public class MctsPlayerFactoryTest {
+
+	private static final List<Integer> SEEDS = IntStream.range(0, 16).boxed()
+			.collect(Collectors.toList());
+
+	// MCTS detectives only chase Mr.X's last known location, which is enough
+	// to catch a random Mr.X in nearly every game
+	private static long mrXWins(Supplier<PlayerFactory> mrX) {
+		List<GameResult> results = new Simulation.Builder(ScotlandYardModel::new)
+				.mrX(mrX)
+				.detectives(() -> new MctsPlayerFactory(70, 1))
+				.moveTimeout(1000)
+				.parallelism(1)
+				.build().runAll(SEEDS);
+		// a move that misses the timeout fails its game
+		for (GameResult result : results)
+			assertThat(result.error()).isEmpty();
+		return results.stream().filter(GameResult::mrXWon).count();
+	}
+
+	@Test
+	public void testMrXCompletesGamesWithinBudget() {
+		List<Integer> seeds = IntStream.range(0, 3).boxed().collect(Collectors.toList());
+		List<GameResult> results = new Simulation.Builder(ScotlandYardModel::new)
+				.mrX(() -> new MctsPlayerFactory(20, 2))
+				.detectives(() -> new RandomPlayerFactory(new Random(7)))
+				.moveTimeout(1000)
+				.build().runAll(seeds);
+		for (GameResult result : results) {
+			assertThat(result.error()).isEmpty();
+			assertThat(result.winners()).isNotEmpty();
+		}
+	}
+
+	@Test
+	public void testMrXWinsMoreOftenThanRandomPlay() {
+		// 70ms leaves about 20ms of search after the safety margin
+		long searched = mrXWins(() -> new MctsPlayerFactory(70, 1));
+		long random = mrXWins(() -> new RandomPlayerFactory(new Random(42)));
+		assertThat(searched).isGreaterThan(random);
+	}
+
+}
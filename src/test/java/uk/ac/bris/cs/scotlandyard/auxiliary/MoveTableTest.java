@@ -0,0 +1,100 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import uk.ac.bris.cs.gamekit.graph.CompiledGraph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.MoveTable;
+import uk.ac.bris.cs.scotlandyard.model.PassMove;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+
+/**
+ * Tests for {@link MoveTable}
+ */
+public class MoveTableTest {
+
+	private static CompiledGraph<Transport> graph() throws IOException {
+		return CompiledGraph.of(StandardGame.standardGraph(), Transport.class);
+	}
+
+	@Test
+	public void testEveryIdRoundTrips() throws IOException {
+		MoveTable table = MoveTable.of(graph());
+		Set<Move> seen = new HashSet<>();
+		for (int id = 0; id < table.size(); id++) {
+			Move move = table.get(id);
+			assertThat(table.id(move)).isEqualTo(id);
+			assertThat(table.get(id)).isSameAs(move);
+			assertThat(seen.add(move)).isTrue();
+		}
+	}
+
+	@Test
+	public void testOneTablePerGraph() throws IOException {
+		CompiledGraph<Transport> graph = graph();
+		assertThat(MoveTable.of(graph)).isSameAs(MoveTable.of(graph));
+	}
+
+	@Test
+	public void testEqualMovesShareIdsAndHashes() throws IOException {
+		MoveTable table = MoveTable.of(graph());
+		TicketMove taxi = new TicketMove(BLUE, Ticket.TAXI, 8);
+		int id = table.id(taxi);
+		assertThat(id).isNotEqualTo(MoveTable.NONE);
+		assertThat(table.get(id)).isEqualTo(taxi).isNotSameAs(taxi);
+		assertThat(table.get(id).hashCode()).isEqualTo(taxi.hashCode());
+		assertThat(table.id(new TicketMove(BLACK, Ticket.TAXI, 8))).isNotEqualTo(id);
+
+		DoubleMove twice = new DoubleMove(BLACK, Ticket.TAXI, 8, Ticket.TAXI, 1);
+		assertThat(table.get(table.id(twice))).isEqualTo(twice);
+		assertThat(table.get(table.id(twice)).hashCode()).isEqualTo(twice.hashCode());
+		assertThat(table.pass(BLUE)).isEqualTo(new PassMove(BLUE)).isSameAs(table.pass(BLUE));
+		assertThat(table.pass(BLUE).hashCode()).isEqualTo(new PassMove(BLUE).hashCode());
+	}
+
+	@Test
+	public void testMovesOffTheTableHaveNoId() throws IOException {
+		MoveTable table = MoveTable.of(graph());
+		assertThat(table.id(new TicketMove(BLUE, Ticket.TAXI, 1000))).isEqualTo(MoveTable.NONE);
+		// 1 and 200 are not adjacent
+		assertThat(table.id(new DoubleMove(BLACK, Ticket.TAXI, 1, Ticket.TAXI, 200)))
+				.isEqualTo(MoveTable.NONE);
+		assertThat(table.id(new DoubleMove(BLUE, Ticket.TAXI, 8, Ticket.TAXI, 1)))
+				.isEqualTo(MoveTable.NONE);
+	}
+
+	@Test
+	public void testPackedMovesMatchTheirObjects() throws IOException {
+		CompiledGraph<Transport> graph = graph();
+		MoveTable table = MoveTable.of(graph);
+		MoveGenerator generator = new MoveGenerator(graph);
+		int[] tickets = new int[Ticket.values().length];
+		for (Ticket ticket : Ticket.values())
+			tickets[ticket.ordinal()] = 2;
+		int count = generator.generate(graph.indexOf(1), generator.newOccupancy(), tickets, true);
+		assertThat(count).isPositive();
+		for (int i = 0; i < count; i++) {
+			int packed = generator.get(i);
+			Move move = generator.toMove(BLACK, packed);
+			assertThat(table.id(BLACK, packed)).isEqualTo(table.id(move));
+			assertThat(table.get(BLACK, packed)).isEqualTo(move).isSameAs(table.get(BLACK, packed));
+		}
+		for (Colour colour : Colour.values())
+			assertThat(table.id(table.pass(colour))).isEqualTo(colour.ordinal());
+	}
+
+}
@@ -0,0 +1,97 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import uk.ac.bris.cs.gamekit.graph.Graph;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Spectator;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.search.MrXBeliefTracker;
+import uk.ac.bris.cs.scotlandyard.sim.RandomPlayerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.GREEN;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.WHITE;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.YELLOW;
+
+/**
+ * Tests for {@link MrXBeliefTracker}
+ */
+public class MrXBeliefTrackerTest {
+
+	private static final List<Colour> DETECTIVES = Arrays.asList(BLUE, GREEN, RED, WHITE, YELLOW);
+
+	private static ScotlandYardModel randomGame(Graph<Integer, Transport> graph, int seed) {
+		Random random = new Random(seed);
+		Player player = (view, location, moves, callback) -> callback
+				.accept(RandomPlayerFactory.pick(random, moves));
+		List<Integer> locations = StandardGame.generateDetectiveLocations(seed, DETECTIVES.size());
+		PlayerConfiguration[] detectives = new PlayerConfiguration[DETECTIVES.size()];
+		for (int i = 0; i < detectives.length; i++) {
+			detectives[i] = new PlayerConfiguration.Builder(DETECTIVES.get(i)).using(player)
+					.with(StandardGame.generateDetectiveTickets()).at(locations.get(i)).build();
+		}
+		PlayerConfiguration mrX = new PlayerConfiguration.Builder(BLACK).using(player)
+				.with(StandardGame.generateMrXTickets())
+				.at(StandardGame.generateMrXLocation(seed)).build();
+		return new ScotlandYardModel(StandardGame.ROUNDS, graph, mrX, detectives[0],
+				Arrays.copyOfRange(detectives, 1, detectives.length));
+	}
+
+	@Test
+	public void testMrXIsAlwaysAPossibleLocation() throws IOException {
+		Graph<Integer, Transport> graph = StandardGame.standardGraph();
+		for (int seed = 0; seed < 20; seed++) {
+			ScotlandYardModel model = randomGame(graph, seed);
+			MrXBeliefTracker tracker = new MrXBeliefTracker(StandardGame.MRX_LOCATIONS, true);
+			model.registerSpectator(tracker);
+			model.registerSpectator(new Spectator() {
+				@Override
+				public void onMoveMade(ScotlandYardView view, Move move) {
+					if (!(move instanceof TicketMove) || model.isGameOver()) return;
+					int round = view.getCurrentRound();
+					if (move.colour().isMrX()) {
+						if (view.getRounds().get(round - 1))
+							assertThat(tracker.possibleLocations())
+									.containsExactly(((TicketMove) move).destination());
+						return;
+					}
+					// the model moves Mr.X after notifying the legs of a double move
+					int actual = model.getPlayerLocation(BLACK, true).get();
+					assertThat(tracker.isPossible(actual)).isTrue();
+					assertThat(tracker.weight(actual)).isPositive();
+					double total = tracker.possibleLocations().stream()
+							.mapToDouble(tracker::weight).sum();
+					assertThat(total).isCloseTo(1.0, within(1e-9));
+				}
+			});
+			while (!model.isGameOver())
+				model.startRotate();
+		}
+	}
+
+	@Test
+	public void testNothingIsKnownBeforeTheGame() {
+		MrXBeliefTracker tracker = new MrXBeliefTracker();
+		assertThat(tracker.count()).isZero();
+		assertThat(tracker.possibleLocations()).isEmpty();
+		assertThat(tracker.isPossible(1)).isFalse();
+	}
+
+}
@@ -0,0 +1,98 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.ai.OpeningBook;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.search.OpeningBookGenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.doNothingPlayer;
+
+/**
+ * Tests for {@link OpeningBook} and {@link OpeningBookGenerator}
+ */
+public class OpeningBookTest {
+
+	private static ImmutableGraph<Integer, Transport> graph;
+	private static OpeningBookGenerator generator;
+	private static List<GameState> starts;
+	private static OpeningBook book;
+
+	@BeforeClass
+	public static void generate() throws Exception {
+		graph = StandardGame.standardGraph();
+		generator = new OpeningBookGenerator(graph, 2, 5);
+		starts = generator.starts(2).subList(0, 3);
+		book = generator.generate(starts, 1);
+	}
+
+	private static GameState start(int mrX, int blue, int green) {
+		return GameState.of(StandardGame.ROUNDS, graph, doNothingPlayer(Colour.BLACK, mrX),
+				doNothingPlayer(Colour.BLUE, blue), doNothingPlayer(Colour.GREEN, green));
+	}
+
+	@Test
+	public void testStartsCoverEveryStandardStart() {
+		assertThat(generator.starts(1)).hasSize(12 * 14);
+		assertThat(generator.starts(2)).hasSize(12 * 91);
+	}
+
+	@Test
+	public void testEveryStartHasALegalBookMove() {
+		assertThat(book.size()).isBetween(starts.size(), 2 * starts.size());
+		for (GameState start : starts) {
+			Optional<Move> move = book.lookup(start);
+			assertThat(move).isPresent();
+			assertThat(start.legalMoves()).contains(move.get());
+		}
+	}
+
+	@Test
+	public void testOrderOfDetectivesDoesNotMatter() {
+		GameState start = starts.get(0);
+		GameState swapped = start(start.location(Colour.BLACK), start.location(Colour.GREEN),
+				start.location(Colour.BLUE));
+		assertThat(OpeningBook.key(swapped)).isEqualTo(OpeningBook.key(start));
+		assertThat(book.lookup(swapped)).isEqualTo(book.lookup(start));
+	}
+
+	@Test
+	public void testOnlyMrXOpeningMovesAreLookedUp() {
+		GameState start = starts.get(0);
+		GameState detectiveToMove = start.advance(book.lookup(start).get());
+		assertThat(book.lookup(detectiveToMove)).isEmpty();
+		assertThat(OpeningBook.EMPTY.lookup(start)).isEmpty();
+	}
+
+	@Test
+	public void testBookRoundTrips() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		book.write(out);
+		assertThat(out.size()).isEqualTo(20 + 12 * book.size());
+		OpeningBook read = OpeningBook.read(new ByteArrayInputStream(out.toByteArray()));
+		assertThat(read.size()).isEqualTo(book.size());
+		for (GameState start : starts)
+			assertThat(read.lookup(start)).isEqualTo(book.lookup(start));
+	}
+
+	@Test
+	public void testReadRejectsOtherData() {
+		assertThatThrownBy(() -> OpeningBook.read(new ByteArrayInputStream(new byte[20])))
+				.isInstanceOf(IOException.class);
+	}
+
+}
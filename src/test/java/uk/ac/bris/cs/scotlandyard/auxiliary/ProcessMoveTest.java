@@ -0,0 +1,73 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.detectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.mrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+
+/**
+ * Tests for validating the moves played through the callbacks of
+ * {@link ScotlandYardModel}
+ */
+public class ProcessMoveTest {
+
+	private final List<Set<Move>> offered = new ArrayList<>();
+	private final List<Consumer<Move>> callbacks = new ArrayList<>();
+
+	private ScotlandYardModel game() throws IOException {
+		Player player = (view, location, moves, callback) -> {
+			offered.add(moves);
+			callbacks.add(callback);
+		};
+		return new ScotlandYardModel(StandardGame.ROUNDS, StandardGame.standardGraph(),
+				new PlayerConfiguration.Builder(BLACK).using(player).with(mrXTickets()).at(45)
+						.build(),
+				new PlayerConfiguration.Builder(BLUE).using(player).with(detectiveTickets()).at(26)
+						.build());
+	}
+
+	@Test
+	public void testOnlyOfferedMovesAreAccepted() throws IOException {
+		ScotlandYardModel game = game();
+		game.startRotate();
+		assertThatThrownBy(() -> callbacks.get(0).accept(new TicketMove(BLACK, Ticket.TAXI, 1)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> callbacks.get(0).accept(new TicketMove(BLUE, Ticket.TAXI, 27)))
+				.isInstanceOf(IllegalArgumentException.class);
+		// an equal move is accepted as well as the offered instance
+		callbacks.get(0).accept(new TicketMove(BLACK, Ticket.TAXI, 46));
+		assertThat(game.getCurrentPlayer()).isEqualTo(BLUE);
+		assertThat(offered.get(1)).contains(new TicketMove(BLUE, Ticket.TAXI, 27));
+	}
+
+	@Test
+	public void testStaleAndRepeatedCallbacksAreRejected() throws IOException {
+		game().startRotate();
+		Move first = offered.get(0).iterator().next();
+		callbacks.get(0).accept(first);
+		assertThatThrownBy(() -> callbacks.get(0).accept(first))
+				.isInstanceOf(IllegalStateException.class);
+		callbacks.get(1).accept(offered.get(1).iterator().next());
+		assertThatThrownBy(() -> callbacks.get(1).accept(offered.get(1).iterator().next()))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+}
@@ -0,0 +1,130 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.SplittableRandom;
+
+import uk.ac.bris.cs.gamekit.graph.DistanceOracle;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+import uk.ac.bris.cs.scotlandyard.search.AlphaBeta;
+import uk.ac.bris.cs.scotlandyard.search.Features;
+import uk.ac.bris.cs.scotlandyard.search.LinearScorer;
+import uk.ac.bris.cs.scotlandyard.search.MlpScorer;
+import uk.ac.bris.cs.scotlandyard.search.Scorer;
+import uk.ac.bris.cs.scotlandyard.search.TranspositionTable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.twoPlayerState;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLACK;
+import static uk.ac.bris.cs.scotlandyard.model.Colour.BLUE;
+
+/**
+ * Tests for {@link Features}, the {@link Scorer}s and searching with them
+ */
+public class ScorerTest {
+
+	private static final long NO_DEADLINE = Long.MAX_VALUE / 2;
+
+	private static float[] random(int size, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		float[] values = new float[size];
+		for (int i = 0; i < size; i++)
+			values[i] = (float) (random.nextDouble() * 2 - 1);
+		return values;
+	}
+
+	@Test
+	public void testFeaturesOfInitialState() throws IOException {
+		GameState state = twoPlayerState();
+		DistanceOracle<Transport> distances = DistanceOracle.of(state.graph());
+		float[] features = new float[Features.COUNT + 1];
+		new Features(distances).extract(state, features, 1);
+		assertThat(features[0]).isZero(); // before the offset
+		assertThat(features[1]).isEqualTo(0.2f); // two taxi rides away
+		assertThat(features[3]).isEqualTo(1f); // the only detective is close
+		assertThat(features[5]).isEqualTo(1f); // both double tickets
+		assertThat(features[8]).isEqualTo(0.4f); // revealed in round 3
+		assertThat(features[9]).isEqualTo(1f); // no round played yet
+	}
+
+	@Test
+	public void testLinearScorerIsWeightedSum() {
+		Scorer scorer = new LinearScorer(new float[] { 1, -2, 0.5f });
+		float[] scores = new float[2];
+		scorer.score(new float[] { 1, 1, 2, 0 }, 2, scores);
+		assertThat(scorer.inputs()).isEqualTo(2);
+		assertThat(scores).containsExactly(-0.5f, 2.5f);
+	}
+
+	@Test
+	public void testMlpBatchMatchesSingleScores() {
+		Scorer scorer = new MlpScorer(Features.COUNT, 8, random(8 * (Features.COUNT + 2) + 1, 1));
+		float[] batch = random(5 * Features.COUNT, 2);
+		float[] scores = new float[5];
+		scorer.score(batch, 5, scores);
+		for (int i = 0; i < 5; i++) {
+			float[] one = new float[1];
+			float[] features = new float[Features.COUNT];
+			System.arraycopy(batch, i * Features.COUNT, features, 0, Features.COUNT);
+			scorer.score(features, 1, one);
+			assertThat(one[0]).isCloseTo(scores[i], within(1e-6f));
+		}
+	}
+
+	@Test
+	public void testReadBothKinds() throws IOException {
+		Scorer linear = Scorer.read(new StringReader("# comment\nlinear 2\n1 2 # weights\n3"));
+		assertThat(linear).isInstanceOf(LinearScorer.class);
+		float[] score = new float[1];
+		linear.score(new float[] { 1, 1 }, 1, score);
+		assertThat(score[0]).isEqualTo(6f);
+		Scorer mlp = Scorer.read(new StringReader("mlp 1 1\n2\n-1\n3\n1"));
+		assertThat(mlp).isInstanceOf(MlpScorer.class);
+		mlp.score(new float[] { 1 }, 1, score);
+		assertThat(score[0]).isEqualTo(4f);
+		assertThat(Scorer.standard().inputs()).isEqualTo(Features.COUNT);
+	}
+
+	@Test
+	public void testReadRejectsMalformedWeights() {
+		assertThatThrownBy(() -> Scorer.read(new StringReader("")))
+				.isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> Scorer.read(new StringReader("cubic 1 2 3")))
+				.isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> Scorer.read(new StringReader("linear 2 1 2")))
+				.isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> Scorer.read(new StringReader("linear 1 x 2")))
+				.isInstanceOf(IOException.class);
+	}
+
+	@Test
+	public void testSearchWithScorerStillSeesCaptures() throws IOException {
+		GameState state = twoPlayerState();
+		DistanceOracle<Transport> distances = DistanceOracle.of(state.graph());
+		AlphaBeta search = new AlphaBeta(distances, new TranspositionTable(1 << 12), null,
+				Scorer.standard());
+		AlphaBeta.Result escape = search.search(state, 2, NO_DEADLINE);
+		assertThat(escape.score()).isGreaterThan(-AlphaBeta.WIN);
+		assertThat(state.advance(escape.move()).location(BLACK)).isNotEqualTo(8);
+
+		GameState exposed = state.advance(new TicketMove(BLACK, Ticket.TAXI, 8));
+		AlphaBeta.Result capture = search.search(exposed, 3, NO_DEADLINE);
+		assertThat(exposed.toMove(capture.move())).isEqualTo(new TicketMove(BLUE, Ticket.TAXI, 8));
+		assertThat(capture.score()).isLessThanOrEqualTo(-AlphaBeta.WIN);
+	}
+
+	@Test
+	public void testScorerMustTakeTheFeatures() throws IOException {
+		DistanceOracle<Transport> distances = DistanceOracle.of(twoPlayerState().graph());
+		assertThatThrownBy(() -> new AlphaBeta(distances, new TranspositionTable(1 << 12), null,
+				new LinearScorer(new float[] { 1, 0 }))).isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
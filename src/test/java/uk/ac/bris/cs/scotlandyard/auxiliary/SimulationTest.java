@@ -0,0 +1,110 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import uk.ac.bris.cs.scotlandyard.ai.PlayerFactory;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardModel;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.sim.GameResult;
+import uk.ac.bris.cs.scotlandyard.sim.RandomPlayerFactory;
+import uk.ac.bris.cs.scotlandyard.sim.Simulation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link Simulation}
+ */
+public class SimulationTest {
+
+	private static Simulation.Builder randomGames() {
+		return new Simulation.Builder(ScotlandYardModel::new)
+				.mrX(() -> new RandomPlayerFactory(new Random(42)))
+				.detectives(() -> new RandomPlayerFactory(new Random(7)));
+	}
+
+	@Test
+	public void testAllGamesFinishWithWinners() {
+		List<Integer> seeds = IntStream.range(0, 16).boxed().collect(Collectors.toList());
+		List<GameResult> results = randomGames().parallelism(4).build().runAll(seeds);
+		assertThat(results).extracting(GameResult::seed).containsExactlyElementsOf(seeds);
+		for (GameResult result : results) {
+			assertThat(result.error()).isEmpty();
+			assertThat(result.winners()).isNotEmpty();
+			assertThat(result.moves()).isPositive();
+			assertThat(result.ticketsUsed()).containsOnlyKeys(Colour.BLACK, Colour.BLUE,
+					Colour.GREEN, Colour.RED, Colour.WHITE, Colour.YELLOW);
+		}
+	}
+
+	@Test
+	public void testSinkReceivesEveryResult() {
+		ConcurrentLinkedQueue<GameResult> sink = new ConcurrentLinkedQueue<>();
+		randomGames().detectiveCount(2).build().run(IntStream.range(0, 8).boxed()
+				.collect(Collectors.toList()), sink::add);
+		assertThat(sink).hasSize(8);
+		assertThat(sink).allSatisfy(result -> {
+			assertThat(result.error()).isEmpty();
+			assertThat(result.ticketsUsed()).containsOnlyKeys(Colour.BLACK, Colour.BLUE,
+					Colour.GREEN);
+		});
+	}
+
+	@Test
+	public void testFailingPlayerIsRecorded() {
+		GameResult result = randomGames()
+				.mrX(() -> colour -> (view, location, moves, callback) -> {
+					throw new IllegalStateException("boom");
+				}).build().play(0);
+		assertThat(result.error()).isPresent();
+		assertThat(result.winners()).isEmpty();
+		assertThat(result.ticketsUsed().get(Colour.BLACK)).containsEntry(Ticket.TAXI, 0);
+	}
+
+	@Test
+	public void testFailedGameKeepsTheRoundReached() {
+		PlayerFactory random = new RandomPlayerFactory(new Random(42));
+		AtomicInteger turns = new AtomicInteger();
+		GameResult result = randomGames()
+				.mrX(() -> colour -> (view, location, moves, callback) -> {
+					if (turns.incrementAndGet() > 3) throw new IllegalStateException("boom");
+					random.createPlayer(colour).makeMove(view, location, moves, callback);
+				}).build().play(0);
+		assertThat(result.error()).isPresent();
+		assertThat(result.winners()).isEmpty();
+		// three moves, some of which may be double moves
+		assertThat(result.rounds()).isBetween(3, 6);
+	}
+
+	@Test
+	public void testFactoriesPonderBetweenMoves() {
+		AtomicInteger ponders = new AtomicInteger();
+		AtomicInteger gameOvers = new AtomicInteger();
+		PlayerFactory random = new RandomPlayerFactory(new Random(42));
+		GameResult result = randomGames().mrX(() -> new PlayerFactory() {
+			@Override
+			public Player createPlayer(Colour colour) {
+				return random.createPlayer(colour);
+			}
+
+			@Override
+			public void ponder(ScotlandYardView view) {
+				ponders.incrementAndGet();
+				if (view.isGameOver()) gameOvers.incrementAndGet();
+			}
+		}).build().play(0);
+		assertThat(result.error()).isEmpty();
+		assertThat(ponders.get()).isGreaterThanOrEqualTo(result.moves());
+		assertThat(gameOvers.get()).isZero();
+	}
+
+}
@@ -0,0 +1,189 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import uk.ac.bris.cs.gamekit.graph.ImmutableGraph;
+import uk.ac.bris.cs.scotlandyard.ai.Tablebase;
+import uk.ac.bris.cs.scotlandyard.ai.Tablebase.Outcome;
+import uk.ac.bris.cs.scotlandyard.ai.TablebaseGenerator;
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
+import uk.ac.bris.cs.scotlandyard.model.TicketMove;
+import uk.ac.bris.cs.scotlandyard.model.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.dummyPlayer;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.makeTickets;
+
+/**
+ * Tests for {@link Tablebase} and {@link TablebaseGenerator}, comparing a
+ * small tablebase against exhaustive search of {@link GameState}
+ */
+public class TablebaseTest {
+
+	@ClassRule public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+	private static final List<Boolean> ROUNDS = Arrays.asList(false, true);
+
+	private static ImmutableGraph<Integer, Transport> graph;
+	private static TablebaseGenerator generator;
+	private static Path path;
+	private static int solved;
+	private static Tablebase tablebase;
+	private static List<GameState> states;
+
+	@BeforeClass
+	public static void generate() throws Exception {
+		graph = StandardGame.standardGraph();
+		generator = new TablebaseGenerator(graph, 1, 2);
+		path = FOLDER.getRoot().toPath().resolve("test.tablebase");
+		solved = generator.generate(path, 2);
+		tablebase = Tablebase.open(path);
+		SplittableRandom random = new SplittableRandom(42);
+		states = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			int mrX = 1 + random.nextInt(199);
+			int blue = 1 + random.nextInt(199);
+			if (mrX == blue) continue;
+			GameState start = start(mrX, blue, 4);
+			states.add(start);
+			// and every single move, some of which walk into the detective
+			for (Move move : start.legalMoves()) {
+				if (move instanceof TicketMove) states.add(start.advance(move));
+			}
+		}
+	}
+
+	private static GameState start(int mrX, int blue, int tickets) {
+		return GameState.of(ROUNDS, graph,
+				configuration(Colour.BLACK, mrX, tickets, 1, 2),
+				configuration(Colour.BLUE, blue, tickets, 0, 0));
+	}
+
+	private static PlayerConfiguration configuration(Colour colour, int location, int tickets,
+			int doubles, int secrets) {
+		return new PlayerConfiguration.Builder(colour).using(dummyPlayer())
+				.with(makeTickets(tickets, tickets, tickets, doubles, secrets)).at(location).build();
+	}
+
+	private static boolean mrXWins(GameState state, Map<GameState, Boolean> solved) {
+		if (state.isGameOver()) return state.winners().contains(Colour.BLACK);
+		Boolean known = solved.get(state);
+		if (known != null) return known;
+		boolean mrX = state.currentIndex() == 0;
+		boolean wins = !mrX;
+		for (Move move : state.legalMoves()) {
+			if (mrXWins(state.advance(move), solved) == mrX) {
+				wins = mrX;
+				break;
+			}
+		}
+		solved.put(state, wins);
+		return wins;
+	}
+
+	@Test
+	public void testEveryLayerIsSolvedOnceAndResumed() throws Exception {
+		assertThat(solved).isEqualTo(6);
+		assertThat(tablebase.isComplete()).isTrue();
+		assertThat(generator.generate(path, 1)).isZero();
+	}
+
+	@Test
+	public void testInterruptedGenerationResumesToTheSameFile() throws Exception {
+		byte[] fresh = Files.readAllBytes(path);
+		// header of 32 bytes with the completed layers as a bitmask at 24
+		ByteBuffer bytes = ByteBuffer.wrap(fresh.clone());
+		int completed = bytes.getInt(24);
+		int layers = Integer.bitCount(completed);
+		int layerSize = (fresh.length - 32) / layers;
+		// as if killed while solving the second to last layer
+		for (int layer = layers - 2; layer < layers; layer++) {
+			completed &= ~(1 << layer);
+			Arrays.fill(bytes.array(), 32 + layer * layerSize, 32 + (layer + 1) * layerSize,
+					(byte) 0);
+		}
+		bytes.putInt(24, completed);
+		assertThat(bytes.array()).isNotEqualTo(fresh);
+		Path interrupted = FOLDER.getRoot().toPath().resolve("interrupted.tablebase");
+		Files.write(interrupted, bytes.array());
+		assertThat(generator.generate(interrupted, 2)).isEqualTo(2);
+		assertThat(Files.readAllBytes(interrupted)).isEqualTo(fresh);
+	}
+
+	@Test
+	public void testProbesMatchExhaustiveSearch() {
+		Map<GameState, Boolean> memo = new HashMap<>();
+		Set<Outcome> outcomes = EnumSet.noneOf(Outcome.class);
+		for (GameState state : states) {
+			Optional<Outcome> outcome = tablebase.probe(state);
+			assertThat(outcome).isPresent();
+			assertThat(outcome.get() == Outcome.MRX_WINS).as("%s", state)
+					.isEqualTo(mrXWins(state, memo));
+			outcomes.add(outcome.get());
+		}
+		assertThat(outcomes).containsOnly(Outcome.values());
+	}
+
+	@Test
+	public void testBestMoveKeepsTheWin() {
+		for (GameState state : states) {
+			Outcome outcome = tablebase.probe(state).get();
+			OptionalInt move = tablebase.bestMove(state);
+			boolean winning = outcome == (state.currentIndex() == 0 ? Outcome.MRX_WINS
+					: Outcome.DETECTIVES_WIN);
+			assertThat(move.isPresent()).isEqualTo(winning);
+			if (winning) {
+				GameState next = state.advance(move.getAsInt());
+				assertThat(next.isGameOver() ? (next.winners().contains(Colour.BLACK)
+						? Outcome.MRX_WINS : Outcome.DETECTIVES_WIN)
+						: tablebase.probe(next).get()).isEqualTo(outcome);
+			}
+		}
+	}
+
+	@Test
+	public void testStatesOutsideTheTablebaseAreNotProbed() {
+		GameState state = states.get(0);
+		GameState few = start(state.location(Colour.BLACK), state.location(Colour.BLUE), 2);
+		assertThat(tablebase.probe(few)).isEmpty();
+		GameState standard = GameState.of(StandardGame.ROUNDS, graph,
+				configuration(Colour.BLACK, state.location(Colour.BLACK), 4, 1, 2),
+				configuration(Colour.BLUE, state.location(Colour.BLUE), 4, 0, 0));
+		assertThat(tablebase.probe(standard)).isEmpty();
+		assertThat(Tablebase.NONE.probe(state)).isEmpty();
+		assertThat(Tablebase.NONE.bestMove(state)).isEmpty();
+	}
+
+	@Test
+	public void testOpenRejectsOtherFiles() throws IOException {
+		Path other = FOLDER.newFile("other.tablebase").toPath();
+		Files.write(other, new byte[64]);
+		assertThatThrownBy(() -> Tablebase.open(other)).isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> new TablebaseGenerator(graph, 2, 2).generate(path, 1))
+				.isInstanceOf(IOException.class);
+	}
+
+}
@@ -2,6 +2,7 @@ package uk.ac.bris.cs.scotlandyard.auxiliary;
 
 import com.google.common.collect.ImmutableMap;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,11 +19,13 @@ import uk.ac.bris.cs.scotlandyard.auxiliary.AnonymousMoves.AnonymousTicketMove;
 import uk.ac.bris.cs.scotlandyard.harness.Requirement;
 import uk.ac.bris.cs.scotlandyard.model.Colour;
 import uk.ac.bris.cs.scotlandyard.model.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.GameState;
 import uk.ac.bris.cs.scotlandyard.model.PassMove;
 import uk.ac.bris.cs.scotlandyard.model.Player;
 import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardGame;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYardView;
+import uk.ac.bris.cs.scotlandyard.model.StandardGame;
 import uk.ac.bris.cs.scotlandyard.model.Ticket;
 import uk.ac.bris.cs.scotlandyard.model.TicketMove;
 
@@ -400,5 +403,17 @@ public class TestGames {
 		return doNothingPlayer(WHITE, DETECTIVE_LOCATIONS.get(4));
 	}
 
+	/**
+	 * A standard game of Mr.X at 1 and blue at 18, both with default
+	 * tickets; 8 is next to both
+	 *
+	 * @return the state before Mr.X's first move
+	 * @throws IOException if the standard graph cannot be read
+	 */
+	public static GameState twoPlayerState() throws IOException {
+		return GameState.of(StandardGame.ROUNDS, StandardGame.standardGraph(),
+				doNothingPlayer(BLACK, 1), doNothingPlayer(BLUE, 18));
+	}
+
 
 }
@@ -0,0 +1,81 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import uk.ac.bris.cs.scotlandyard.model.Colour;
+import uk.ac.bris.cs.scotlandyard.model.PlayerConfiguration;
+import uk.ac.bris.cs.scotlandyard.model.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.TicketLedger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.dummyPlayer;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.mrXTickets;
+
+/**
+ * Tests for {@link TicketLedger}
+ */
+public class TicketLedgerTest {
+
+	private static PlayerConfiguration configuration(Colour colour, Map<Ticket, Integer> tickets) {
+		return new PlayerConfiguration.Builder(colour).using(dummyPlayer()).with(tickets).at(1).build();
+	}
+
+	@Test
+	public void testCountsFollowAdjustments() {
+		Map<Ticket, Integer> tickets = new HashMap<>();
+		tickets.put(Ticket.TAXI, 2);
+		TicketLedger ledger = new TicketLedger(tickets);
+		assertThat(ledger.count(Ticket.TAXI)).isEqualTo(2);
+		assertThat(ledger.count(Ticket.BUS)).isZero();
+		ledger.adjust(Ticket.TAXI, -2);
+		assertThat(ledger.has(Ticket.TAXI)).isFalse();
+		assertThat(ledger.isEmpty()).isTrue();
+		ledger.adjust(Ticket.SECRET, 3);
+		assertThat(ledger.has(Ticket.SECRET, 3)).isTrue();
+		assertThat(ledger.has(Ticket.SECRET, 4)).isFalse();
+	}
+
+	@Test
+	public void testSnapshotRestoresEveryCount() {
+		TicketLedger ledger = new TicketLedger(mrXTickets());
+		int[] snapshot = ledger.snapshot();
+		ledger.adjust(Ticket.DOUBLE, -1);
+		ledger.adjust(Ticket.BUS, 5);
+		ledger.restore(snapshot);
+		assertThat(ledger.asMap()).isEqualTo(new TicketLedger(mrXTickets()).asMap());
+		int[] copy = new int[Ticket.values().length];
+		ledger.copyTo(copy);
+		assertThat(copy).containsExactly(snapshot);
+		assertThatThrownBy(() -> ledger.restore(new int[1]))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testMapViewIsLiveAndUnmodifiable() {
+		TicketLedger ledger = new TicketLedger();
+		Map<Ticket, Integer> view = ledger.asMap();
+		assertThat(view).hasSize(Ticket.values().length).containsEntry(Ticket.BUS, 0);
+		ledger.adjust(Ticket.BUS, 1);
+		assertThat(view.get(Ticket.BUS)).isEqualTo(1);
+		assertThat(view.get("BUS")).isNull();
+		assertThatThrownBy(() -> view.put(Ticket.BUS, 2))
+				.isInstanceOf(UnsupportedOperationException.class);
+	}
+
+	@Test
+	public void testConfigurationsAreValidated() {
+		assertThat(TicketLedger.of(configuration(Colour.BLACK, mrXTickets())).count(Ticket.SECRET))
+				.isEqualTo(mrXTickets().get(Ticket.SECRET));
+		Map<Ticket, Integer> missing = new HashMap<>(mrXTickets());
+		missing.remove(Ticket.BUS);
+		assertThatThrownBy(() -> TicketLedger.of(configuration(Colour.BLACK, missing)))
+				.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("BUS");
+		assertThatThrownBy(() -> TicketLedger.of(configuration(Colour.BLUE, mrXTickets())))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
@@ -0,0 +1,92 @@
+package uk.ac.bris.cs.scotlandyard.auxiliary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.search.TranspositionTable;
+import uk.ac.bris.cs.scotlandyard.search.TranspositionTable.Hit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link TranspositionTable}
+ */
+public class TranspositionTableTest {
+
+	@Test
+	public void testStoreAndProbe() {
+		TranspositionTable table = new TranspositionTable(1000);
+		assertThat(table.capacity()).isEqualTo(1024);
+		Hit hit = new Hit();
+		assertThat(table.probe(42L, hit)).isFalse();
+		table.store(42L, 3, -17, TranspositionTable.LOWER, 0x7FFF_FFFF);
+		assertThat(table.probe(42L, hit)).isTrue();
+		assertThat(hit.score).isEqualTo(-17);
+		assertThat(hit.depth).isEqualTo(3);
+		assertThat(hit.bound).isEqualTo(TranspositionTable.LOWER);
+		assertThat(hit.move).isEqualTo(0x7FFF_FFFF);
+		assertThat(table.probe(42L + 1024, hit)).isFalse();
+		table.clear();
+		assertThat(table.probe(42L, hit)).isFalse();
+	}
+
+	@Test
+	public void testReplaceByDepth() {
+		TranspositionTable table = new TranspositionTable(16);
+		Hit hit = new Hit();
+		long deep = 5L;
+		long shallow = 5L + 16;
+		table.store(deep, 6, 1, TranspositionTable.EXACT, 0);
+		table.store(shallow, 2, 2, TranspositionTable.EXACT, 0);
+		assertThat(table.probe(shallow, hit)).isFalse();
+		assertThat(table.probe(deep, hit)).isTrue();
+		table.store(deep, 1, 3, TranspositionTable.UPPER, 0);
+		assertThat(table.probe(deep, hit)).isTrue();
+		assertThat(hit.score).isEqualTo(3);
+		table.store(shallow, 1, 2, TranspositionTable.EXACT, 0);
+		assertThat(table.probe(shallow, hit)).isTrue();
+		assertThat(table.probe(deep, hit)).isFalse();
+	}
+
+	@Test
+	public void testConcurrentWritersNeverCorruptEntries() throws Exception {
+		TranspositionTable table = new TranspositionTable(64);
+		// few random 64-bit keys so that writers keep colliding on the same slots
+		long[] keys = new SplittableRandom(42).longs(256).toArray();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				int seed = t;
+				futures.add(executor.submit(() -> {
+					SplittableRandom random = new SplittableRandom(seed);
+					Hit hit = new Hit();
+					for (int i = 0; i < 200_000; i++) {
+						long key = keys[random.nextInt(keys.length)];
+						// the result is derived from the key so a torn entry would show
+						table.store(key, random.nextInt(8), (int) key,
+								TranspositionTable.EXACT, (int) (key >>> 32));
+						long probe = keys[random.nextInt(keys.length)];
+						if (table.probe(probe, hit)) {
+							assertThat(hit.score).isEqualTo((int) probe);
+							assertThat(hit.move).isEqualTo((int) (probe >>> 32));
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+		}
+	}
+
+}
@@ -91,6 +91,16 @@ public class ModelGameOverTest extends ParameterisedModelTestBase {
 				.thenIgnoreAnyFurtherInteractions();
 	}
 
+	@Test
+	public void testMrXWinsIfAllDetectivesHaveTicketsButNoMoves() {
+		// blue only holds underground tickets and 108 has no underground station
+		PlayerConfiguration blue = harness.newPlayer(BLUE, 108, 0, 0, 5, 0, 0);
+		ScotlandYardGame game = createGame(harness.newPlayer(BLACK, 86), blue);
+		// blue is not ticketless but can only pass, the game is over
+		assertThat(game.isGameOver()).isTrue();
+		assertThat(game.getWinningPlayers()).containsExactly(BLACK);
+	}
+
 	@Test
 	public void testGameOverIfMrXStuck() {
 		PlayerConfiguration mrX = harness.newPlayer(BLACK, 86, 1, 1, 1, 0, 0);
@@ -7,6 +7,7 @@ import org.junit.Test;
 import uk.ac.bris.cs.scotlandyard.harness.TestHarness;
 
 import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.bus;
+import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.makeTickets;
 import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.pass;
 import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.rounds;
 import static uk.ac.bris.cs.scotlandyard.auxiliary.TestGames.secret;
@@ -281,6 +282,53 @@ public class ModelValidMoveTest extends ParameterisedModelTestBase {
 				.thenIgnoreAnyFurtherInteractions();
 	}
 
+	@Test
+	public void testMrXNoDoubleMovesIfNotEnoughTicketsForBothMoves() {
+		PlayerConfiguration mrX = harness.newPlayer(BLACK, 104, makeTickets(1, 0, 0, 1, 0));
+		PlayerConfiguration blue = harness.newPlayer(BLUE, 117);
+
+		// a single taxi ticket cannot pay for both halves of taxi then taxi
+		harness.play(createGame(mrX, blue)).startRotationAndAssertTheseInteractionsOccurInOrder(
+				player(BLACK).makeMove().givenMoves(containsOnly(
+						taxi(BLACK, 86),
+						taxi(BLACK, 116))))
+				.thenIgnoreAnyFurtherInteractions();
+	}
+
+	@Test
+	public void testMrXDoubleMovesMixTaxiAndSecretTickets() {
+		PlayerConfiguration mrX = harness.newPlayer(BLACK, 104, makeTickets(1, 0, 0, 1, 1));
+		PlayerConfiguration blue = harness.newPlayer(BLUE, 117);
+
+		// taxi then secret and secret then taxi, but neither ticket twice
+		harness.play(createGame(mrX, blue)).startRotationAndAssertTheseInteractionsOccurInOrder(
+				player(BLACK).makeMove().givenMoves(containsOnly(
+						taxi(BLACK, 86),
+						secret(BLACK, 86),
+						taxi(BLACK, 116),
+						secret(BLACK, 116),
+						x2(BLACK, taxi(86), secret(52)),
+						x2(BLACK, taxi(86), secret(69)),
+						x2(BLACK, taxi(86), secret(87)),
+						x2(BLACK, taxi(86), secret(102)),
+						x2(BLACK, taxi(86), secret(103)),
+						x2(BLACK, taxi(86), secret(104)),
+						x2(BLACK, taxi(86), secret(116)),
+						x2(BLACK, secret(86), taxi(69)),
+						x2(BLACK, secret(86), taxi(103)),
+						x2(BLACK, secret(86), taxi(104)),
+						x2(BLACK, taxi(116), secret(86)),
+						x2(BLACK, taxi(116), secret(104)),
+						x2(BLACK, taxi(116), secret(108)),
+						x2(BLACK, taxi(116), secret(118)),
+						x2(BLACK, taxi(116), secret(127)),
+						x2(BLACK, taxi(116), secret(142)),
+						x2(BLACK, secret(116), taxi(104)),
+						x2(BLACK, secret(116), taxi(118)),
+						x2(BLACK, secret(116), taxi(127)))))
+				.thenIgnoreAnyFurtherInteractions();
+	}
+
 	@Test
 	public void testMrXAt104ShouldProduce60ValidMoves() {
 		PlayerConfiguration mrX = harness.newPlayer(BLACK, 104, 4, 3, 3, 2, 5);